@@ -0,0 +1,105 @@
+#!/usr/bin/env bash
+# Chequeo del modo coordinador en loopback: levanta dos workers, un coordinador (con un worker caído
+# en la lista, para ejercitar el reintento) y una instancia sola, genera el reporte diario en el
+# coordinador y en la instancia sola y compara las hojas de ambos Excel.
+#
+#   scripts/shard-loopback-check.sh [líneas por archivo]
+#
+# Necesita java 21, mvn, curl y unzip. Los puertos base se cambian con SHARD_CHECK_PORT (18080).
+set -euo pipefail
+
+LINES=${1:-400000}
+PORT=${SHARD_CHECK_PORT:-18080}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+WORK=$(mktemp -d)
+PIDS=()
+
+cleanup() {
+    for pid in "${PIDS[@]}"; do kill "$pid" 2>/dev/null || true; done
+    wait 2>/dev/null || true
+    rm -rf "$WORK"
+}
+trap cleanup EXIT
+
+cd "$ROOT"
+mvn -B -q -DskipTests compile dependency:build-classpath -Dmdep.outputFile="$WORK/cp.txt"
+CLASSPATH="$ROOT/target/classes:$(cat "$WORK/cp.txt")"
+
+# Dos subdirectorios con delay.log de LINES líneas (algunas malformadas)
+for instrument in ALFA BETA; do
+    mkdir -p "$WORK/logs/$instrument"
+    awk -v lines="$LINES" -v seed="${#instrument}" 'BEGIN {
+        srand(seed)
+        for (i = 0; i < lines; i++) {
+            ms = int(i * 7.3)
+            if (i % 997 == 0) { print "ORD;" i ";basura" ; continue }
+            printf "ORD;%d;20250310 %02d:%02d:%02d.%03d;ACK;%d\n", i, 9 + int(ms / 3600000), int(ms / 60000) % 60,
+                int(ms / 1000) % 60, ms % 1000, int(rand() * rand() * 5000)
+        }
+    }' > "$WORK/logs/$instrument/delay.log"
+done
+
+# Instancia en su propio directorio de trabajo: nombre, puerto y propiedades extra
+start() {
+    local name=$1 port=$2
+    shift 2
+    mkdir -p "$WORK/$name/reports"
+    (cd "$WORK/$name" && exec java -cp "$CLASSPATH" document_filter.DocumentFilterApplication \
+        --server.port="$port" --input.folder.path="$WORK/logs/" --report.file.path="$ROOT/report-template.xlsx" \
+        "$@" > "$WORK/$name.log" 2>&1) &
+    PIDS+=($!)
+}
+
+wait_ready() {
+    local port=$1
+    for _ in $(seq 1 120); do
+        curl -sf "http://127.0.0.1:$port/actuator/health" > /dev/null && return 0
+        sleep 1
+    done
+    echo "La instancia del puerto $port no arrancó" >&2
+    return 1
+}
+
+DEAD=$((PORT + 9))
+start worker1 $((PORT + 1))
+start worker2 $((PORT + 2))
+start single $((PORT + 3))
+# Rangos de 1 MB para que cada archivo se reparta entre los workers
+start coordinator "$PORT" --metrics.shard.rangeBytes=1048576 --metrics.shard.inFlightPerWorker=2 \
+    --metrics.shard.workers="http://127.0.0.1:$((PORT + 1)),http://127.0.0.1:$DEAD,http://127.0.0.1:$((PORT + 2))"
+for port in "$PORT" $((PORT + 1)) $((PORT + 2)) $((PORT + 3)); do wait_ready "$port"; done
+
+# POST /daily-metrics encola un job: se espera a que termine y se baja su resultado
+report() {
+    local port=$1 output=$2 job status
+    job=$(curl -sf -D - -o /dev/null -X POST "http://127.0.0.1:$port/api/metrics/daily-metrics" \
+        | tr -d '\r' | awk 'tolower($1) == "location:" { print $2 }')
+    for _ in $(seq 1 600); do
+        status=$(curl -sf "http://127.0.0.1:$port$job" | grep -o '"status":"[A-Z]*"' | cut -d'"' -f4)
+        case "$status" in
+            SUCCEEDED) curl -sf "http://127.0.0.1:$port$job/result" -o "$output"; return 0 ;;
+            FAILED|CANCELLED) echo "El job $job del puerto $port terminó $status" >&2; return 1 ;;
+        esac
+        sleep 1
+    done
+    echo "El job $job del puerto $port no terminó" >&2
+    return 1
+}
+
+report "$PORT" "$WORK/coordinator.xlsx"
+report $((PORT + 3)) "$WORK/single.xlsx"
+
+mkdir -p "$WORK/coordinator.x" "$WORK/single.x"
+unzip -q "$WORK/coordinator.xlsx" 'xl/worksheets/*' 'xl/sharedStrings.xml' -d "$WORK/coordinator.x" || true
+unzip -q "$WORK/single.xlsx" 'xl/worksheets/*' 'xl/sharedStrings.xml' -d "$WORK/single.x" || true
+# Con dos workers vivos ningún rango debería terminar parseado en el coordinador
+if grep -q "se parsea localmente" "$WORK/coordinator.log"; then
+    echo "✗ El coordinador parseó rangos localmente: los workers no respondieron" >&2
+    exit 1
+fi
+if ! diff -r "$WORK/single.x" "$WORK/coordinator.x" > "$WORK/diff.txt"; then
+    echo "✗ El reporte del coordinador difiere del de una sola JVM:" >&2
+    head -20 "$WORK/diff.txt" >&2
+    exit 1
+fi
+echo "✓ Reporte del coordinador idéntico al de una sola JVM ($(ls "$WORK/single.x/xl/worksheets" | wc -l) hojas)"
@@ -0,0 +1,18 @@
+package document_filter.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/** Ubicación compartida de los archivos generados (por defecto target/jmh-data, o -Djmh.data=...). */
+final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    static Path directory() {
+        return Path.of(System.getProperty("jmh.data", "target/jmh-data")).toAbsolutePath();
+    }
+
+    static Path delayLog(long lines) throws IOException {
+        return DelayLogGenerator.cached(directory(), lines);
+    }
+}
@@ -0,0 +1,127 @@
+package document_filter.benchmark;
+
+import document_filter.latency.ConcurrentLatencyWindowAverager;
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.StatsMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contención de varios productores sobre un mismo agregado: el averager por franjas contra un único
+ * averager con lock global. Cada invocación agrega un lote de {@value #BATCH} muestras de a una; el
+ * contador {@code samples} da muestras por segundo sumando todos los hilos. Para ver la escala se
+ * comparan los métodos de 1, 4 y 16 productores (hace falta una máquina con al menos 16 núcleos).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConcurrentAveragerBenchmark {
+    private static final int BATCH = 4096;
+    private static final int SAMPLES = 1 << 20;
+
+    public enum Impl { STRIPED, SYNCHRONIZED }
+
+    @Param({"STRIPED", "SYNCHRONIZED"})
+    private Impl impl;
+
+    // Lectura (merge de franjas) cada tantos lotes por hilo; 0 = nunca
+    @Param({"0", "64"})
+    private int readEvery;
+
+    private ConcurrentLatencyWindowAverager striped;
+    private LatencyWindowAverager shared;
+    private long[] epochMillis;
+    private int[] latencies;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        striped = new ConcurrentLatencyWindowAverager(ConcurrentAveragerBenchmark::newAverager, 32);
+        shared = newAverager();
+        DelayLogGenerator generator = new DelayLogGenerator(DelayLogGenerator.DEFAULT_SEED);
+        epochMillis = new long[SAMPLES];
+        latencies = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; ) {
+            if (generator.next()) {
+                epochMillis[i] = generator.getEpochMillis();
+                latencies[i++] = generator.getLatency();
+            }
+        }
+    }
+
+    private static LatencyWindowAverager newAverager() {
+        return new LatencyWindowAverager(1, LatencyWindowAverager.DEFAULT_ZONE, StatsMode.HISTOGRAM, 3);
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private int offset;
+        private int batches;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // Cada hilo recorre las muestras desde un punto distinto
+            offset = (int) (Thread.currentThread().threadId() * 7919 % SAMPLES);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class SampleCounter {
+        public long samples;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            samples = 0;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void producers1(Producer producer, SampleCounter counter) {
+        addBatch(producer, counter);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void producers4(Producer producer, SampleCounter counter) {
+        addBatch(producer, counter);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void producers16(Producer producer, SampleCounter counter) {
+        addBatch(producer, counter);
+    }
+
+    private void addBatch(Producer producer, SampleCounter counter) {
+        int start = producer.offset;
+        if (impl == Impl.STRIPED) {
+            for (int i = 0; i < BATCH; i++) {
+                int index = (start + i) & (SAMPLES - 1);
+                striped.addSample(epochMillis[index], latencies[index]);
+            }
+        } else {
+            for (int i = 0; i < BATCH; i++) {
+                int index = (start + i) & (SAMPLES - 1);
+                synchronized (shared) {
+                    shared.addSample(epochMillis[index], latencies[index]);
+                }
+            }
+        }
+        producer.offset = (start + BATCH) & (SAMPLES - 1);
+        if (readEvery > 0 && ++producer.batches % readEvery == 0) {
+            if (impl == Impl.STRIPED) {
+                striped.read(LatencyWindowAverager::getSampleCount);
+            } else {
+                synchronized (shared) {
+                    shared.getSampleCount();
+                }
+            }
+        }
+        counter.samples += BATCH;
+    }
+}
@@ -0,0 +1,201 @@
+package document_filter.benchmark;
+
+import document_filter.latency.LatencyWindowAverager;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.SplittableRandom;
+
+/**
+ * Generador determinístico de delay.log sintéticos: la cantidad de mensajes por segundo alterna entre
+ * un régimen tranquilo y ráfagas, las latencias son log-normales con cola pesada (más altas durante
+ * las ráfagas) y una fracción de las líneas es inválida. Misma semilla, mismo archivo.
+ *
+ * <p>Uso: {@code DelayLogGenerator <archivo> <líneas> [semilla]}
+ */
+public final class DelayLogGenerator {
+    public static final long DEFAULT_SEED = 20250310L;
+
+    private static final ZoneId ZONE = LatencyWindowAverager.DEFAULT_ZONE;
+    private static final long START_MILLIS = LocalDateTime.of(2025, 3, 10, 9, 0).atZone(ZONE).toInstant().toEpochMilli();
+    private static final double MALFORMED_RATE = 0.001;
+    private static final double TAIL_RATE = 0.005;
+    private static final byte[][] MALFORMED = {
+            "garbage line".getBytes(StandardCharsets.US_ASCII),
+            "ORD;1;2025031X 09:00:00.000;ACK;12".getBytes(StandardCharsets.US_ASCII),
+            "ORD;1;20250310 09:00:00.000;12".getBytes(StandardCharsets.US_ASCII),
+            "ORD;1;20250310 09:00:00.000;ACK;abc".getBytes(StandardCharsets.US_ASCII),
+            new byte[0],
+    };
+
+    private final SplittableRandom random;
+    private final byte[] secondPrefix = new byte[17]; // yyyyMMdd HH:mm:ss
+    private long second = START_MILLIS / 1000 - 1;
+    private boolean burst;
+    private int linesInSecond;
+    private int lineInSecond;
+    private long sequence;
+
+    private boolean valid;
+    private long epochMillis;
+    private int latency;
+    private byte[] malformed;
+
+    public DelayLogGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+
+    /** Avanza a la línea siguiente; devuelve false si es una línea inválida. */
+    public boolean next() {
+        if (lineInSecond == linesInSecond) {
+            nextSecond();
+        }
+        sequence++;
+        valid = random.nextDouble() >= MALFORMED_RATE;
+        if (!valid) {
+            malformed = MALFORMED[random.nextInt(MALFORMED.length)];
+            lineInSecond++;
+            return false;
+        }
+        epochMillis = second * 1000 + (long) lineInSecond * 1000 / linesInSecond;
+        latency = nextLatency();
+        lineInSecond++;
+        return true;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    /** Escribe la línea actual (con '\n') en {@code buf} a partir de {@code pos}; devuelve la posición siguiente. */
+    public int writeLine(byte[] buf, int pos) {
+        if (!valid) {
+            System.arraycopy(malformed, 0, buf, pos, malformed.length);
+            pos += malformed.length;
+            buf[pos++] = '\n';
+            return pos;
+        }
+        pos = ascii(buf, pos, "ORD;");
+        pos = digits(buf, pos, sequence);
+        buf[pos++] = ';';
+        System.arraycopy(secondPrefix, 0, buf, pos, secondPrefix.length);
+        pos += secondPrefix.length;
+        int millis = (int) (epochMillis % 1000);
+        buf[pos++] = '.';
+        buf[pos++] = (byte) ('0' + millis / 100);
+        buf[pos++] = (byte) ('0' + millis / 10 % 10);
+        buf[pos++] = (byte) ('0' + millis % 10);
+        pos = ascii(buf, pos, ";ACK;");
+        pos = digits(buf, pos, latency);
+        buf[pos++] = '\n';
+        return pos;
+    }
+
+    private void nextSecond() {
+        second++;
+        // Cadena de dos estados: las ráfagas duran unos pocos segundos
+        burst = burst ? random.nextDouble() < 0.7 : random.nextDouble() < 0.03;
+        double rate = burst ? 4000 : 300;
+        linesInSecond = Math.max(1, (int) (rate * (0.5 + random.nextDouble())));
+        lineInSecond = 0;
+
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZONE);
+        int pos = 0;
+        pos = fixed(secondPrefix, pos, time.getYear(), 4);
+        pos = fixed(secondPrefix, pos, time.getMonthValue(), 2);
+        pos = fixed(secondPrefix, pos, time.getDayOfMonth(), 2);
+        secondPrefix[pos++] = ' ';
+        pos = fixed(secondPrefix, pos, time.getHour(), 2);
+        secondPrefix[pos++] = ':';
+        pos = fixed(secondPrefix, pos, time.getMinute(), 2);
+        secondPrefix[pos++] = ':';
+        fixed(secondPrefix, pos, time.getSecond(), 2);
+    }
+
+    private int nextLatency() {
+        double mu = burst ? 3.2 : 2.5;
+        double value = Math.exp(mu + 0.6 * random.nextGaussian());
+        if (random.nextDouble() < TAIL_RATE) {
+            // Cola tipo Pareto (alfa = 1.5)
+            value *= Math.pow(1 - random.nextDouble(), -1 / 1.5) * 10;
+        }
+        return (int) Math.min(value, 1_000_000);
+    }
+
+    private static int ascii(byte[] buf, int pos, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buf[pos++] = (byte) text.charAt(i);
+        }
+        return pos;
+    }
+
+    private static int digits(byte[] buf, int pos, long value) {
+        int length = value == 0 ? 1 : (int) Math.log10(value) + 1;
+        for (int i = pos + length - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + length;
+    }
+
+    private static int fixed(byte[] buf, int pos, int value, int width) {
+        for (int i = pos + width - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+
+    public static void write(Path target, long lines, long seed) throws IOException {
+        DelayLogGenerator generator = new DelayLogGenerator(seed);
+        byte[] buf = new byte[1 << 16];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target), 1 << 20)) {
+            int pos = 0;
+            for (long i = 0; i < lines; i++) {
+                generator.next();
+                pos = generator.writeLine(buf, pos);
+                if (pos > buf.length - 128) {
+                    out.write(buf, 0, pos);
+                    pos = 0;
+                }
+            }
+            out.write(buf, 0, pos);
+        }
+    }
+
+    /**
+     * Archivo de {@code lines} líneas con la semilla por defecto dentro de {@code directory}, generado
+     * sólo la primera vez: los benchmarks de 100M líneas no pagan la generación en cada fork.
+     */
+    public static Path cached(Path directory, long lines) throws IOException {
+        Path file = directory.resolve("delay-" + lines + ".log");
+        if (!Files.exists(file)) {
+            Files.createDirectories(directory);
+            Path tmp = directory.resolve(file.getFileName() + ".tmp");
+            write(tmp, lines, DEFAULT_SEED);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: DelayLogGenerator <archivo> <líneas> [semilla]");
+            System.exit(1);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        write(Path.of(args[0]), Long.parseLong(args[1]), seed);
+    }
+}
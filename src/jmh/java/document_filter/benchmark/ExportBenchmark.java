@@ -0,0 +1,81 @@
+package document_filter.benchmark;
+
+import document_filter.domain.FileSummary;
+import document_filter.latency.LatencyExcelExporter;
+import document_filter.latency.PipelineMetrics;
+import document_filter.latency.ProcessingOptions;
+import document_filter.latency.StatsMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escritura de los xlsx. {@code summaryWorkbook} procesa el directorio escribiendo el resumen con las
+ * hojas por ventana y {@code analysisOnly} lo procesa sin workbook: la diferencia es el costo de
+ * escritura. {@code report} llena el template con los resúmenes ya calculados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ExportBenchmark {
+
+    @Param({"1000000", "10000000", "100000000"})
+    private long lines;
+
+    @Param({"EXACT", "HISTOGRAM"})
+    private StatsMode mode;
+
+    @Param("report-template.xlsx")
+    private String template;
+
+    private Path inputFolder;
+    private Path outputDirectory;
+    private List<FileSummary> summaries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path source = BenchmarkData.delayLog(lines);
+        inputFolder = BenchmarkData.directory().resolve("export-" + lines);
+        Path instance = inputFolder.resolve("instance");
+        Files.createDirectories(instance);
+        Path delayLog = instance.resolve("delay.log");
+        if (!Files.exists(delayLog)) {
+            try {
+                Files.createLink(delayLog, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source, delayLog);
+            }
+        }
+        outputDirectory = Files.createTempDirectory(BenchmarkData.directory(), "out-");
+        summaries = LatencyExcelExporter.processDirectory(inputFolder.toString(), "", options());
+    }
+
+    @Benchmark
+    public List<FileSummary> summaryWorkbook() {
+        return LatencyExcelExporter.processDirectory(inputFolder.toString(),
+                outputDirectory.resolve("summary.xlsx").toString(), options());
+    }
+
+    @Benchmark
+    public List<FileSummary> analysisOnly() {
+        return LatencyExcelExporter.processDirectory(inputFolder.toString(), "", options());
+    }
+
+    @Benchmark
+    public String report() {
+        return LatencyExcelExporter.writeReport(summaries, template, outputDirectory.toString(), PipelineMetrics.NONE);
+    }
+
+    private ProcessingOptions options() {
+        ProcessingOptions options = new ProcessingOptions(1);
+        options.setStatsMode(mode);
+        return options;
+    }
+}
@@ -0,0 +1,71 @@
+package document_filter.benchmark;
+
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.StatsMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo por muestra de {@code addSample} (ns/op). Cada invocación inserta un lote en el mismo averager,
+ * que se recrea al llegar a {@code lines} muestras: se mide la inserción con estructuras de hasta ese
+ * tamaño, no sólo sobre ventanas vacías.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class InsertBenchmark {
+    private static final int BATCH = 100_000;
+
+    @Param({"1000000", "10000000", "100000000"})
+    private int lines;
+
+    @Param({"EXACT", "HISTOGRAM"})
+    private StatsMode mode;
+
+    @Param({"1", "60"})
+    private int windowSeconds;
+
+    private long[] epochMillis;
+    private int[] latencies;
+    private int samples;
+    private int cursor;
+    private LatencyWindowAverager averager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        epochMillis = new long[lines];
+        latencies = new int[lines];
+        DelayLogGenerator generator = new DelayLogGenerator(DelayLogGenerator.DEFAULT_SEED);
+        for (int i = 0; i < lines; i++) {
+            if (generator.next()) {
+                epochMillis[samples] = generator.getEpochMillis();
+                latencies[samples++] = generator.getLatency();
+            }
+        }
+        // Lotes completos: el cursor siempre vuelve exactamente al inicio
+        samples -= samples % BATCH;
+        averager = newAverager();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public LatencyWindowAverager addSample() {
+        if (cursor == samples) {
+            averager = newAverager();
+            cursor = 0;
+        }
+        LatencyWindowAverager target = averager;
+        for (int end = cursor + BATCH; cursor < end; cursor++) {
+            target.addSample(epochMillis[cursor], latencies[cursor]);
+        }
+        return target;
+    }
+
+    private LatencyWindowAverager newAverager() {
+        return new LatencyWindowAverager(windowSeconds, LatencyWindowAverager.DEFAULT_ZONE, mode, 3);
+    }
+}
@@ -0,0 +1,60 @@
+package document_filter.benchmark;
+
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.LiveAggregator;
+import document_filter.latency.SpikeDetector;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingesta en vivo de un bloque de 1M registros por invocación. El buffer circular frena a los
+ * productores cuando el escritor no da abasto, así que {@code records} por segundo mide el conjunto
+ * parseo + encolado + agregación. Con {@code -t N} hay N productores concurrentes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LiveIngestBenchmark {
+    private static final long LINES = 1_000_000;
+
+    private byte[] data;
+    private LiveAggregator aggregator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        data = Files.readAllBytes(BenchmarkData.delayLog(LINES));
+        aggregator = new LiveAggregator(1, 3600, 1 << 20, 2, 100, LatencyWindowAverager.DEFAULT_ZONE,
+                new SpikeDetector(1.0, 0.05, 30, 1, 1000));
+        aggregator.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        aggregator.close();
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class RecordCounter {
+        public long records;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+        }
+    }
+
+    @Benchmark
+    public LiveAggregator.IngestCounts ingest(RecordCounter counter) throws IOException {
+        LiveAggregator.IngestCounts counts = aggregator.ingest(new ByteArrayInputStream(data));
+        counter.records += counts.parsedLines();
+        return counts;
+    }
+}
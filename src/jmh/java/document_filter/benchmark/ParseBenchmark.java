@@ -0,0 +1,79 @@
+package document_filter.benchmark;
+
+import document_filter.latency.DelayLogReader;
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.MappedDelayLogParser;
+import document_filter.latency.StatsMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parseo de un delay.log completo, secuencial y mapeado por chunks en paralelo. El contador auxiliar
+ * {@code lines} da las líneas por segundo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class ParseBenchmark {
+
+    @Param({"1000000", "10000000", "100000000"})
+    private long lines;
+
+    @Param({"EXACT", "HISTOGRAM"})
+    private StatsMode mode;
+
+    private Path file;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.delayLog(lines);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class LineCounter {
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+        }
+    }
+
+    @Benchmark
+    public LatencyWindowAverager sequential(LineCounter counter) throws IOException {
+        LatencyWindowAverager averager = newAverager();
+        try (InputStream in = Files.newInputStream(file)) {
+            DelayLogReader.read(in, averager);
+        }
+        counter.lines += averager.getParsedLines() + averager.getMalformedLines();
+        return averager;
+    }
+
+    @Benchmark
+    public LatencyWindowAverager mapped(LineCounter counter) throws IOException {
+        LatencyWindowAverager averager = MappedDelayLogParser.parse(file, this::newAverager, pool);
+        counter.lines += averager.getParsedLines() + averager.getMalformedLines();
+        return averager;
+    }
+
+    private LatencyWindowAverager newAverager() {
+        return new LatencyWindowAverager(1, LatencyWindowAverager.DEFAULT_ZONE, mode, 3);
+    }
+}
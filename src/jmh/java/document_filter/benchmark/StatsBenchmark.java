@@ -0,0 +1,42 @@
+package document_filter.benchmark;
+
+import document_filter.domain.Stats;
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.StatsMode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Cálculo de Stats de un archivo ya agregado, exacto y por histograma. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class StatsBenchmark {
+
+    @Param({"1000000", "10000000", "100000000"})
+    private long lines;
+
+    @Param({"EXACT", "HISTOGRAM"})
+    private StatsMode mode;
+
+    private LatencyWindowAverager averager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        averager = new LatencyWindowAverager(1, LatencyWindowAverager.DEFAULT_ZONE, mode, 3);
+        DelayLogGenerator generator = new DelayLogGenerator(DelayLogGenerator.DEFAULT_SEED);
+        for (long i = 0; i < lines; i++) {
+            if (generator.next()) {
+                averager.addSample(generator.getEpochMillis(), generator.getLatency());
+            }
+        }
+    }
+
+    @Benchmark
+    public Stats stats() {
+        return averager.getStats();
+    }
+}
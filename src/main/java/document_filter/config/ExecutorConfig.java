@@ -0,0 +1,36 @@
+package document_filter.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService metricsFileExecutor(@Value("${metrics.processing.threads:0}") int threads,
+                                               @Value("${metrics.processing.virtualThreads:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            // Para discos/FS remotos donde el análisis queda bloqueado en I/O
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("metrics-file-", 0).factory());
+        }
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(size, Thread.ofPlatform().name("metrics-file-", 0).daemon(true).factory());
+    }
+
+    /** Jobs de reporte: pocos hilos y cola acotada; con la cola llena el pedido se rechaza. */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService reportJobExecutor(@Value("${metrics.jobs.threads:1}") int threads,
+                                             @Value("${metrics.jobs.queueCapacity:16}") int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("report-job-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
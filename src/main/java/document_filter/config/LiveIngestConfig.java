@@ -0,0 +1,49 @@
+package document_filter.config;
+
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.LiveAggregator;
+import document_filter.latency.LiveIngestServer;
+import document_filter.latency.SpikeDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/** Sólo con {@code metrics.live.enabled=true}: el buffer circular y el hilo escritor se reservan al arrancar. */
+@Configuration
+@ConditionalOnProperty(name = "metrics.live.enabled", havingValue = "true")
+public class LiveIngestConfig {
+
+    @Bean(destroyMethod = "close")
+    public LiveAggregator liveAggregator(@Value("${metrics.latency.windowSizeSeconds:1}") int windowSeconds,
+                                         @Value("${metrics.live.retentionSeconds:3600}") int retentionSeconds,
+                                         @Value("${metrics.live.ringCapacity:1048576}") int ringCapacity,
+                                         @Value("${metrics.window.sketchDigits:1}") int sketchDigits,
+                                         @Value("${metrics.live.publishIntervalMillis:100}") long publishIntervalMillis,
+                                         @Value("${metrics.spikes.threshold:1.0}") double spikeThreshold,
+                                         @Value("${metrics.spikes.alpha:0.05}") double spikeAlpha,
+                                         @Value("${metrics.spikes.warmupWindows:30}") int spikeWarmupWindows,
+                                         @Value("${metrics.spikes.maxRecorded:1000}") int maxRecordedSpikes) {
+        SpikeDetector spikeDetector = new SpikeDetector(spikeThreshold, spikeAlpha, spikeWarmupWindows, windowSeconds,
+                maxRecordedSpikes);
+        LiveAggregator aggregator = new LiveAggregator(windowSeconds, retentionSeconds, ringCapacity, sketchDigits,
+                publishIntervalMillis, LatencyWindowAverager.DEFAULT_ZONE, spikeDetector);
+        aggregator.start();
+        return aggregator;
+    }
+
+    /** Con {@code metrics.live.tcpPort} negativo el socket no se abre y sólo queda la ingesta HTTP. */
+    @Bean(destroyMethod = "close")
+    public LiveIngestServer liveIngestServer(LiveAggregator aggregator,
+                                             @Value("${metrics.live.tcpPort:-1}") int port,
+                                             @Value("${metrics.live.bindAddress:127.0.0.1}") String bindAddress) throws IOException {
+        LiveIngestServer server = new LiveIngestServer(aggregator, InetAddress.getByName(bindAddress), port);
+        if (port >= 0) {
+            server.start();
+        }
+        return server;
+    }
+}
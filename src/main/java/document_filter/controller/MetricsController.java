@@ -1,46 +1,214 @@
 package document_filter.controller;
 
 import document_filter.files.MetricsService;
+import document_filter.files.ReportJob;
+import document_filter.files.ReportJobService;
+import document_filter.files.ReportJobStatus;
+import document_filter.files.WindowQuery;
+import document_filter.latency.LiveAggregator;
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.LiveSnapshot;
+import document_filter.latency.ShardCoordinator;
+import document_filter.latency.ShardRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @CrossOrigin("*")
 @RequestMapping("/api/metrics")
 public class MetricsController {
+    // Marca las respuestas armadas por muestreo (?approximate=true)
+    private static final String APPROXIMATE_HEADER = "X-Report-Approximate";
 
     private final MetricsService metricsService;
+    private final ReportJobService reportJobService;
+    // Null con metrics.live.enabled=false
+    private final LiveAggregator liveAggregator;
 
-    public MetricsController(MetricsService metricsService) {
+    public MetricsController(MetricsService metricsService, ReportJobService reportJobService,
+                             ObjectProvider<LiveAggregator> liveAggregator) {
         this.metricsService = metricsService;
+        this.reportJobService = reportJobService;
+        this.liveAggregator = liveAggregator.getIfAvailable();
     }
-    @Operation(summary = "Exporta métricas diarias a Excel", description = "Genera y retorna un archivo .xlsx con resumen de latencias")
-    @ApiResponse(responseCode = "200", description = "Excel generado correctamente")
-    @PostMapping("/daily-metrics")
-    public ResponseEntity<Resource> getDailyMetrics() {
-        String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        String fileName = "report-" + date + ".xlsx";
+    @Operation(summary = "Ventanas de un archivo en NDJSON o CSV",
+            description = "Transmite las ventanas de {file}/{log} (por defecto delay.log; también rotados y .gz/.zst) "
+                    + "en el rango [from, to) con la resolución pedida (segundos)")
+    @ApiResponse(responseCode = "200", description = "Ventanas en streaming")
+    @GetMapping("/windows")
+    public ResponseEntity<StreamingResponseBody> getWindows(@RequestParam("file") String file,
+                                                            @RequestParam(value = "log", required = false) String log,
+                                                            @RequestParam(value = "from", required = false) String from,
+                                                            @RequestParam(value = "to", required = false) String to,
+                                                            @RequestParam(value = "resolution", required = false) Integer resolution,
+                                                            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        WindowQuery query;
+        try {
+            query = metricsService.windowQuery(file, log, from, to, resolution, format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (query == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-        InputStreamResource resource = metricsService.getDailyMetrics();
-        if (resource == null) {
+        StreamingResponseBody body = out -> metricsService.streamWindows(query, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(query.format().getMediaType()))
+                .body(body);
+    }
+
+    @Operation(summary = "Parcial de un delay.log para el coordinador",
+            description = "Estado agregado (ventanas, histograma o muestras y contadores) del rango [from, to) de "
+                    + "{file}, serializado para combinarse con los parciales de otros workers")
+    @ApiResponse(responseCode = "200", description = "Parcial serializado")
+    @GetMapping("/partial")
+    public ResponseEntity<StreamingResponseBody> getPartial(ShardRequest request) throws IOException {
+        LatencyWindowAverager partial;
+        try {
+            partial = metricsService.readPartial(request);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (partial == null) {
             return ResponseEntity.notFound().build();
         }
+        StreamingResponseBody body = out -> ShardCoordinator.writePartial(partial, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    @Operation(summary = "Ingesta en vivo",
+            description = "Registros de delay.log separados por '\\n' en el cuerpo (admite transferencia chunked)")
+    @PostMapping(value = "/live", consumes = MediaType.ALL_VALUE)
+    public LiveAggregator.IngestCounts ingestLive(InputStream body) throws IOException {
+        try {
+            return liveAggregator().ingest(body);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Ventanas en vivo", description = "Últimas ventanas agregadas en memoria con P50/P99/máximo")
+    @GetMapping("/live")
+    public LiveSnapshot getLive(@RequestParam(name = "windows", defaultValue = "60") int windows) {
+        if (windows <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cantidad de ventanas inválida: " + windows);
+        }
+        return liveAggregator().snapshot().last(windows);
+    }
 
+    private LiveAggregator liveAggregator() {
+        if (liveAggregator == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ingesta en vivo deshabilitada (metrics.live.enabled=false)");
+        }
+        return liveAggregator;
+    }
+
+    @Operation(summary = "Tendencia de varios días a Excel",
+            description = "Arma el reporte de tendencia de los últimos días sólo con el historial guardado")
+    @ApiResponse(responseCode = "200", description = "Excel generado correctamente")
+    @GetMapping("/trend")
+    public ResponseEntity<Resource> getTrend(@RequestParam(value = "days", defaultValue = "7") int days) {
+        byte[] report;
+        try {
+            report = metricsService.getTrendReport(days);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        String fileName = "trend-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
                 .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(resource);
+                .body(new ByteArrayResource(report));
     }
 
+    @Operation(summary = "Encola la generación del reporte diario",
+            description = "Devuelve enseguida el job; si ya hay uno en curso con las mismas entradas, devuelve ese")
+    @ApiResponse(responseCode = "202", description = "Job aceptado")
+    @PostMapping("/jobs")
+    public ResponseEntity<ReportJobStatus> submitJob() {
+        ReportJob job;
+        try {
+            job = reportJobService.submit();
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Demasiados jobs en cola");
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/metrics/jobs/" + job.getId()))
+                .body(job.snapshot());
+    }
+
+    @Operation(summary = "Estado de un job", description = "Estado y avance por archivo")
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ReportJobStatus> getJob(@PathVariable("id") String id) {
+        ReportJob job = reportJobService.get(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.snapshot());
+    }
 
+    @Operation(summary = "Reporte generado por un job", description = "Disponible cuando el job terminó bien")
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<Resource> getJobResult(@PathVariable("id") String id) {
+        ReportJob job = reportJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != ReportJob.Status.SUCCEEDED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "El job está " + job.getStatus());
+        }
+        String fileName = "report-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(new ByteArrayResource(job.getResult()));
+    }
 
+    @Operation(summary = "Cancela un job", description = "Un job en cola no llega a correr; uno en curso se interrumpe")
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<ReportJobStatus> cancelJob(@PathVariable("id") String id) {
+        ReportJob job = reportJobService.cancel(id);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job.snapshot());
+    }
+
+    @Operation(summary = "Genera el reporte diario",
+            description = "Encola la generación como POST /jobs y devuelve 202 con el job; el .xlsx queda en "
+                    + "/jobs/{id}/result al terminar. Con approximate=true lo estima en segundos muestreando bloques "
+                    + "de cada archivo, con intervalos de confianza, y lo devuelve directamente")
+    @ApiResponse(responseCode = "202", description = "Job aceptado")
+    @ApiResponse(responseCode = "200", description = "Excel aproximado generado correctamente")
+    @PostMapping("/daily-metrics")
+    public ResponseEntity<?> getDailyMetrics(@RequestParam(value = "approximate", defaultValue = "false") boolean approximate) {
+        if (!approximate) {
+            return submitJob();
+        }
+        // El muestreo lee a lo sumo blocks * blockBytes por archivo: se responde en el mismo pedido
+        byte[] preview = metricsService.getPreviewReport();
+        if (preview == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String fileName = "preview-" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")) + ".xlsx";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .header(APPROXIMATE_HEADER, "true")
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(new ByteArrayResource(preview));
+    }
 }
@@ -0,0 +1,34 @@
+package document_filter.domain;
+
+import java.util.List;
+import java.util.Map;
+
+public class FileAnalysis {
+    public final String name;
+    // Ventanas por resolución en segundos, empezando por la del resumen
+    public final Map<Integer, List<WindowResult>> resultsByResolution;
+    public final Stats stats;
+    public final LatencyHistogram histogram;
+    public final double windowAvg;
+    public final long parsedLines;
+    public final long malformedLines;
+    public final long heapBytes;
+    // Ventanas de la resolución del resumen por encima de μ+kσ y los intervalos retenidos
+    public final long spikeWindows;
+    public final List<Spike> spikes;
+
+    public FileAnalysis(String name, Map<Integer, List<WindowResult>> resultsByResolution, Stats stats,
+                        LatencyHistogram histogram, double windowAvg, long parsedLines, long malformedLines,
+                        long heapBytes, long spikeWindows, List<Spike> spikes) {
+        this.name = name;
+        this.resultsByResolution = resultsByResolution;
+        this.stats = stats;
+        this.histogram = histogram;
+        this.windowAvg = windowAvg;
+        this.parsedLines = parsedLines;
+        this.malformedLines = malformedLines;
+        this.heapBytes = heapBytes;
+        this.spikeWindows = spikeWindows;
+        this.spikes = spikes;
+    }
+}
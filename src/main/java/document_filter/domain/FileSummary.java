@@ -0,0 +1,33 @@
+package document_filter.domain;
+
+/**
+ * Fila del resumen de un archivo: lo que queda de un {@link FileAnalysis} una vez volcadas sus ventanas.
+ */
+public class FileSummary {
+    public final String name;
+    public final Stats stats;
+    public final double windowAvg;
+    public final double messagesPerSecond;
+    // Histograma combinable del archivo para el historial; puede faltar
+    public final LatencyHistogram histogram;
+    // Ventanas por encima de μ+kσ (columna "Picos")
+    public final long spikeWindows;
+
+    public FileSummary(String name, Stats stats, double windowAvg, double messagesPerSecond) {
+        this(name, stats, windowAvg, messagesPerSecond, null);
+    }
+
+    public FileSummary(String name, Stats stats, double windowAvg, double messagesPerSecond, LatencyHistogram histogram) {
+        this(name, stats, windowAvg, messagesPerSecond, histogram, 0);
+    }
+
+    public FileSummary(String name, Stats stats, double windowAvg, double messagesPerSecond, LatencyHistogram histogram,
+                       long spikeWindows) {
+        this.name = name;
+        this.stats = stats;
+        this.windowAvg = windowAvg;
+        this.messagesPerSecond = messagesPerSecond;
+        this.histogram = histogram;
+        this.spikeWindows = spikeWindows;
+    }
+}
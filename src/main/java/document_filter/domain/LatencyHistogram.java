@@ -0,0 +1,306 @@
+package document_filter.domain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Histograma log-lineal de latencias (estilo HDR): los valores menores a 2^p se cuentan exactos y cada
+ * potencia de dos siguiente se parte en 2^(p-1) buckets, con error relativo máximo 1/2^(p-1). El array
+ * de contadores cubre sólo el rango de buckets observado, así que la memoria depende de la precisión y
+ * del rango de valores, nunca de la cantidad de muestras. Los valores negativos caen en el bucket 0
+ * (min, suma y suma de cuadrados siguen siendo exactos).
+ */
+public class LatencyHistogram {
+    private final int precisionBits;
+
+    private long[] counts = new long[0];
+    private int firstIndex;
+    private long totalCount;
+    private long sum;
+    private double sumOfSquares;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    /** @param significantDigits dígitos decimales significativos a conservar (1 a 5) */
+    public static LatencyHistogram withSignificantDigits(int significantDigits) {
+        return new LatencyHistogram(precisionBitsFor(significantDigits));
+    }
+
+    /** Bits de precisión que conservan {@code significantDigits} dígitos decimales (1 a 5). */
+    public static int precisionBitsFor(int significantDigits) {
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("Dígitos significativos fuera de rango (1-5): " + significantDigits);
+        }
+        return 1 + (int) Math.ceil(significantDigits * Math.log(10) / Math.log(2));
+    }
+
+    public LatencyHistogram(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 20) {
+            throw new IllegalArgumentException("Precisión fuera de rango (1-20 bits): " + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+    }
+
+    public int getPrecisionBits() {
+        return precisionBits;
+    }
+
+    public void record(int value) {
+        int index = indexOf(value);
+        ensureCovers(index, index);
+        counts[index - firstIndex]++;
+        totalCount++;
+        sum += value;
+        sumOfSquares += (double) value * value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    /** Suma los contadores de otro histograma de la misma precisión. */
+    public void add(LatencyHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("No se pueden combinar histogramas de distinta precisión: "
+                    + other.precisionBits + " vs " + precisionBits);
+        }
+        if (other.totalCount == 0) return;
+        ensureCovers(other.firstIndex, other.firstIndex + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.firstIndex + i - firstIndex] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Copia con {@code bits} de precisión, menor o igual a la propia: cada bucket fino cae entero en uno
+     * grueso, así que los percentiles quedan como si se hubiera registrado con {@code bits} desde el inicio.
+     */
+    public LatencyHistogram withPrecisionBits(int bits) {
+        if (bits > precisionBits) {
+            throw new IllegalArgumentException("No se puede aumentar la precisión: " + precisionBits + " a " + bits);
+        }
+        LatencyHistogram coarse = new LatencyHistogram(bits);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) continue;
+            int index = indexOf((int) lowestEquivalentValue(firstIndex + i), bits);
+            coarse.ensureCovers(index, index);
+            coarse.counts[index - coarse.firstIndex] += counts[i];
+        }
+        coarse.totalCount = totalCount;
+        coarse.sum = sum;
+        coarse.sumOfSquares = sumOfSquares;
+        coarse.min = min;
+        coarse.max = max;
+        return coarse;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getSumOfSquares() {
+        return sumOfSquares;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0.0 : (double) sum / totalCount;
+    }
+
+    /** Desvío estándar poblacional, igual que el cálculo exacto. */
+    public double getStdDev() {
+        if (totalCount == 0) return 0.0;
+        double mean = getMean();
+        return Math.sqrt(Math.max(0.0, sumOfSquares / totalCount - mean * mean));
+    }
+
+    /** Percentil por rango más cercano: el valor más alto equivalente del bucket que contiene el rango. */
+    public int getValueAtPercentile(double quantile) {
+        if (totalCount == 0) return 0;
+        long rank = rankOf(quantile);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return clampToRange(highestEquivalentValue(firstIndex + i));
+            }
+        }
+        return max;
+    }
+
+    /** Muestras en los buckets hasta el que contiene {@code value}, inclusive. */
+    public long getCountAtOrBelow(int value) {
+        int last = Math.min(indexOf(value) - firstIndex, counts.length - 1);
+        long count = 0;
+        for (int i = 0; i <= last; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    /** Stats completas recorriendo los buckets una sola vez. */
+    public Stats toStats() {
+        if (totalCount == 0) return new Stats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        long rank50 = rankOf(0.5);
+        long rank95 = rankOf(0.95);
+        long rank99 = rankOf(0.99);
+        long rank999 = rankOf(0.999);
+        int p50 = max, p95 = max, p99 = max, p999 = max;
+        int p95Bucket = -1;
+
+        long cumulative = 0;
+        double weightedSum = 0;
+        double weightedSumBeforeP95 = 0;
+        double weightedSumThroughP95 = 0;
+        long countThroughP95 = 0;
+        long countBeforeP95 = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long c = counts[i];
+            if (c == 0) continue;
+            long previous = cumulative;
+            cumulative += c;
+            int index = firstIndex + i;
+            double weighted = c * representativeValue(index);
+            if (previous < rank50 && cumulative >= rank50) p50 = clampToRange(highestEquivalentValue(index));
+            if (previous < rank95 && cumulative >= rank95) {
+                p95 = clampToRange(highestEquivalentValue(index));
+                p95Bucket = i;
+                countBeforeP95 = previous;
+                countThroughP95 = cumulative;
+                weightedSumBeforeP95 = weightedSum;
+                weightedSumThroughP95 = weightedSum + weighted;
+            }
+            if (previous < rank99 && cumulative >= rank99) p99 = clampToRange(highestEquivalentValue(index));
+            if (previous < rank999 && cumulative >= rank999) p999 = clampToRange(highestEquivalentValue(index));
+            weightedSum += weighted;
+        }
+
+        // Los valores del bucket de P95 cuentan tanto para "<= P95" como para ">= P95"
+        long aboveP95 = p95Bucket < 0 ? 0 : totalCount - countThroughP95;
+        double averageBelowP95 = countThroughP95 == 0 ? 0.0 : weightedSumThroughP95 / countThroughP95;
+        long countFromP95 = totalCount - countBeforeP95;
+        double averageUpperP95 = countFromP95 == 0 ? 0.0 : (weightedSum - weightedSumBeforeP95) / countFromP95;
+
+        return new Stats(getMean(), averageBelowP95, averageUpperP95, getStdDev(), max, min,
+                p50, p95, p99, p999, (int) aboveP95, (int) totalCount);
+    }
+
+    private long rankOf(double quantile) {
+        return Math.max(1, Math.min((long) Math.ceil(quantile * totalCount), totalCount));
+    }
+
+    private int clampToRange(long value) {
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+    /** Punto medio del bucket acotado al rango observado, usado para las medias condicionales. */
+    private double representativeValue(int index) {
+        long lowest = lowestEquivalentValue(index);
+        long highest = highestEquivalentValue(index);
+        double mid = lowest == highest ? lowest : (lowest + highest) / 2.0;
+        return Math.max(min, Math.min(max, mid));
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(precisionBits);
+        out.writeInt(firstIndex);
+        out.writeInt(counts.length);
+        for (long c : counts) {
+            out.writeLong(c);
+        }
+        out.writeLong(totalCount);
+        out.writeLong(sum);
+        out.writeDouble(sumOfSquares);
+        out.writeInt(min);
+        out.writeInt(max);
+    }
+
+    public static LatencyHistogram readFrom(DataInput in) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram(in.readInt());
+        histogram.firstIndex = in.readInt();
+        histogram.counts = new long[in.readInt()];
+        for (int i = 0; i < histogram.counts.length; i++) {
+            histogram.counts[i] = in.readLong();
+        }
+        histogram.totalCount = in.readLong();
+        histogram.sum = in.readLong();
+        histogram.sumOfSquares = in.readDouble();
+        histogram.min = in.readInt();
+        histogram.max = in.readInt();
+        return histogram;
+    }
+
+    public long estimatedHeapBytes() {
+        return 64 + 16 + 8L * counts.length;
+    }
+
+    int indexOf(int value) {
+        return indexOf(value, precisionBits);
+    }
+
+    long lowestEquivalentValue(int index) {
+        return lowestEquivalentValue(index, precisionBits);
+    }
+
+    long highestEquivalentValue(int index) {
+        return highestEquivalentValue(index, precisionBits);
+    }
+
+    // Aritmética de buckets compartida con los contadores compactos de Window
+    static int indexOf(int value, int precisionBits) {
+        if (value < 1 << precisionBits) {
+            return Math.max(value, 0);
+        }
+        int magnitude = 31 - Integer.numberOfLeadingZeros(value);
+        int shift = magnitude - precisionBits + 1;
+        return (shift << (precisionBits - 1)) + (value >>> shift);
+    }
+
+    static long lowestEquivalentValue(int index, int precisionBits) {
+        int shift = Math.max(0, (index >> (precisionBits - 1)) - 1);
+        long subBucket = index - ((long) shift << (precisionBits - 1));
+        return subBucket << shift;
+    }
+
+    static long highestEquivalentValue(int index, int precisionBits) {
+        int shift = Math.max(0, (index >> (precisionBits - 1)) - 1);
+        return lowestEquivalentValue(index, precisionBits) + (1L << shift) - 1;
+    }
+
+    private void ensureCovers(int fromIndex, int toIndex) {
+        if (counts.length == 0) {
+            counts = new long[Math.max(8, toIndex - fromIndex + 1)];
+            firstIndex = fromIndex;
+            return;
+        }
+        int lastIndex = firstIndex + counts.length - 1;
+        if (fromIndex >= firstIndex && toIndex <= lastIndex) return;
+
+        int newFirst = Math.min(firstIndex, fromIndex);
+        int newLast = Math.max(lastIndex, toIndex);
+        // Crece con margen para no copiar en cada bucket nuevo
+        int margin = Math.max(8, counts.length / 2);
+        if (newFirst < firstIndex) newFirst = Math.max(0, newFirst - margin);
+        if (newLast > lastIndex) newLast += margin;
+        long[] grown = new long[newLast - newFirst + 1];
+        System.arraycopy(counts, 0, grown, firstIndex - newFirst, counts.length);
+        counts = grown;
+        firstIndex = newFirst;
+    }
+}
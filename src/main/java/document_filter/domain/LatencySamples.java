@@ -0,0 +1,99 @@
+package document_filter.domain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.IntConsumer;
+
+/** Latencias crudas de un archivo, para las Stats exactas. Sin boxing y sin copiar lo ya guardado. */
+public class LatencySamples {
+    // Chunks que crecen al doble hasta MAX_CHUNK
+    private static final int FIRST_CHUNK = 16;
+    private static final int MAX_CHUNK = 8192;
+
+    private int[][] chunks = new int[4][];
+    private int chunkCount;
+    private int lastChunkSize;
+    private int count;
+
+    public void add(int latency) {
+        if (chunkCount == 0 || lastChunkSize == chunks[chunkCount - 1].length) {
+            addChunk();
+        }
+        chunks[chunkCount - 1][lastChunkSize++] = latency;
+        count++;
+    }
+
+    /** Agrega las muestras de {@code other} a continuación de las propias. */
+    public void addAll(LatencySamples other) {
+        for (int c = 0; c < other.chunkCount; c++) {
+            int[] chunk = other.chunks[c];
+            int length = c == other.chunkCount - 1 ? other.lastChunkSize : chunk.length;
+            for (int i = 0; i < length; i++) {
+                add(chunk[i]);
+            }
+        }
+    }
+
+    private void addChunk() {
+        int size = chunkCount == 0 ? FIRST_CHUNK : Math.min(chunks[chunkCount - 1].length * 2, MAX_CHUNK);
+        if (chunkCount == chunks.length) {
+            int[][] grown = new int[chunks.length * 2][];
+            System.arraycopy(chunks, 0, grown, 0, chunkCount);
+            chunks = grown;
+        }
+        chunks[chunkCount++] = new int[size];
+        lastChunkSize = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int c = 0; c < chunkCount; c++) {
+            int length = c == chunkCount - 1 ? lastChunkSize : chunks[c].length;
+            for (int i = 0; i < length; i++) {
+                consumer.accept(chunks[c][i]);
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] all = new int[count];
+        int offset = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            int length = c == chunkCount - 1 ? lastChunkSize : chunks[c].length;
+            System.arraycopy(chunks[c], 0, all, offset, length);
+            offset += length;
+        }
+        return all;
+    }
+
+    public long estimatedHeapBytes() {
+        long bytes = 32 + 16 + 8L * chunks.length;
+        for (int c = 0; c < chunkCount; c++) {
+            bytes += 16 + 4L * chunks[c].length;
+        }
+        return bytes;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(count);
+        for (int c = 0; c < chunkCount; c++) {
+            int length = c == chunkCount - 1 ? lastChunkSize : chunks[c].length;
+            for (int i = 0; i < length; i++) {
+                out.writeInt(chunks[c][i]);
+            }
+        }
+    }
+
+    public static LatencySamples readFrom(DataInput in) throws IOException {
+        LatencySamples samples = new LatencySamples();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            samples.add(in.readInt());
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,47 @@
+package document_filter.domain;
+
+/**
+ * Resultado aproximado de un archivo: el resumen estimado a partir de bloques muestreados y los
+ * intervalos de confianza del promedio y los percentiles.
+ */
+public class PreviewEstimate {
+    public final FileSummary summary;
+    public final long fileBytes;
+    public final long sampledBytes;
+    public final int blocks;
+    public final double confidence;
+    public final double meanLow;
+    public final double meanHigh;
+    public final int p50Low;
+    public final int p50High;
+    public final int p95Low;
+    public final int p95High;
+    public final int p99Low;
+    public final int p99High;
+    public final int p999Low;
+    public final int p999High;
+
+    public PreviewEstimate(FileSummary summary, long fileBytes, long sampledBytes, int blocks, double confidence,
+                           double meanLow, double meanHigh, int p50Low, int p50High, int p95Low, int p95High,
+                           int p99Low, int p99High, int p999Low, int p999High) {
+        this.summary = summary;
+        this.fileBytes = fileBytes;
+        this.sampledBytes = sampledBytes;
+        this.blocks = blocks;
+        this.confidence = confidence;
+        this.meanLow = meanLow;
+        this.meanHigh = meanHigh;
+        this.p50Low = p50Low;
+        this.p50High = p50High;
+        this.p95Low = p95Low;
+        this.p95High = p95High;
+        this.p99Low = p99Low;
+        this.p99High = p99High;
+        this.p999Low = p999Low;
+        this.p999High = p999High;
+    }
+
+    public double getSampledFraction() {
+        return fileBytes == 0 ? 1.0 : (double) sampledBytes / fileBytes;
+    }
+}
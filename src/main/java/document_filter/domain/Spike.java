@@ -0,0 +1,30 @@
+package document_filter.domain;
+
+import java.time.Instant;
+
+/** Intervalo de ventanas consecutivas por encima del umbral μ+kσ de la línea base. */
+public class Spike {
+    public final Instant start;
+    public final long durationSeconds;
+    public final int windows;
+    // Promedio de la peor ventana y el umbral vigente cuando empezó el pico
+    public final double peakLatency;
+    public final Instant peakWindowStart;
+    public final double threshold;
+
+    public Spike(Instant start, long durationSeconds, int windows, double peakLatency, Instant peakWindowStart,
+                 double threshold) {
+        this.start = start;
+        this.durationSeconds = durationSeconds;
+        this.windows = windows;
+        this.peakLatency = peakLatency;
+        this.peakWindowStart = peakWindowStart;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Spike starting at %s: %ds, windows=%d, peak=%.2f ms at %s, threshold=%.2f ms",
+                start, durationSeconds, windows, peakLatency, peakWindowStart, threshold);
+    }
+}
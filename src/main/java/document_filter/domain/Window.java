@@ -1,36 +1,165 @@
 package document_filter.domain;
 
 import lombok.Getter;
-import lombok.Setter;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 
-@Setter
-@Getter
+/**
+ * Ventana de tiempo resumida en un histograma de baja precisión: cantidad, suma, suma de cuadrados,
+ * mínimo y máximo exactos y percentiles aproximados. Los buckets son los de {@link LatencyHistogram}, pero
+ * con contadores int sobre el rango exacto observado (sin margen): con 1 dígito son unos cientos de bytes
+ * por ventana. La memoria depende de la precisión y del rango de latencias, no de cuántos mensajes caen
+ * en la ventana.
+ */
 public class Window {
-    private long startEpochMillis;
-    private List<Integer> latencies = new ArrayList<>();
+    private static final int[] EMPTY = new int[0];
 
-    public Window(long startEpochMillis) {
+    @Getter
+    private final long startEpochMillis;
+    private final int precisionBits;
+    private int[] counts = EMPTY;
+    private int firstIndex;
+    private int count;
+    private long sum;
+    private double sumOfSquares;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    public Window(long startEpochMillis, int sketchPrecisionBits) {
+        if (sketchPrecisionBits < 1 || sketchPrecisionBits > 20) {
+            throw new IllegalArgumentException("Precisión fuera de rango (1-20 bits): " + sketchPrecisionBits);
+        }
         this.startEpochMillis = startEpochMillis;
+        this.precisionBits = sketchPrecisionBits;
     }
 
     public void add(int latency) {
-        latencies.add(latency);
+        int index = LatencyHistogram.indexOf(latency, precisionBits);
+        ensureCovers(index, index);
+        counts[index - firstIndex]++;
+        count++;
+        sum += latency;
+        sumOfSquares += (double) latency * latency;
+        if (latency < min) min = latency;
+        if (latency > max) max = latency;
+    }
+
+    /** Combina el resumen de otra ventana; sirve también para agrupar ventanas en una más larga. */
+    public void addAll(Window other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("No se pueden combinar ventanas de distinta precisión: "
+                    + other.precisionBits + " vs " + precisionBits);
+        }
+        if (other.count == 0) return;
+        ensureCovers(other.firstIndex, other.firstIndex + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.firstIndex + i - firstIndex] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /** Ventana vacía de la misma precisión, para acumular ventanas agrupadas. */
+    public Window emptyCopy(long startEpochMillis) {
+        return new Window(startEpochMillis, precisionBits);
     }
 
     double getAverage() {
-        return latencies.stream().mapToInt(i -> i).average().orElse(0.0);
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /** Desvío estándar poblacional, igual que el del histograma del archivo. */
+    double getStdDev() {
+        if (count == 0) return 0.0;
+        double mean = getAverage();
+        return Math.sqrt(Math.max(0.0, sumOfSquares / count - mean * mean));
+    }
+
+    /** Percentil por rango más cercano, con la misma definición que {@link LatencyHistogram}. */
+    int getValueAtPercentile(double quantile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, Math.min((long) Math.ceil(quantile * count), count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                long highest = LatencyHistogram.highestEquivalentValue(firstIndex + i, precisionBits);
+                return (int) Math.max(min, Math.min(max, highest));
+            }
+        }
+        return max;
+    }
+
+    /** Estimación del heap retenido por la ventana y sus contadores. */
+    public long estimatedHeapBytes() {
+        return 64 + (counts.length == 0 ? 0 : 16 + 4L * counts.length);
     }
 
-    int getCount() {
-        return latencies.size();
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(startEpochMillis);
+        out.writeInt(precisionBits);
+        out.writeInt(firstIndex);
+        out.writeInt(counts.length);
+        for (int c : counts) {
+            out.writeInt(c);
+        }
+        out.writeInt(count);
+        out.writeLong(sum);
+        out.writeDouble(sumOfSquares);
+        out.writeInt(min);
+        out.writeInt(max);
+    }
+
+    public static Window readFrom(DataInput in) throws IOException {
+        Window window = new Window(in.readLong(), in.readInt());
+        window.firstIndex = in.readInt();
+        window.counts = new int[in.readInt()];
+        for (int i = 0; i < window.counts.length; i++) {
+            window.counts[i] = in.readInt();
+        }
+        window.count = in.readInt();
+        window.sum = in.readLong();
+        window.sumOfSquares = in.readDouble();
+        window.min = in.readInt();
+        window.max = in.readInt();
+        return window;
     }
 
     public WindowResult toResult() {
-        return new WindowResult(Instant.ofEpochMilli(startEpochMillis), getAverage(), getCount());
+        return new WindowResult(Instant.ofEpochMilli(startEpochMillis), getAverage(), getCount(),
+                getValueAtPercentile(0.5), getValueAtPercentile(0.99), max, getStdDev());
+    }
+
+    // Crece justo hasta el rango pedido: las ventanas son muchas y cada una ve pocos buckets distintos
+    private void ensureCovers(int fromIndex, int toIndex) {
+        if (counts.length == 0) {
+            counts = new int[toIndex - fromIndex + 1];
+            firstIndex = fromIndex;
+            return;
+        }
+        int lastIndex = firstIndex + counts.length - 1;
+        if (fromIndex >= firstIndex && toIndex <= lastIndex) return;
+
+        int newFirst = Math.min(firstIndex, fromIndex);
+        int newLast = Math.max(lastIndex, toIndex);
+        int[] grown = new int[newLast - newFirst + 1];
+        System.arraycopy(counts, 0, grown, firstIndex - newFirst, counts.length);
+        counts = grown;
+        firstIndex = newFirst;
     }
 
 }
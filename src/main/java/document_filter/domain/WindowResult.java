@@ -6,16 +6,26 @@ public class WindowResult {
     public final Instant windowStart;
     public final double averageLatency;
     public final int count;
+    // Percentiles aproximados por el histograma de la ventana; max y desvío son exactos
+    public final int p50Latency;
+    public final int p99Latency;
+    public final int maxLatency;
+    public final double stdDev;
 
-    public WindowResult(Instant windowStart, double averageLatency, int count) {
+    public WindowResult(Instant windowStart, double averageLatency, int count,
+                        int p50Latency, int p99Latency, int maxLatency, double stdDev) {
         this.windowStart = windowStart;
         this.averageLatency = averageLatency;
         this.count = count;
+        this.p50Latency = p50Latency;
+        this.p99Latency = p99Latency;
+        this.maxLatency = maxLatency;
+        this.stdDev = stdDev;
     }
 
     @Override
     public String toString() {
-        return String.format("Window starting at %s: count=%d, avg=%.2f ms",
-                windowStart, count,averageLatency);
+        return String.format("Window starting at %s: count=%d, avg=%.2f ms, p50=%d, p99=%d, max=%d, std=%.2f",
+                windowStart, count, averageLatency, p50Latency, p99Latency, maxLatency, stdDev);
     }
-}
\ No newline at end of file
+}
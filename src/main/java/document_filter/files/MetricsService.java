@@ -1,58 +1,355 @@
 package document_filter.files;
 
+import document_filter.domain.FileSummary;
+import document_filter.domain.PreviewEstimate;
+import document_filter.latency.DelayLogFiles;
+import document_filter.latency.DelayLogRange;
+import document_filter.latency.IncrementalIngester;
+import document_filter.latency.LatencyColumnStore;
 import document_filter.latency.LatencyExcelExporter;
+import document_filter.latency.LatencyWindowAverager;
+import document_filter.latency.MetricsHistory;
+import document_filter.latency.PipelineMetrics;
+import document_filter.latency.ProcessingOptions;
+import document_filter.latency.ProgressListener;
+import document_filter.latency.ReportTemplateCache;
+import document_filter.latency.SampledPreview;
+import document_filter.latency.ShardCoordinator;
+import document_filter.latency.ShardRequest;
+import document_filter.latency.StatsMode;
+import document_filter.latency.WindowResultFormat;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 @Component
 public class MetricsService {
 
     @Value("${metrics.latency.windowSizeSeconds:1}")
     private int windowSizeSeconds;
+    @Value("${metrics.latency.resolutions:}")
+    private List<Integer> resolutions;
+    @Value("${metrics.parse.parallelism:1}")
+    private int parseParallelism;
+    @Value("${metrics.processing.maxInFlightFiles:4}")
+    private int maxInFlightFiles;
+    @Value("${metrics.stats.mode:EXACT}")
+    private StatsMode statsMode;
+    @Value("${metrics.stats.histogramDigits:3}")
+    private int histogramDigits;
+    @Value("${metrics.window.sketchDigits:1}")
+    private int windowSketchDigits;
+    @Value("${metrics.excel.rowAccessWindow:500}")
+    private int rowAccessWindow;
+    @Value("${metrics.spikes.threshold:1.0}")
+    private double spikeThreshold;
+    @Value("${metrics.spikes.alpha:0.05}")
+    private double spikeAlpha;
+    @Value("${metrics.spikes.warmupWindows:30}")
+    private int spikeWarmupWindows;
+    @Value("${metrics.spikes.maxRecorded:1000}")
+    private int maxRecordedSpikes;
+    @Value("${metrics.preview.blocks:64}")
+    private int previewBlocks;
+    @Value("${metrics.preview.blockBytes:1048576}")
+    private long previewBlockBytes;
     @Value("${input.folder.path}")
     private String inputFolderPath;
     @Value("${report.file.path}")
     private String reportFilePath;
-    @Value("${summary.file.path}")
+    // Opcional: vacío evita escribir el resumen intermedio con las hojas de ventanas
+    @Value("${summary.file.path:}")
     private String summaryFilePath;
     @Value("${output.directory}")
     private String outputDirectory;
 
-    @Scheduled(cron = "0 0 18 * * *", zone = "America/Argentina/Buenos_Aires")
-    public void generateDailyMetrics() {
-        LatencyExcelExporter.processDirectory(inputFolderPath, windowSizeSeconds, summaryFilePath);
-        LatencyExcelExporter.copySummaryToExistingExcel(summaryFilePath, reportFilePath, outputDirectory);
+    private final ExecutorService metricsFileExecutor;
+    private final IncrementalIngester ingester;
+    private final LatencyColumnStore columnStore;
+    private final MetricsHistory history;
+    private final ReportCache<ReportKey> reportCache;
+    private final PipelineMetrics pipelineMetrics;
+    private final ShardCoordinator shardCoordinator;
+
+    public MetricsService(@Qualifier("metricsFileExecutor") ExecutorService metricsFileExecutor,
+                          @Value("${metrics.incremental.enabled:false}") boolean incremental,
+                          @Value("${metrics.incremental.stateDirectory:state/}") String stateDirectory,
+                          @Value("${metrics.store.enabled:false}") boolean columnStoreEnabled,
+                          @Value("${metrics.store.directory:store/}") String columnStoreDirectory,
+                          @Value("${metrics.history.directory:history/}") String historyDirectory,
+                          @Value("${metrics.cache.maxEntries:8}") int cacheMaxEntries,
+                          @Value("${metrics.shard.workers:}") List<String> shardWorkers,
+                          @Value("${metrics.shard.rangeBytes:268435456}") long shardRangeBytes,
+                          @Value("${metrics.shard.timeoutSeconds:600}") long shardTimeoutSeconds,
+                          @Value("${metrics.shard.inFlightPerWorker:2}") int shardInFlightPerWorker,
+                          PipelineMetrics pipelineMetrics) {
+        this.metricsFileExecutor = metricsFileExecutor;
+        this.pipelineMetrics = pipelineMetrics;
+        this.ingester = incremental ? new IncrementalIngester(Path.of(stateDirectory)) : null;
+        this.columnStore = columnStoreEnabled ? new LatencyColumnStore(Path.of(columnStoreDirectory)) : null;
+        this.history = new MetricsHistory(Path.of(historyDirectory));
+        this.reportCache = new ReportCache<>(cacheMaxEntries);
+        this.shardCoordinator = shardWorkers.isEmpty() ? null
+                : new ShardCoordinator(shardWorkers, shardRangeBytes, Duration.ofSeconds(shardTimeoutSeconds),
+                shardInFlightPerWorker);
+    }
+
+    /**
+     * Bytes del reporte del día. Mientras no cambien los delay.log, el template ni la configuración se
+     * sirve el reporte ya generado; pedidos simultáneos comparten una sola generación (y el avance sólo
+     * se informa a quien la ejecuta).
+     */
+    byte[] dailyReport(ProgressListener progress) {
+        return reportCache.get(reportKey(), () -> generateReport(progress));
     }
-    public InputStreamResource getDailyMetrics() {
-        LatencyExcelExporter.processDirectory(inputFolderPath, windowSizeSeconds, summaryFilePath);
-        LatencyExcelExporter.copySummaryToExistingExcel(summaryFilePath, reportFilePath, outputDirectory);
 
+    private byte[] generateReport(ProgressListener progress) {
+        // Claves distintas escriben los mismos archivos de salida: se generan de a una
+        synchronized (reportCache) {
+            pipelineMetrics.runStarted();
+            long start = System.nanoTime();
+            ProcessingOptions options = processingOptions();
+            options.setProgressListener(progress);
+            List<FileSummary> summaries = LatencyExcelExporter.processDirectory(inputFolderPath, summaryFilePath, options);
+            String reportPath = LatencyExcelExporter.writeReport(summaries, reportFilePath, outputDirectory, pipelineMetrics);
+            pipelineMetrics.stage(PipelineMetrics.Stage.RUN, System.nanoTime() - start);
+            recordHistory(summaries);
+            try {
+                return Files.readAllBytes(Path.of(reportPath));
+            } catch (IOException e) {
+                System.err.println("No se pudo leer el reporte generado: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Reporte aproximado del día muestreando bloques de cada delay.log (ver {@link SampledPreview}): el
+     * costo no depende del tamaño de los archivos. No pasa por el caché ni el historial ni se escribe en
+     * output.directory. Null si no hay archivos.
+     */
+    public byte[] getPreviewReport() {
+        Map<String, File> delayLogs = LatencyExcelExporter.findDelayLogs(inputFolderPath);
+        if (delayLogs.isEmpty()) {
+            return null;
+        }
+        ProcessingOptions options = processingOptions();
+        List<String> skipped = new ArrayList<>();
+        List<Future<PreviewEstimate>> futures = new ArrayList<>();
+        for (Map.Entry<String, File> entry : delayLogs.entrySet()) {
+            if (DelayLogFiles.isCompressed(entry.getValue())) {
+                skipped.add(entry.getKey());
+                continue;
+            }
+            futures.add(metricsFileExecutor.submit(() -> {
+                try {
+                    return SampledPreview.estimate(entry.getKey(), entry.getValue(), options, previewBlocks, previewBlockBytes);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }));
+        }
+        List<PreviewEstimate> estimates = new ArrayList<>();
         try {
-            String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            String fileName = "report-" + date + ".xlsx"; // <-- asegurate que el archivo tenga extensión
-            File file = new File(outputDirectory + fileName);
+            for (Future<PreviewEstimate> future : futures) {
+                PreviewEstimate estimate = future.get();
+                if (estimate != null) estimates.add(estimate);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Vista previa interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error al muestrear los archivos", e.getCause());
+        }
+        return LatencyExcelExporter.writePreviewReport(estimates, skipped, reportFilePath);
+    }
 
-            System.out.println("Buscando archivo: " + file.getAbsolutePath());
+    /** Reporte de tendencia de los últimos {@code days} días (hoy incluido), sólo desde el historial. */
+    public byte[] getTrendReport(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Cantidad de días inválida: " + days);
+        }
+        LocalDate today = LocalDate.now();
+        try {
+            return LatencyExcelExporter.writeTrendReport(history.load(today.minusDays(days - 1L), today));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al leer el historial", e);
+        }
+    }
 
-            if (!file.exists()) {
-                System.err.println("Archivo no encontrado!");
-                return null;
+    private void recordHistory(List<FileSummary> summaries) {
+        try {
+            history.record(LocalDate.now(), summaries);
+        } catch (IOException e) {
+            // El reporte del día ya está generado: un historial incompleto no debe hacerlo fallar
+            System.err.println("No se pudo guardar el historial: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Valida los parámetros de una consulta de ventanas. {@code file} es el nombre de la carpeta del
+     * instrumento; {@code from}/{@code to} son instantes ISO o fecha-hora local de la zona de los logs.
+     * Devuelve null si el archivo no existe.
+     */
+    public WindowQuery windowQuery(String file, String log, String from, String to, Integer resolution, String format) {
+        String name = file + "/" + (log == null ? DelayLogFiles.CURRENT : log);
+        File delayLog = LatencyExcelExporter.findDelayLogs(inputFolderPath).get(name);
+        if (delayLog == null) {
+            return null;
+        }
+        int resolutionSeconds = resolution == null ? windowSizeSeconds : resolution;
+        if (resolutionSeconds <= 0) {
+            throw new IllegalArgumentException("Resolución inválida: " + resolutionSeconds);
+        }
+        long resolutionMillis = resolutionSeconds * 1000L;
+        // El rango se extiende a ventanas completas
+        long fromMillis = from == null ? Long.MIN_VALUE : Math.floorDiv(parseInstant(from), resolutionMillis) * resolutionMillis;
+        long toMillis = to == null ? Long.MAX_VALUE : Math.ceilDiv(parseInstant(to), resolutionMillis) * resolutionMillis;
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("Rango inválido: " + from + " > " + to);
+        }
+        return new WindowQuery(name, delayLog, fromMillis, toMillis, resolutionSeconds, WindowResultFormat.parse(format));
+    }
+
+    /**
+     * Escribe las ventanas del rango a medida que se recorren. Sólo se parsea el tramo del archivo que
+     * corresponde al rango; la escritura bloqueante sobre {@code out} frena al productor si el cliente
+     * lee más lento.
+     */
+    public void streamWindows(WindowQuery query, OutputStream out) throws IOException {
+        ProcessingOptions options = new ProcessingOptions(query.resolutionSeconds());
+        // Sólo interesan las ventanas: el histograma evita guardar las muestras del rango
+        options.setStatsMode(StatsMode.HISTOGRAM);
+        options.setWindowSketchDigits(windowSketchDigits);
+        ForkJoinPool parsePool = parseParallelism > 1 ? new ForkJoinPool(parseParallelism) : null;
+        LatencyWindowAverager averager;
+        try {
+            if (columnStore != null) {
+                averager = LatencyColumnStore.read(columnStore.prepare(query.name(), query.file()),
+                        query.fromMillis(), query.toMillis(), options::newAverager, parsePool);
+            } else if (DelayLogFiles.isCompressed(query.file())) {
+                // Sin acceso aleatorio: se descomprime entero y el rango se filtra al escribir
+                averager = DelayLogFiles.parse(query.file(), options::newAverager, parsePool);
+            } else {
+                averager = DelayLogRange.read(query.file().toPath(), query.fromMillis(), query.toMillis(),
+                        LatencyWindowAverager.DEFAULT_ZONE, options::newAverager, parsePool);
+            }
+        } finally {
+            if (parsePool != null) parsePool.shutdown();
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        query.format().writeHeader(writer);
+        try {
+            averager.forEachResult(query.resolutionSeconds(), result -> {
+                long start = result.windowStart.toEpochMilli();
+                if (start < query.fromMillis() || start >= query.toMillis()) {
+                    return;
+                }
+                try {
+                    query.format().write(result, writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Parcial que pide un coordinador sobre un delay.log de la carpeta de entrada propia, agregado con la
+     * configuración que viene en el pedido; null si el archivo no existe acá.
+     */
+    public LatencyWindowAverager readPartial(ShardRequest request) throws IOException {
+        File delayLog = LatencyExcelExporter.findDelayLogs(inputFolderPath).get(request.file());
+        if (delayLog == null) {
+            return null;
+        }
+        ProcessingOptions options = request.toOptions();
+        options.setMetrics(pipelineMetrics);
+        ForkJoinPool parsePool = parseParallelism > 1 ? new ForkJoinPool(parseParallelism) : null;
+        try {
+            return LatencyExcelExporter.readRange(delayLog, request.from(), request.to(), options, parsePool);
+        } finally {
+            if (parsePool != null) parsePool.shutdown();
+        }
+    }
+
+    private static long parseInstant(String value) {
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(value).atZone(LatencyWindowAverager.DEFAULT_ZONE).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("Fecha inválida: " + value);
             }
+        }
+    }
 
-            return new InputStreamResource(new FileInputStream(file));
-        } catch (FileNotFoundException ex) {
-            ex.printStackTrace();
+    /** Identifica las entradas del reporte del día: iguales entradas, mismo reporte. */
+    ReportKey reportKey() {
+        List<String> fingerprints = new ArrayList<>();
+        String templateVersion;
+        try {
+            for (Map.Entry<String, File> entry : LatencyExcelExporter.findDelayLogs(inputFolderPath).entrySet()) {
+                BasicFileAttributes attributes = Files.readAttributes(entry.getValue().toPath(), BasicFileAttributes.class);
+                fingerprints.add(entry.getKey() + ":" + attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+            }
+            templateVersion = ReportTemplateCache.version(Path.of(reportFilePath));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al leer los archivos de entrada", e);
         }
+        Collections.sort(fingerprints);
+        return new ReportKey(LocalDate.now(), windowSizeSeconds, List.copyOf(resolutions), statsMode, histogramDigits,
+                templateVersion, fingerprints);
+    }
+
+    private ProcessingOptions processingOptions() {
+        ProcessingOptions options = new ProcessingOptions(windowSizeSeconds);
+        options.setResolutions(resolutions);
+        options.setParseParallelism(parseParallelism);
+        options.setFileExecutor(metricsFileExecutor);
+        options.setMaxInFlightFiles(maxInFlightFiles);
+        options.setStatsMode(statsMode);
+        options.setHistogramDigits(histogramDigits);
+        options.setWindowSketchDigits(windowSketchDigits);
+        options.setRowAccessWindow(rowAccessWindow);
+        options.setSpikeThreshold(spikeThreshold);
+        options.setSpikeAlpha(spikeAlpha);
+        options.setSpikeWarmupWindows(spikeWarmupWindows);
+        options.setMaxRecordedSpikes(maxRecordedSpikes);
+        options.setIngester(ingester);
+        options.setColumnStore(columnStore);
+        options.setShardCoordinator(shardCoordinator);
+        options.setMetrics(pipelineMetrics);
+        return options;
+    }
 
-        return null;
+    record ReportKey(LocalDate date, int windowSeconds, List<Integer> resolutions, StatsMode statsMode, int histogramDigits,
+                             String templateVersion, List<String> inputFingerprints) {
     }
 
 
@@ -0,0 +1,114 @@
+package document_filter.files;
+
+import document_filter.latency.PipelineMetrics;
+import document_filter.latency.RejectReason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PipelineMetrics} sobre Micrometer, visible en /actuator/metrics. Los medidores se registran una
+ * sola vez: registrar un tiempo o sumar un contador no crea objetos.
+ */
+@Component
+public class MicrometerPipelineMetrics implements PipelineMetrics {
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter bytesRead;
+    private final Counter parsedLines;
+    private final Counter[] rejectedLines = new Counter[RejectReason.values().length];
+    private final DistributionSummary nanosPerLine;
+    private final DistributionSummary fileRetained;
+    private final DistributionSummary runHeapPeak;
+    private final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+            .toList();
+
+    public MicrometerPipelineMetrics(MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("latency.pipeline.stage")
+                    .description("Tiempo de cada etapa del procesamiento")
+                    .tag("stage", tagValue(stage))
+                    .register(registry);
+        }
+        bytesRead = Counter.builder("latency.pipeline.bytes.read")
+                .description("Bytes de delay.log parseados")
+                .baseUnit("bytes")
+                .register(registry);
+        parsedLines = Counter.builder("latency.pipeline.lines.parsed")
+                .description("Líneas válidas")
+                .register(registry);
+        for (RejectReason reason : RejectReason.values()) {
+            rejectedLines[reason.ordinal()] = Counter.builder("latency.pipeline.lines.rejected")
+                    .description("Líneas descartadas por el parser")
+                    .tag("reason", tagValue(reason))
+                    .register(registry);
+        }
+        nanosPerLine = DistributionSummary.builder("latency.pipeline.parse.line")
+                .description("Tiempo de parseo por línea de cada archivo")
+                .baseUnit("nanoseconds")
+                .register(registry);
+        fileRetained = DistributionSummary.builder("latency.pipeline.file.retained")
+                .description("Heap estimado retenido por el averager de cada archivo (no es el pico del proceso)")
+                .baseUnit("bytes")
+                .register(registry);
+        runHeapPeak = DistributionSummary.builder("latency.pipeline.run.heap.peak")
+                .description("Pico de heap usado durante cada generación del reporte (suma de los picos de cada pool)")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT).replace('_', '.');
+    }
+
+    @Override
+    public void stage(Stage stage, long nanos) {
+        stageTimers[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+        if (stage == Stage.RUN) {
+            // Los pools pueden tener su pico en momentos distintos: la suma es una cota superior. Incluye lo
+            // que otros pedidos usaron en paralelo, por eso se mide por corrida y no por archivo
+            long peak = 0;
+            for (MemoryPoolMXBean pool : heapPools) {
+                MemoryUsage usage = pool.getPeakUsage();
+                if (usage != null) peak += usage.getUsed();
+            }
+            runHeapPeak.record(peak);
+        }
+    }
+
+    @Override
+    public void runStarted() {
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @Override
+    public void textParsed(long bytes, long parsed, long[] rejected, long nanos) {
+        stage(Stage.PARSE, nanos);
+        bytesRead.increment(bytes);
+        parsedLines.increment(parsed);
+        long lines = parsed;
+        for (int i = 0; i < rejected.length; i++) {
+            rejectedLines[i].increment(rejected[i]);
+            lines += rejected[i];
+        }
+        if (lines > 0) {
+            nanosPerLine.record((double) nanos / lines);
+        }
+    }
+
+    @Override
+    public void fileAnalyzed(String name, long retainedBytes, long nanos) {
+        stage(Stage.ANALYSIS, nanos);
+        fileRetained.record(retainedBytes);
+    }
+}
@@ -0,0 +1,88 @@
+package document_filter.files;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache LRU acotada de reportes generados. Pedidos concurrentes con la misma clave esperan a una sola
+ * generación (single-flight) en lugar de recalcular cada uno.
+ */
+public class ReportCache<K> {
+    private final Map<K, byte[]> entries;
+    private final Map<K, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public ReportCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, byte[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Si la generación a la que se sumó un pedido se cancela (el job que la corría fue cancelado), el
+     * pedido no recibe esa cancelación: vuelve a intentar y, si nadie más la retomó, genera él.
+     */
+    public byte[] get(K key, Supplier<byte[]> generator) {
+        while (true) {
+            byte[] cached = cached(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            CompletableFuture<byte[]> mine = new CompletableFuture<>();
+            CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                return generate(key, generator, mine);
+            }
+            try {
+                return running.join();
+            } catch (CancellationException e) {
+                // La cancelación era de quien generaba, no de este pedido
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+    }
+
+    private byte[] generate(K key, Supplier<byte[]> generator, CompletableFuture<byte[]> mine) {
+        try {
+            // Otro hilo pudo terminar la misma generación entre la consulta y el putIfAbsent
+            byte[] value = cached(key);
+            if (value == null) {
+                value = generator.get();
+                if (value != null) {
+                    synchronized (entries) {
+                        entries.put(key, value);
+                    }
+                }
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            // Al cancelar un job la interrupción llega como CancellationException o como error de la generación
+            if (e instanceof CancellationException || Thread.currentThread().isInterrupted()) {
+                // Se saca antes de avisar, para que quien reintente no vuelva a encontrarla
+                inFlight.remove(key, mine);
+                mine.cancel(false);
+            } else {
+                mine.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private byte[] cached(K key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+}
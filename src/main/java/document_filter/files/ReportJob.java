@@ -0,0 +1,100 @@
+package document_filter.files;
+
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/** Generación asíncrona del reporte diario: estado, avance por archivo y resultado. */
+public class ReportJob {
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final String id;
+    private final Object key;
+    private final Instant createdAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile boolean cancelRequested;
+    private volatile int processedFiles;
+    private volatile int totalFiles;
+    private volatile String lastFile;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile byte[] result;
+    private volatile Future<?> future;
+
+    ReportJob(String id, Object key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Object getKey() {
+        return key;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isFinished() {
+        return status != Status.QUEUED && status != Status.RUNNING;
+    }
+
+    /** Bytes del xlsx si terminó bien; null en cualquier otro caso. */
+    public byte[] getResult() {
+        return result;
+    }
+
+    public ReportJobStatus snapshot() {
+        return new ReportJobStatus(id, status, processedFiles, totalFiles, lastFile, createdAt, startedAt, finishedAt, error);
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /** Devuelve true si el job nunca llegó a empezar (no queda nada corriendo). */
+    synchronized boolean cancel() {
+        if (isFinished()) return false;
+        cancelRequested = true;
+        boolean neverStarted = future != null && future.cancel(true) && status == Status.QUEUED;
+        if (neverStarted) {
+            finish(Status.CANCELLED, null);
+        }
+        return neverStarted;
+    }
+
+    synchronized boolean start() {
+        if (cancelRequested) return false;
+        status = Status.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    void progress(String file, int processed, int total) {
+        if (file != null) lastFile = file;
+        processedFiles = processed;
+        totalFiles = total;
+    }
+
+    synchronized void succeeded(byte[] report) {
+        result = report;
+        finish(Status.SUCCEEDED, null);
+    }
+
+    synchronized void failed(String message) {
+        finish(cancelRequested ? Status.CANCELLED : Status.FAILED, cancelRequested ? null : message);
+    }
+
+    private void finish(Status finalStatus, String message) {
+        error = message;
+        finishedAt = Instant.now();
+        status = finalStatus;
+    }
+}
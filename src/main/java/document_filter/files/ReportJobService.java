@@ -0,0 +1,106 @@
+package document_filter.files;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Jobs de generación del reporte diario en un ejecutor propio y acotado, para no retener hilos de
+ * Tomcat. Un pedido con las mismas entradas que un job todavía en curso devuelve ese job. Se conservan
+ * a lo sumo {@code maxRetained} jobs; los terminados más viejos se descartan primero.
+ */
+@Component
+public class ReportJobService {
+    private final MetricsService metricsService;
+    private final ExecutorService executor;
+    private final int maxRetained;
+    private final Map<String, ReportJob> jobs = new LinkedHashMap<>();
+    private final Map<Object, ReportJob> inFlight = new HashMap<>();
+
+    public ReportJobService(MetricsService metricsService,
+                            @Qualifier("reportJobExecutor") ExecutorService executor,
+                            @Value("${metrics.jobs.maxRetained:50}") int maxRetained) {
+        this.metricsService = metricsService;
+        this.executor = executor;
+        this.maxRetained = maxRetained;
+    }
+
+    @Scheduled(cron = "0 0 18 * * *", zone = "America/Argentina/Buenos_Aires")
+    public void generateDailyMetrics() {
+        submit();
+    }
+
+    /** Encola la generación, o devuelve el job en curso con las mismas entradas. */
+    public synchronized ReportJob submit() {
+        Object key = metricsService.reportKey();
+        ReportJob running = inFlight.get(key);
+        if (running != null) {
+            return running;
+        }
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), key);
+        // Puede lanzar RejectedExecutionException si la cola está llena
+        job.setFuture(executor.submit(() -> run(job)));
+        jobs.put(job.getId(), job);
+        inFlight.put(key, job);
+        evictFinished();
+        return job;
+    }
+
+    public synchronized ReportJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /** Pide la cancelación; devuelve null si el job no existe. */
+    public ReportJob cancel(String id) {
+        ReportJob job = get(id);
+        if (job == null) {
+            return null;
+        }
+        if (job.cancel()) {
+            release(job);
+        }
+        return job;
+    }
+
+    private void run(ReportJob job) {
+        try {
+            if (!job.start()) {
+                return;
+            }
+            byte[] report = metricsService.dailyReport(job::progress);
+            if (report == null) {
+                job.failed("No se pudo leer el reporte generado");
+            } else {
+                job.succeeded(report);
+            }
+        } catch (CancellationException e) {
+            job.failed(e.getMessage());
+        } catch (RuntimeException e) {
+            // Al cancelar, la interrupción llega como error de la generación
+            if (!job.isCancelRequested()) {
+                e.printStackTrace();
+            }
+            job.failed(e.getMessage());
+        } finally {
+            release(job);
+        }
+    }
+
+    private synchronized void release(ReportJob job) {
+        inFlight.remove(job.getKey(), job);
+    }
+
+    private void evictFinished() {
+        Iterator<ReportJob> iterator = jobs.values().iterator();
+        while (jobs.size() > maxRetained && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package document_filter.files;
+
+import java.time.Instant;
+
+/** Vista inmutable de un {@link ReportJob} para la API. */
+public record ReportJobStatus(String id, ReportJob.Status status, int processedFiles, int totalFiles, String lastFile,
+                              Instant createdAt, Instant startedAt, Instant finishedAt, String error) {
+}
@@ -0,0 +1,9 @@
+package document_filter.files;
+
+import document_filter.latency.WindowResultFormat;
+
+import java.io.File;
+
+/** Consulta de ventanas ya validada: archivo, rango alineado a la resolución y formato de salida. */
+public record WindowQuery(String name, File file, long fromMillis, long toMillis, int resolutionSeconds, WindowResultFormat format) {
+}
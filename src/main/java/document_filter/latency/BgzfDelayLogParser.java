@@ -0,0 +1,212 @@
+package document_filter.latency;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Descompresión paralela de gzip en bloques BGZF (miembros de hasta 64 KB cuyo encabezado lleva el
+ * tamaño comprimido en el subcampo "BC"). El índice de bloques sale de leer sólo los encabezados; los
+ * bloques se agrupan en chunks que se descomprimen y parsean en paralelo. Los límites de los chunks
+ * no caen en fin de línea: cada chunk saltea el texto hasta su primer '\n' y, a cambio, agrega al final
+ * lo que sigue hasta el primer '\n' posterior, así cada línea se parsea exactamente una vez.
+ */
+final class BgzfDelayLogParser {
+    private static final int HEADER_BYTES = 18;
+    private static final int TRAILER_BYTES = 8;
+    private static final int MAX_BLOCK_BYTES = 1 << 16;
+    private static final long CHUNK_COMPRESSED_BYTES = 4L << 20;
+
+    private BgzfDelayLogParser() {
+    }
+
+    /** null si el archivo no es BGZF (gzip común): no se puede partir sin descomprimirlo entero. */
+    static LatencyWindowAverager parse(Path file, Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool)
+            throws IOException {
+        return parse(file, averagers, pool, CHUNK_COMPRESSED_BYTES);
+    }
+
+    /** Como el anterior, agrupando bloques hasta {@code chunkCompressedBytes} comprimidos por chunk. */
+    static LatencyWindowAverager parse(Path file, Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool,
+                                       long chunkCompressedBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] blockOffsets = index(channel);
+            if (blockOffsets == null) {
+                return null;
+            }
+            List<ChunkTask> tasks = new ArrayList<>();
+            int first = 0;
+            int blockCount = blockOffsets.length - 1;
+            while (first < blockCount) {
+                int last = first + 1;
+                while (last < blockCount && blockOffsets[last + 1] - blockOffsets[first] <= chunkCompressedBytes) {
+                    last++;
+                }
+                tasks.add(new ChunkTask(channel, blockOffsets, first, last, averagers));
+                first = last;
+            }
+            return MappedDelayLogParser.mergeInOrder(tasks, averagers.get(), pool);
+        }
+    }
+
+    /** Offsets de inicio de cada bloque más el tamaño del archivo al final; null si algún miembro no es BGZF. */
+    private static long[] index(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] offsets = new long[1024];
+        int count = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 0;
+        while (position < size) {
+            header.clear();
+            if (readFully(channel, header, position) < HEADER_BYTES) {
+                return null;
+            }
+            // id1 id2 cm flg(FEXTRA) mtime xfl os xlen=6 'B' 'C' slen=2 bsize
+            if ((header.get(0) & 0xFF) != 31 || (header.get(1) & 0xFF) != 139 || header.get(2) != 8
+                    || (header.get(3) & 4) == 0 || header.getShort(10) != 6
+                    || header.get(12) != 'B' || header.get(13) != 'C' || header.getShort(14) != 2) {
+                return null;
+            }
+            if (count + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count++] = position;
+            position += (header.getShort(16) & 0xFFFF) + 1;
+        }
+        if (position != size || count == 0) {
+            return null;
+        }
+        offsets[count] = size;
+        return Arrays.copyOf(offsets, count + 1);
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int read = 0;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + read);
+            if (n <= 0) break;
+            read += n;
+        }
+        return read;
+    }
+
+    private static final class ChunkTask extends RecursiveTask<LatencyWindowAverager> {
+        private final FileChannel channel;
+        private final long[] blockOffsets;
+        private final int firstBlock;
+        private final int endBlock;
+        private final Supplier<LatencyWindowAverager> averagers;
+        private final Inflater inflater = new Inflater(true);
+
+        ChunkTask(FileChannel channel, long[] blockOffsets, int firstBlock, int endBlock,
+                  Supplier<LatencyWindowAverager> averagers) {
+            this.channel = channel;
+            this.blockOffsets = blockOffsets;
+            this.firstBlock = firstBlock;
+            this.endBlock = endBlock;
+            this.averagers = averagers;
+        }
+
+        @Override
+        protected LatencyWindowAverager compute() {
+            LatencyWindowAverager averager = averagers.get();
+            try {
+                long from = blockOffsets[firstBlock];
+                ByteBuffer compressed = ByteBuffer.allocate(Math.toIntExact(blockOffsets[endBlock] - from));
+                readFully(channel, compressed, from);
+                // ISIZE (últimos 4 bytes de cada bloque) da el tamaño exacto; un byte de margen porque con
+                // la salida justa el Inflater no llega a ver el fin del bloque
+                ByteBuffer blocks = compressed.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+                long textSize = 1;
+                for (int b = firstBlock; b < endBlock; b++) {
+                    textSize += blocks.getInt((int) (blockOffsets[b + 1] - from) - 4) & 0xFFFFFFFFL;
+                }
+                byte[] text = new byte[Math.toIntExact(textSize)];
+                int length = 0;
+                for (int b = firstBlock; b < endBlock; b++) {
+                    length = inflate(compressed.array(), (int) (blockOffsets[b] - from),
+                            (int) (blockOffsets[b + 1] - blockOffsets[b]), text, length);
+                }
+
+                int start = 0;
+                if (firstBlock > 0) {
+                    // La primera línea (completa o no) la parsea el chunk anterior
+                    while (start < length && text[start] != '\n') start++;
+                    if (start == length) {
+                        // Sin '\n': todo el chunk es parte de una línea del anterior
+                        return averager;
+                    }
+                    start++;
+                }
+                // A la inversa, se agrega lo que sigue hasta el primer '\n' de los bloques siguientes
+                boolean lineComplete = false;
+                for (int next = endBlock; !lineComplete && next < blockOffsets.length - 1; next++) {
+                    int blockLength = (int) (blockOffsets[next + 1] - blockOffsets[next]);
+                    ByteBuffer block = ByteBuffer.allocate(blockLength);
+                    readFully(channel, block, blockOffsets[next]);
+                    byte[] decoded = new byte[MAX_BLOCK_BYTES + 1];
+                    int decodedLength = inflate(block.array(), 0, blockLength, decoded, 0);
+                    int take = 0;
+                    while (take < decodedLength && decoded[take] != '\n') take++;
+                    lineComplete = take < decodedLength;
+                    if (lineComplete) take++;
+                    if (length + take > text.length) {
+                        text = Arrays.copyOf(text, Math.max(text.length * 2, length + take));
+                    }
+                    System.arraycopy(decoded, 0, text, length, take);
+                    length += take;
+                }
+
+                int lineStart = start;
+                for (int i = start; i < length; i++) {
+                    if (text[i] == '\n') {
+                        averager.addLine(text, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart < length) {
+                    averager.addLine(text, lineStart, length);
+                }
+            } catch (IOException | DataFormatException e) {
+                throw new UncheckedIOException(new ZipException("Error al descomprimir los bloques ["
+                        + firstBlock + ", " + endBlock + "): " + e.getMessage()));
+            } finally {
+                inflater.end();
+            }
+            return averager;
+        }
+
+        /** Descomprime el bloque en {@code out[offset..]}; devuelve el nuevo largo. */
+        private int inflate(byte[] block, int blockStart, int blockLength, byte[] out, int offset)
+                throws DataFormatException {
+            int extraLength = (block[blockStart + 10] & 0xFF) | (block[blockStart + 11] & 0xFF) << 8;
+            int dataStart = blockStart + 12 + extraLength;
+            int dataLength = blockLength - 12 - extraLength - TRAILER_BYTES;
+            inflater.reset();
+            inflater.setInput(block, dataStart, dataLength);
+            int written = 0;
+            while (!inflater.finished()) {
+                int n = inflater.inflate(out, offset + written, out.length - offset - written);
+                if (n == 0 && !inflater.finished()
+                        && (inflater.needsInput() || inflater.needsDictionary() || offset + written == out.length)) {
+                    throw new DataFormatException("Bloque BGZF inválido en " + blockStart);
+                }
+                written += n;
+            }
+            return offset + written;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package document_filter.latency;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Variante thread-safe de {@link LatencyWindowAverager} para varios productores sobre un mismo agregado
+ * (chunks de un archivo, varias fuentes en vivo). Las escrituras van a franjas, cada una con su averager;
+ * un productor toma una franja con un CAS y, si está ocupada, prueba la siguiente en vez de esperar, así
+ * nunca se bloquea en un monitor ni compite por la misma franja mientras haya otra libre. Al leer, cada
+ * franja con datos se reemplaza por una vacía y lo acumulado se combina con
+ * {@link LatencyWindowAverager#merge} en el agregado: la combinación se paga al leer, no por muestra.
+ * Las lecturas se serializan entre sí, sin frenar a los productores más que el cambio de cada franja.
+ */
+public class ConcurrentLatencyWindowAverager {
+    private static final long PROBE_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final Supplier<LatencyWindowAverager> factory;
+    private final Stripe[] stripes;
+    // Lo ya combinado desde las franjas; sólo se toca con su propio lock, desde las lecturas
+    private final LatencyWindowAverager aggregate;
+
+    /**
+     * @param factory averagers vacíos, todos compatibles entre sí
+     * @param stripes franjas (se redondea a potencia de 2); con más franjas que productores casi no hay reintentos
+     */
+    public ConcurrentLatencyWindowAverager(Supplier<LatencyWindowAverager> factory, int stripes) {
+        this.factory = factory;
+        this.aggregate = factory.get();
+        this.stripes = new Stripe[stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(factory.get());
+        }
+    }
+
+    public void addSample(long epochMillis, int latency) {
+        Stripe stripe = acquire();
+        try {
+            stripe.averager.addSample(epochMillis, latency);
+            stripe.dirty = true;
+        } finally {
+            stripe.busy.set(false);
+        }
+    }
+
+    public void addLine(byte[] buf, int from, int to) {
+        Stripe stripe = acquire();
+        try {
+            stripe.averager.addLine(buf, from, to);
+            stripe.dirty = true;
+        } finally {
+            stripe.busy.set(false);
+        }
+    }
+
+    /** Varias líneas separadas por '\n' con una sola toma de franja; la última puede no tener '\n'. */
+    public void addLines(byte[] buf, int from, int to) {
+        Stripe stripe = acquire();
+        try {
+            int lineStart = from;
+            for (int i = from; i < to; i++) {
+                if (buf[i] == '\n') {
+                    stripe.averager.addLine(buf, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < to) {
+                stripe.averager.addLine(buf, lineStart, to);
+            }
+            stripe.dirty = true;
+        } finally {
+            stripe.busy.set(false);
+        }
+    }
+
+    /** Incorpora un averager parcial armado aparte (por ejemplo, un chunk); el parcial no debe usarse después. */
+    public void merge(LatencyWindowAverager partial) {
+        Stripe stripe = acquire();
+        try {
+            stripe.averager.merge(partial);
+            stripe.dirty = true;
+        } finally {
+            stripe.busy.set(false);
+        }
+    }
+
+    /**
+     * Combina lo escrito hasta ahora y aplica {@code reader} sobre el agregado. Las escrituras siguen en
+     * las demás franjas mientras tanto; las que lleguen durante la lectura quedan para la próxima.
+     */
+    public <T> T read(Function<LatencyWindowAverager, T> reader) {
+        synchronized (aggregate) {
+            for (Stripe stripe : stripes) {
+                // La franja la retiene un productor sólo lo que dura una escritura
+                while (!stripe.busy.compareAndSet(false, true)) {
+                    Thread.onSpinWait();
+                }
+                LatencyWindowAverager drained = null;
+                try {
+                    if (stripe.dirty) {
+                        drained = stripe.averager;
+                        stripe.averager = factory.get();
+                        stripe.dirty = false;
+                    }
+                } finally {
+                    stripe.busy.set(false);
+                }
+                if (drained != null) {
+                    aggregate.merge(drained);
+                }
+            }
+            return reader.apply(aggregate);
+        }
+    }
+
+    /**
+     * Franja libre, ya tomada. Se empieza por una que depende del hilo (id mezclado, no sus bits bajos) y
+     * ante una ocupada se sigue por la próxima; si están todas ocupadas se vuelve a recorrer.
+     */
+    private Stripe acquire() {
+        int mask = stripes.length - 1;
+        int index = (int) ((Thread.currentThread().threadId() * PROBE_MULTIPLIER) >>> 40) & mask;
+        for (int attempt = 0; ; attempt++) {
+            Stripe stripe = stripes[index];
+            if (!stripe.busy.get() && stripe.busy.compareAndSet(false, true)) {
+                return stripe;
+            }
+            index = (index + 1) & mask;
+            if (attempt >= mask) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static final class Stripe {
+        // Tomada por un productor o por una lectura: el CAS publica lo escrito por el dueño anterior
+        private final AtomicBoolean busy = new AtomicBoolean();
+        private LatencyWindowAverager averager;
+        private boolean dirty;
+
+        Stripe(LatencyWindowAverager averager) {
+            this.averager = averager;
+        }
+    }
+}
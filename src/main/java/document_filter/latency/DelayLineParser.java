@@ -0,0 +1,263 @@
+package document_filter.latency;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Parser de líneas de delay.log ({@code campo0;campo1;yyyyMMdd HH:mm:ss.SSS;campo3;latencia}) sin
+ * generar basura por línea: recorre la línea buscando los campos 3 y 5, decodifica el timestamp a mano
+ * y cachea el offset epoch del último día visto. Las líneas inválidas se cuentan en lugar de lanzar
+ * excepciones, por motivo ({@link RejectReason}). No es thread-safe: una instancia por hilo.
+ */
+public final class DelayLineParser {
+    private static final int FIELD_COUNT = 5;
+    private static final int TIMESTAMP_LENGTH = 21; // yyyyMMdd HH:mm:ss.SSS
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private final ZoneId zoneId;
+    private final ZoneRules rules;
+
+    private int cachedDay = -1; // yyyyMMdd crudo del último día resuelto
+    private long cachedDayStartMillis;
+    private boolean cachedDayFixedOffset;
+    private LocalDate cachedDate;
+
+    private long epochMillis;
+    private int latency;
+    private long parsedLines;
+    private long malformedLines;
+    private final long[] rejectedLines = new long[RejectReason.values().length];
+
+    public DelayLineParser(ZoneId zoneId) {
+        this.zoneId = zoneId;
+        this.rules = zoneId.getRules();
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    public long getParsedLines() {
+        return parsedLines;
+    }
+
+    public long getMalformedLines() {
+        return malformedLines;
+    }
+
+    public long getRejectedLines(RejectReason reason) {
+        return rejectedLines[reason.ordinal()];
+    }
+
+    /** Copia de los rechazos por motivo, indexados por ordinal. */
+    public long[] getRejectedLines() {
+        return rejectedLines.clone();
+    }
+
+    public boolean parse(CharSequence line) {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') end--;
+        // String.split descarta los campos vacíos finales: se replica ese comportamiento
+        while (end > 0 && line.charAt(end - 1) == ';') end--;
+
+        int separators = 0;
+        int timestampStart = -1;
+        int timestampEnd = -1;
+        int latencyStart = -1;
+        for (int i = 0; i < end; i++) {
+            if (line.charAt(i) == ';') {
+                separators++;
+                if (separators == 2) timestampStart = i + 1;
+                else if (separators == 3) timestampEnd = i;
+                else if (separators == 4) latencyStart = i + 1;
+            }
+        }
+        if (separators != FIELD_COUNT - 1) {
+            return reject(RejectReason.FIELD_COUNT);
+        }
+        if (timestampEnd - timestampStart != TIMESTAMP_LENGTH) {
+            return reject(RejectReason.TIMESTAMP);
+        }
+
+        long value = parseSignedInt(line, latencyStart, end);
+        if (value == Long.MIN_VALUE) return reject(RejectReason.LATENCY);
+
+        int t = timestampStart;
+        if (line.charAt(t + 8) != ' ' || line.charAt(t + 11) != ':' || line.charAt(t + 14) != ':'
+                || line.charAt(t + 17) != '.') {
+            return reject(RejectReason.TIMESTAMP);
+        }
+        int date = digits(line, t, t + 8);
+        int hour = digits(line, t + 9, t + 11);
+        int minute = digits(line, t + 12, t + 14);
+        int second = digits(line, t + 15, t + 17);
+        int millis = digits(line, t + 18, t + 21);
+        return accept(date, hour, minute, second, millis, (int) value);
+    }
+
+    public boolean parse(byte[] buf, int from, int to) {
+        int end = to;
+        if (end > from && buf[end - 1] == '\r') end--;
+        while (end > from && buf[end - 1] == ';') end--;
+
+        int separators = 0;
+        int timestampStart = -1;
+        int timestampEnd = -1;
+        int latencyStart = -1;
+        for (int i = from; i < end; i++) {
+            if (buf[i] == ';') {
+                separators++;
+                if (separators == 2) timestampStart = i + 1;
+                else if (separators == 3) timestampEnd = i;
+                else if (separators == 4) latencyStart = i + 1;
+            }
+        }
+        if (separators != FIELD_COUNT - 1) {
+            return reject(RejectReason.FIELD_COUNT);
+        }
+        if (timestampEnd - timestampStart != TIMESTAMP_LENGTH) {
+            return reject(RejectReason.TIMESTAMP);
+        }
+
+        long value = parseSignedInt(buf, latencyStart, end);
+        if (value == Long.MIN_VALUE) return reject(RejectReason.LATENCY);
+
+        int t = timestampStart;
+        if (buf[t + 8] != ' ' || buf[t + 11] != ':' || buf[t + 14] != ':' || buf[t + 17] != '.') {
+            return reject(RejectReason.TIMESTAMP);
+        }
+        int date = digits(buf, t, t + 8);
+        int hour = digits(buf, t + 9, t + 11);
+        int minute = digits(buf, t + 12, t + 14);
+        int second = digits(buf, t + 15, t + 17);
+        int millis = digits(buf, t + 18, t + 21);
+        return accept(date, hour, minute, second, millis, (int) value);
+    }
+
+    private boolean accept(int date, int hour, int minute, int second, int millis, int value) {
+        if (date < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59 || millis < 0) {
+            return reject(RejectReason.TIMESTAMP);
+        }
+        if (date != cachedDay && !resolveDay(date)) {
+            return reject(RejectReason.TIMESTAMP);
+        }
+
+        if (cachedDayFixedOffset) {
+            epochMillis = cachedDayStartMillis + ((hour * 60L + minute) * 60L + second) * 1000L + millis;
+        } else {
+            // Día con cambio de offset (DST): se delega en java.time para respetar gaps/overlaps
+            epochMillis = LocalDateTime.of(cachedDate, LocalTime.of(hour, minute, second, millis * 1_000_000))
+                    .atZone(zoneId)
+                    .toInstant()
+                    .toEpochMilli();
+        }
+        latency = value;
+        parsedLines++;
+        return true;
+    }
+
+    private boolean resolveDay(int date) {
+        int year = date / 10_000;
+        int month = (date / 100) % 100;
+        int day = date % 100;
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return false;
+        }
+        // Igual que ResolverStyle.SMART: un día fuera de rango para el mes se ajusta al último válido
+        LocalDate localDate = LocalDate.of(year, month, 1);
+        localDate = localDate.withDayOfMonth(Math.min(day, localDate.lengthOfMonth()));
+
+        LocalDateTime midnight = localDate.atStartOfDay();
+        long startSeconds = localDate.toEpochDay() * 86_400L;
+        boolean fixed = rules.getValidOffsets(midnight).size() == 1;
+        if (fixed) {
+            int offsetSeconds = rules.getOffset(midnight).getTotalSeconds();
+            long dayStartMillis = (startSeconds - offsetSeconds) * 1000L;
+            ZoneOffsetTransition next = rules.nextTransition(Instant.ofEpochMilli(dayStartMillis));
+            fixed = next == null || next.getInstant().toEpochMilli() >= dayStartMillis + MILLIS_PER_DAY;
+            cachedDayStartMillis = dayStartMillis;
+        }
+        cachedDay = date;
+        cachedDate = localDate;
+        cachedDayFixedOffset = fixed;
+        return true;
+    }
+
+    private boolean reject(RejectReason reason) {
+        malformedLines++;
+        rejectedLines[reason.ordinal()]++;
+        return false;
+    }
+
+    /** Equivalente a Integer.parseInt sobre el rango; devuelve Long.MIN_VALUE si no es válido. */
+    private static long parseSignedInt(CharSequence s, int from, int to) {
+        if (from >= to) return Long.MIN_VALUE;
+        boolean negative = false;
+        char first = s.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++from == to) return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return Long.MIN_VALUE;
+            value = value * 10 + d;
+            if (value > 1L + Integer.MAX_VALUE) return Long.MIN_VALUE;
+        }
+        return checkIntRange(negative ? -value : value);
+    }
+
+    private static long parseSignedInt(byte[] s, int from, int to) {
+        if (from >= to) return Long.MIN_VALUE;
+        boolean negative = false;
+        byte first = s[from];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++from == to) return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s[i] - '0';
+            if (d < 0 || d > 9) return Long.MIN_VALUE;
+            value = value * 10 + d;
+            if (value > 1L + Integer.MAX_VALUE) return Long.MIN_VALUE;
+        }
+        return checkIntRange(negative ? -value : value);
+    }
+
+    private static long checkIntRange(long value) {
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    /** Decodifica dígitos ASCII fijos; devuelve -1 si alguno no es dígito. */
+    private static int digits(CharSequence s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static int digits(byte[] s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+}
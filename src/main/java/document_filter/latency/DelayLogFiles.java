@@ -0,0 +1,84 @@
+package document_filter.latency;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Variantes de delay.log que se procesan: el actual, los rotados ({@code delay.log.N}) y los
+ * comprimidos con gzip o zstd ({@code delay.log[.N].gz}, {@code delay.log[.N].zst}). Los comprimidos se
+ * descomprimen en streaming hacia el parser, sin archivos temporales.
+ */
+public final class DelayLogFiles {
+    public static final String CURRENT = "delay.log";
+    private static final Pattern NAME = Pattern.compile("delay\\.log(?:\\.(\\d+))?(\\.gz|\\.zst)?");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Primero el actual y después los rotados del más nuevo al más viejo. */
+    public static final Comparator<String> ORDER = Comparator
+            .comparingLong(DelayLogFiles::rotation)
+            .thenComparing(Comparator.naturalOrder());
+
+    private DelayLogFiles() {
+    }
+
+    public static boolean isDelayLog(String fileName) {
+        return NAME.matcher(fileName).matches();
+    }
+
+    public static boolean isCompressed(File file) {
+        String name = file.getName();
+        return name.endsWith(".gz") || name.endsWith(".zst");
+    }
+
+    private static long rotation(String fileName) {
+        Matcher matcher = NAME.matcher(fileName);
+        return matcher.matches() && matcher.group(1) != null ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    /** Contenido descomprimido (o tal cual, si no está comprimido) de {@code file}. */
+    public static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+        try {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".gz")) {
+                // GZIPInputStream encadena los miembros de un gzip multi-miembro
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            }
+            if (name.endsWith(".zst")) {
+                return new ZstdInputStream(in);
+            }
+            return in;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parsea un archivo comprimido. Un gzip en bloques BGZF se descomprime y parsea en paralelo sobre
+     * {@code pool}; el resto (gzip común, zstd o sin pool) se lee en streaming en el hilo que llama.
+     */
+    public static LatencyWindowAverager parse(File file, Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool)
+            throws IOException {
+        if (pool != null && file.getName().endsWith(".gz")) {
+            LatencyWindowAverager averager = BgzfDelayLogParser.parse(file.toPath(), averagers, pool);
+            if (averager != null) {
+                return averager;
+            }
+        }
+        LatencyWindowAverager averager = averagers.get();
+        try (InputStream in = open(file.toPath())) {
+            DelayLogReader.read(in, averager);
+        }
+        return averager;
+    }
+}
@@ -0,0 +1,107 @@
+package document_filter.latency;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Lectura de un rango horario de un delay.log sin recorrer el archivo entero: los offsets de inicio y
+ * fin se ubican con búsqueda binaria sobre los timestamps (el log se escribe en orden) y sólo ese rango
+ * se parsea con {@link MappedDelayLogParser}. Las líneas inválidas cuentan con la siguiente válida.
+ */
+public final class DelayLogRange {
+    private static final int LINE_BUFFER = 8192;
+
+    private DelayLogRange() {
+    }
+
+    /** Averager con las líneas de {@code [fromMillis, toMillis)}, más las desordenadas que caigan en ese tramo del archivo. */
+    public static LatencyWindowAverager read(Path file, long fromMillis, long toMillis, ZoneId zoneId,
+                                             Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            LineReader reader = new LineReader(channel, size, zoneId);
+            long start = reader.seek(fromMillis);
+            long end = toMillis == Long.MAX_VALUE ? size : reader.seek(toMillis);
+            return MappedDelayLogParser.parse(channel, start, Math.max(start, end), averagers, pool);
+        }
+    }
+
+    /** Lee líneas sueltas por posición, con un buffer reutilizado. */
+    private static final class LineReader {
+        private final FileChannel channel;
+        private final long size;
+        private final DelayLineParser parser;
+        private byte[] line = new byte[LINE_BUFFER];
+        private long lineEnd;
+
+        LineReader(FileChannel channel, long size, ZoneId zoneId) {
+            this.channel = channel;
+            this.size = size;
+            this.parser = new DelayLineParser(zoneId);
+        }
+
+        /** Inicio de la primera línea cuyo timestamp (o el de la siguiente válida) es >= {@code epochMillis}. */
+        long seek(long epochMillis) throws IOException {
+            long best = size;
+            long lo = 0;
+            long hi = size;
+            while (lo < hi) {
+                long mid = lo + (hi - lo) / 2;
+                long start = mid == 0 ? 0 : MappedDelayLogParser.nextLineStart(channel, mid - 1, size);
+                if (start >= hi) {
+                    // No empieza ninguna línea en [mid, hi)
+                    hi = mid;
+                } else if (timestampFrom(start) >= epochMillis) {
+                    best = start;
+                    hi = mid;
+                } else {
+                    lo = start + 1;
+                }
+            }
+            return best;
+        }
+
+        /** Timestamp de la primera línea válida desde {@code start}, o MAX_VALUE si no hay. */
+        private long timestampFrom(long start) throws IOException {
+            long position = start;
+            while (position < size) {
+                int length = readLine(position);
+                if (parser.parse(line, 0, length)) {
+                    return parser.getEpochMillis();
+                }
+                position = lineEnd;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /** Carga en {@code line} la línea que empieza en {@code position} (sin '\n') y deja su fin en lineEnd. */
+        private int readLine(long position) throws IOException {
+            int length = 0;
+            while (true) {
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                ByteBuffer buf = ByteBuffer.wrap(line, length, line.length - length);
+                int n = channel.read(buf, position + length);
+                if (n <= 0) {
+                    lineEnd = size;
+                    return length;
+                }
+                for (int i = length; i < length + n; i++) {
+                    if (line[i] == '\n') {
+                        lineEnd = position + i + 1;
+                        return i;
+                    }
+                }
+                length += n;
+            }
+        }
+    }
+}
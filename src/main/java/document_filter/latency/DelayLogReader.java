@@ -0,0 +1,41 @@
+package document_filter.latency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Lee un delay.log como bytes y entrega cada línea al averager sin crear un String por línea.
+ */
+public final class DelayLogReader {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private DelayLogReader() {
+    }
+
+    public static void read(InputStream in, LatencyWindowAverager averager) throws IOException {
+        byte[] buf = new byte[BUFFER_SIZE];
+        int pending = 0;
+        int n;
+        while ((n = in.read(buf, pending, buf.length - pending)) != -1) {
+            int limit = pending + n;
+            int lineStart = 0;
+            for (int i = pending; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    averager.addLine(buf, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            pending = limit - lineStart;
+            if (pending == buf.length) {
+                // Línea más larga que el buffer: se agranda en lugar de cortarla
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            } else if (pending > 0 && lineStart > 0) {
+                System.arraycopy(buf, lineStart, buf, 0, pending);
+            }
+        }
+        if (pending > 0) {
+            averager.addLine(buf, 0, pending);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package document_filter.latency;
+
+import document_filter.domain.Stats;
+
+import java.util.Arrays;
+
+/**
+ * Stats exactas (percentiles nearest-rank) sobre un int[] sin boxing. Si el rango de latencias es
+ * acotado se usa counting sort, que da rangos y orden ascendente en O(n + rango); si no, Arrays.sort.
+ * El desvío se acumula en orden ascendente con la misma suma compensada que DoubleStream.average(),
+ * así el resultado es idéntico bit a bit al cálculo con listas ordenadas.
+ */
+public final class ExactStats {
+    private static final int MIN_COUNTING_RANGE = 1 << 16;
+    private static final int MAX_COUNTING_RANGE = 1 << 24;
+
+    private ExactStats() {
+    }
+
+    /** Puede reordenar {@code values}. */
+    public static Stats compute(int[] values) {
+        int n = values.length;
+        if (n == 0) return new Stats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        long sum = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int value : values) {
+            sum += value;
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+
+        long range = (long) max - min + 1;
+        if (range <= Math.min(MAX_COUNTING_RANGE, Math.max(MIN_COUNTING_RANGE, n))) {
+            int[] counts = new int[(int) range];
+            for (int value : values) {
+                counts[value - min]++;
+            }
+            return fromCounts(counts, min, max, sum, n);
+        }
+
+        Arrays.sort(values);
+        return fromSorted(values, sum);
+    }
+
+    private static Stats fromCounts(int[] counts, int min, int max, long sum, int n) {
+        double avg = (double) sum / n;
+        int rank50 = rank(0.5, n), rank95 = rank(0.95, n), rank99 = rank(0.99, n), rank999 = rank(0.999, n);
+        int p50 = 0, p95 = 0, p99 = 0, p999 = 0;
+
+        CompensatedSum squares = new CompensatedSum();
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            int c = counts[i];
+            if (c == 0) continue;
+            int value = min + i;
+            long previous = seen;
+            seen += c;
+            if (previous <= rank50 && rank50 < seen) p50 = value;
+            if (previous <= rank95 && rank95 < seen) p95 = value;
+            if (previous <= rank99 && rank99 < seen) p99 = value;
+            if (previous <= rank999 && rank999 < seen) p999 = value;
+            double square = Math.pow(value - avg, 2);
+            for (int k = 0; k < c; k++) {
+                squares.add(square);
+            }
+        }
+        double std = Math.sqrt(squares.sum() / n);
+
+        // Particiones de P95 en una pasada más sobre los contadores
+        long sumBelow = 0, countBelow = 0, sumUpper = 0, countUpper = 0;
+        int aboveP95 = 0;
+        for (int i = 0; i < counts.length; i++) {
+            int c = counts[i];
+            if (c == 0) continue;
+            int value = min + i;
+            if (value <= p95) {
+                sumBelow += (long) value * c;
+                countBelow += c;
+            }
+            if (value >= p95) {
+                sumUpper += (long) value * c;
+                countUpper += c;
+            }
+            if (value > p95) aboveP95 += c;
+        }
+        return new Stats(avg, average(sumBelow, countBelow), average(sumUpper, countUpper), std,
+                max, min, p50, p95, p99, p999, aboveP95, n);
+    }
+
+    private static Stats fromSorted(int[] values, long sum) {
+        int n = values.length;
+        double avg = (double) sum / n;
+        CompensatedSum squares = new CompensatedSum();
+        long sumBelow = 0, countBelow = 0, sumUpper = 0, countUpper = 0;
+        int p95 = values[rank(0.95, n)];
+        int aboveP95 = 0;
+        for (int value : values) {
+            squares.add(Math.pow(value - avg, 2));
+            if (value <= p95) {
+                sumBelow += value;
+                countBelow++;
+            }
+            if (value >= p95) {
+                sumUpper += value;
+                countUpper++;
+            }
+            if (value > p95) aboveP95++;
+        }
+        double std = Math.sqrt(squares.sum() / n);
+        return new Stats(avg, average(sumBelow, countBelow), average(sumUpper, countUpper), std,
+                values[n - 1], values[0], values[rank(0.5, n)], p95, values[rank(0.99, n)], values[rank(0.999, n)],
+                aboveP95, n);
+    }
+
+    /** Índice nearest-rank (base 0), igual al que usaba getStats. */
+    private static int rank(double quantile, int n) {
+        return Math.min((int) Math.ceil(quantile * n) - 1, n - 1);
+    }
+
+    private static double average(long sum, long count) {
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /** Suma de Kahan con la misma secuencia de operaciones que DoubleStream.average()/sum(). */
+    private static final class CompensatedSum {
+        private double high;
+        private double compensation;
+        private double simple;
+
+        void add(double value) {
+            double tmp = value - compensation;
+            double velvel = high + tmp;
+            compensation = (velvel - high) - tmp;
+            high = velvel;
+            simple += value;
+        }
+
+        double sum() {
+            double tmp = high - compensation;
+            return Double.isNaN(tmp) && Double.isInfinite(simple) ? simple : tmp;
+        }
+    }
+}
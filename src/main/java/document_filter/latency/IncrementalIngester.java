@@ -0,0 +1,285 @@
+package document_filter.latency;
+
+import document_filter.domain.LatencySamples;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Ingesta incremental de delay.log: por cada archivo recuerda el offset hasta la última línea completa
+ * y el estado agregado, y en la corrida siguiente parsea sólo los bytes agregados. Los checkpoints se
+ * persisten en {@code stateDirectory}, así un reinicio no obliga a releer todo. Si cambia el inodo, el
+ * archivo se achica o los bytes previos al offset ya no coinciden (rotación/truncado) se relee desde 0.
+ * Una línea final sin '\n' se considera todavía en escritura y queda para la próxima corrida.
+ *
+ * <p>El checkpoint ({@code .ckpt}) guarda ventanas, histograma y contadores, y se reescribe entero en cada
+ * corrida: su tamaño depende de la cantidad de ventanas, no de muestras. En modo EXACT las latencias
+ * crudas van aparte, a un segmento ({@code .samples}) al que cada corrida sólo agrega las nuevas; en
+ * memoria se cargan mientras se calculan las Stats y se sueltan al terminar.
+ */
+public class IncrementalIngester {
+    private static final int CHECKPOINT_VERSION = 2;
+    private static final String CHECKPOINT_SUFFIX = ".ckpt";
+    private static final String SAMPLES_SUFFIX = ".samples";
+    // Bytes previos al offset que se verifican para detectar un archivo reescrito con el mismo inodo
+    private static final int GUARD_BYTES = 256;
+    private static final int SAMPLE_BUFFER_BYTES = 1 << 16;
+
+    private final Path stateDirectory;
+    private final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+
+    public IncrementalIngester(Path stateDirectory) {
+        this.stateDirectory = stateDirectory;
+    }
+
+    /**
+     * Incorpora lo nuevo de {@code file} al estado de {@code name} y aplica {@code reader} sobre el
+     * averager acumulado, con el archivo bloqueado para otras corridas concurrentes.
+     */
+    public <T> T ingest(String name, File file, ProcessingOptions options, ForkJoinPool parsePool,
+                        Function<LatencyWindowAverager, T> reader) throws IOException {
+        Checkpoint checkpoint = checkpoints.computeIfAbsent(name, key -> new Checkpoint());
+        synchronized (checkpoint) {
+            Path path = file.toPath();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                String fileKey = String.valueOf(attributes.fileKey());
+                long size = channel.size();
+
+                if (checkpoint.averager == null) {
+                    load(name, checkpoint);
+                }
+                LatencyWindowAverager fresh = options.newAverager();
+                if (checkpoint.averager == null || !isValid(checkpoint, channel, fileKey, size, fresh)) {
+                    if (checkpoint.averager != null) {
+                        System.out.println("🔄 " + name + " rotado o truncado: se relee desde el inicio");
+                    }
+                    checkpoint.reset(fresh);
+                }
+
+                long end = MappedDelayLogParser.lastLineEnd(channel, checkpoint.offset, size);
+                if (end > checkpoint.offset) {
+                    long start = System.nanoTime();
+                    LatencyWindowAverager added = MappedDelayLogParser.parse(channel, checkpoint.offset, end,
+                            options::newAverager, parsePool);
+                    options.getMetrics().textParsed(end - checkpoint.offset, added.getParsedLines(),
+                            added.getRejectedLines(), System.nanoTime() - start);
+                    try {
+                        LatencySamples addedSamples = added.detachSamples();
+                        checkpoint.averager.merge(added);
+                        if (addedSamples != null) {
+                            appendSamples(name, checkpoint, addedSamples);
+                        }
+                        checkpoint.offset = end;
+                        checkpoint.guardCrc = guardCrc(channel, end);
+                        checkpoint.fileKey = fileKey;
+                        save(name, checkpoint);
+                    } catch (IOException e) {
+                        // El estado en memoria ya no coincide con el guardado: la próxima corrida lo vuelve a leer
+                        checkpoint.reset(null);
+                        throw e;
+                    }
+                } else {
+                    checkpoint.fileKey = fileKey;
+                }
+            }
+
+            if (checkpoint.averager.getStatsMode() != StatsMode.EXACT) {
+                return reader.apply(checkpoint.averager);
+            }
+            checkpoint.averager.attachSamples(readSamples(name, checkpoint.sampleCount));
+            try {
+                return reader.apply(checkpoint.averager);
+            } finally {
+                checkpoint.averager.detachSamples();
+            }
+        }
+    }
+
+    /**
+     * Olvida los checkpoints, en memoria y en disco, de los archivos que ya no están en {@code names}
+     * (borrados, o rotados a otro nombre): si vuelven a aparecer se leen desde el inicio.
+     */
+    public void retain(Set<String> names) {
+        checkpoints.keySet().retainAll(names);
+        if (!Files.isDirectory(stateDirectory)) {
+            return;
+        }
+        Set<String> keep = new HashSet<>();
+        for (String name : names) {
+            keep.add(fileBase(name) + CHECKPOINT_SUFFIX);
+            keep.add(fileBase(name) + SAMPLES_SUFFIX);
+        }
+        try (Stream<Path> files = Files.list(stateDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                boolean state = fileName.endsWith(CHECKPOINT_SUFFIX) || fileName.endsWith(SAMPLES_SUFFIX);
+                if (state && !keep.contains(fileName)) {
+                    Files.deleteIfExists(file);
+                    System.out.println("🗑 Checkpoint descartado: " + fileName);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("No se pudieron limpiar los checkpoints de " + stateDirectory + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isValid(Checkpoint checkpoint, FileChannel channel, String fileKey, long size,
+                                   LatencyWindowAverager fresh) throws IOException {
+        return fileKey.equals(checkpoint.fileKey)
+                && size >= checkpoint.offset
+                && checkpoint.averager.isCompatibleWith(fresh)
+                && guardCrc(channel, checkpoint.offset) == checkpoint.guardCrc;
+    }
+
+    private static long guardCrc(FileChannel channel, long offset) throws IOException {
+        int length = (int) Math.min(GUARD_BYTES, offset);
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        long position = offset - length;
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) <= 0) {
+                return -1;
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.flip());
+        return crc.getValue();
+    }
+
+    private static String fileBase(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private Path checkpointFile(String name) {
+        return stateDirectory.resolve(fileBase(name) + CHECKPOINT_SUFFIX);
+    }
+
+    private Path samplesFile(String name) {
+        return stateDirectory.resolve(fileBase(name) + SAMPLES_SUFFIX);
+    }
+
+    private void load(String name, Checkpoint checkpoint) {
+        Path path = checkpointFile(name);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != CHECKPOINT_VERSION) {
+                return;
+            }
+            checkpoint.fileKey = in.readUTF();
+            checkpoint.offset = in.readLong();
+            checkpoint.guardCrc = in.readLong();
+            checkpoint.sampleCount = in.readLong();
+            checkpoint.averager = LatencyWindowAverager.readState(in);
+            // El segmento puede tener muestras de más (corte entre el append y el checkpoint), nunca de menos
+            if (checkpoint.averager.getStatsMode() == StatsMode.EXACT
+                    && sizeOrZero(samplesFile(name)) < checkpoint.sampleCount * Integer.BYTES) {
+                throw new IOException("faltan muestras en " + samplesFile(name).getFileName());
+            }
+        } catch (IOException e) {
+            System.err.println("Checkpoint ilegible, se relee " + name + ": " + e.getMessage());
+            checkpoint.reset(null);
+        }
+    }
+
+    private static long sizeOrZero(Path path) throws IOException {
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    private void save(String name, Checkpoint checkpoint) throws IOException {
+        Files.createDirectories(stateDirectory);
+        Path target = checkpointFile(name);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeUTF(checkpoint.fileKey);
+            out.writeLong(checkpoint.offset);
+            out.writeLong(checkpoint.guardCrc);
+            out.writeLong(checkpoint.sampleCount);
+            // En modo EXACT las muestras ya no están en el averager: el estado lleva sólo su cantidad (0)
+            checkpoint.averager.writeState(out);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Escribe {@code samples} a continuación de las ya confirmadas, pisando restos de una corrida cortada. */
+    private void appendSamples(String name, Checkpoint checkpoint, LatencySamples samples) throws IOException {
+        Files.createDirectories(stateDirectory);
+        long position = checkpoint.sampleCount * Integer.BYTES;
+        try (FileChannel out = FileChannel.open(samplesFile(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            out.truncate(position);
+            ByteBuffer buf = ByteBuffer.allocate(SAMPLE_BUFFER_BYTES);
+            for (int latency : samples.toArray()) {
+                if (!buf.hasRemaining()) {
+                    position = writeFully(out, buf.flip(), position);
+                    buf.clear();
+                }
+                buf.putInt(latency);
+            }
+            writeFully(out, buf.flip(), position);
+        }
+        checkpoint.sampleCount += samples.getCount();
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += out.write(buf, position);
+        }
+        return position;
+    }
+
+    private LatencySamples readSamples(String name, long count) throws IOException {
+        LatencySamples samples = new LatencySamples();
+        if (count == 0) {
+            return samples;
+        }
+        try (FileChannel in = FileChannel.open(samplesFile(name), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(SAMPLE_BUFFER_BYTES);
+            long position = 0;
+            long end = count * Integer.BYTES;
+            while (position < end) {
+                buf.clear().limit((int) Math.min(buf.capacity(), end - position));
+                while (buf.hasRemaining()) {
+                    if (in.read(buf, position + buf.position()) <= 0) {
+                        throw new EOFException("Segmento de muestras truncado: " + samplesFile(name));
+                    }
+                }
+                position += buf.position();
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    samples.add(buf.getInt());
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static final class Checkpoint {
+        private String fileKey;
+        private long offset;
+        private long guardCrc;
+        // Muestras confirmadas en el segmento (modo EXACT)
+        private long sampleCount;
+        private LatencyWindowAverager averager;
+
+        void reset(LatencyWindowAverager averager) {
+            this.fileKey = null;
+            this.offset = 0;
+            this.guardCrc = 0;
+            this.sampleCount = 0;
+            this.averager = averager;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package document_filter.latency;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Almacén columnar binario de las muestras parseadas: cada delay.log se convierte una sola vez y las
+ * corridas siguientes (otro tamaño de ventana, reportes, consultas por rango) leen las columnas mapeadas
+ * en memoria en lugar del texto.
+ *
+ * <p>Formato ({@code .lcol}): encabezado con la identidad del archivo fuente y los contadores de líneas;
+ * bloques de hasta {@value #BLOCK_SIZE} muestras con la columna de timestamps (deltas zigzag-varint), la
+ * de latencias (zigzag-varint) y un pie con cantidad y mínimos/máximos; al final un índice ralo con un
+ * registro por bloque para saltear los que no tocan un rango horario. Si el fuente cambia de tamaño o
+ * fecha de modificación, se vuelve a convertir.
+ */
+public class LatencyColumnStore {
+    private static final int MAGIC = 0x4C434F4C; // "LCOL"
+    private static final int VERSION = 2;
+    private static final RejectReason[] REJECT_REASONS = RejectReason.values();
+    private static final int BLOCK_SIZE = 1 << 16;
+    // magic, versión, tamaño y mtime del fuente, líneas parseadas e inválidas por motivo
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 8 * REJECT_REASONS.length;
+    // cantidad, primer timestamp, min/max timestamp, min/max latencia, largo de cada columna
+    private static final int FOOTER_BYTES = 4 + 8 + 8 + 8 + 4 + 4 + 4 + 4;
+    // offset del bloque y su pie repetido
+    private static final int INDEX_ENTRY_BYTES = 8 + FOOTER_BYTES;
+    // offset del índice, cantidad de bloques, magic
+    private static final int TRAILER_BYTES = 8 + 4 + 4;
+
+    private final Path directory;
+    // Un lock por archivo columnar: archivos distintos se convierten en paralelo
+    private final Map<Path, Object> conversionLocks = new ConcurrentHashMap<>();
+
+    public LatencyColumnStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Averager de {@code file} leído del almacén, convirtiendo antes el texto si hace falta. */
+    public LatencyWindowAverager load(String name, File file, ProcessingOptions options, ForkJoinPool pool) throws IOException {
+        return read(prepare(name, file, options.getMetrics()), Long.MIN_VALUE, Long.MAX_VALUE, options::newAverager, pool);
+    }
+
+    /** Archivo columnar vigente para {@code file}; lo (re)genera si no existe o el fuente cambió. */
+    public Path prepare(String name, File file) throws IOException {
+        return prepare(name, file, PipelineMetrics.NONE);
+    }
+
+    private Path prepare(String name, File file, PipelineMetrics metrics) throws IOException {
+        Path source = file.toPath();
+        Path target = directory.resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".lcol");
+        synchronized (conversionLocks.computeIfAbsent(target, key -> new Object())) {
+            BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+            long size = attributes.size();
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (isCurrent(target, size, modified)) {
+                return target;
+            }
+            Files.createDirectories(directory);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            convert(source, tmp, size, modified, LatencyWindowAverager.DEFAULT_ZONE, metrics);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("💾 " + name + " convertido a columnas: " + Files.size(target) + " bytes (texto: " + size + ")");
+            return target;
+        }
+    }
+
+    private static boolean isCurrent(Path target, long sourceSize, long sourceModified) {
+        if (!Files.exists(target)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(target), HEADER_BYTES))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION
+                    && in.readLong() == sourceSize && in.readLong() == sourceModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Parsea {@code source} de forma secuencial y escribe las columnas en {@code target}. */
+    static void convert(Path source, Path target, long sourceSize, long sourceModified, ZoneId zoneId,
+                        PipelineMetrics metrics) throws IOException {
+        long start = System.nanoTime();
+        DelayLineParser parser = new DelayLineParser(zoneId);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             InputStream in = DelayLogFiles.open(source)) {
+            BlockWriter writer = new BlockWriter(out);
+            // Las líneas se recorren con el mismo escaneo que DelayLogReader
+            byte[] buf = new byte[1 << 20];
+            int pending = 0;
+            int n;
+            while ((n = in.read(buf, pending, buf.length - pending)) != -1) {
+                int limit = pending + n;
+                int lineStart = 0;
+                for (int i = pending; i < limit; i++) {
+                    if (buf[i] == '\n') {
+                        if (parser.parse(buf, lineStart, i)) {
+                            writer.add(parser.getEpochMillis(), parser.getLatency());
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                pending = limit - lineStart;
+                if (pending == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                } else if (pending > 0 && lineStart > 0) {
+                    System.arraycopy(buf, lineStart, buf, 0, pending);
+                }
+            }
+            if (pending > 0 && parser.parse(buf, 0, pending)) {
+                writer.add(parser.getEpochMillis(), parser.getLatency());
+            }
+            writer.finish(sourceSize, sourceModified, parser.getParsedLines(), parser.getRejectedLines());
+            metrics.textParsed(sourceSize, parser.getParsedLines(), parser.getRejectedLines(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Carga las muestras con timestamp en {@code [fromMillis, toMillis)}; los bloques fuera del rango se
+     * descartan por el índice sin leerlos. Con pool, los bloques se decodifican en paralelo y los
+     * parciales se combinan en orden. Los contadores de líneas se suman sólo al leer el archivo completo.
+     */
+    public static LatencyWindowAverager read(Path store, long fromMillis, long toMillis,
+                                             Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(store, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            ByteBuffer trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || trailer.getInt(12) != MAGIC) {
+                throw new IOException("No es un archivo columnar válido: " + store);
+            }
+            header.getLong();
+            header.getLong();
+            long parsedLines = header.getLong();
+            long[] rejectedLines = new long[REJECT_REASONS.length];
+            for (int i = 0; i < rejectedLines.length; i++) {
+                rejectedLines[i] = header.getLong();
+            }
+            long indexOffset = trailer.getLong(0);
+            int blockCount = trailer.getInt(8);
+
+            ByteBuffer index = read(channel, indexOffset, (long) blockCount * INDEX_ENTRY_BYTES);
+            List<BlockTask> tasks = new ArrayList<>();
+            for (int b = 0; b < blockCount; b++) {
+                int entry = b * INDEX_ENTRY_BYTES;
+                long offset = index.getLong(entry);
+                long minTs = index.getLong(entry + 8 + 4 + 8);
+                long maxTs = index.getLong(entry + 8 + 4 + 8 + 8);
+                if (maxTs < fromMillis || minTs >= toMillis) {
+                    continue;
+                }
+                int count = index.getInt(entry + 8);
+                long firstTs = index.getLong(entry + 8 + 4);
+                int tsBytes = index.getInt(entry + 8 + FOOTER_BYTES - 8);
+                int latBytes = index.getInt(entry + 8 + FOOTER_BYTES - 4);
+                boolean whole = minTs >= fromMillis && maxTs < toMillis;
+                tasks.add(new BlockTask(channel, offset, count, firstTs, tsBytes, latBytes,
+                        whole ? Long.MIN_VALUE : fromMillis, whole ? Long.MAX_VALUE : toMillis, averagers));
+            }
+
+            LatencyWindowAverager result = MappedDelayLogParser.mergeInOrder(tasks, averagers.get(), pool);
+            if (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE) {
+                result.addLineCounts(parsedLines, rejectedLines);
+            }
+            return result;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(length));
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) <= 0) {
+                throw new EOFException("Archivo columnar truncado en la posición " + (position + buf.position()));
+            }
+        }
+        return buf.flip();
+    }
+
+    private static final class BlockTask extends RecursiveTask<LatencyWindowAverager> {
+        private final FileChannel channel;
+        private final long offset;
+        private final int count;
+        private final long firstTs;
+        private final int tsBytes;
+        private final int latBytes;
+        private final long fromMillis;
+        private final long toMillis;
+        private final Supplier<LatencyWindowAverager> averagers;
+
+        BlockTask(FileChannel channel, long offset, int count, long firstTs, int tsBytes, int latBytes,
+                  long fromMillis, long toMillis, Supplier<LatencyWindowAverager> averagers) {
+            this.channel = channel;
+            this.offset = offset;
+            this.count = count;
+            this.firstTs = firstTs;
+            this.tsBytes = tsBytes;
+            this.latBytes = latBytes;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.averagers = averagers;
+        }
+
+        @Override
+        protected LatencyWindowAverager compute() {
+            LatencyWindowAverager averager = averagers.get();
+            try {
+                MappedByteBuffer timestamps = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) tsBytes + latBytes);
+                ByteBuffer latencies = timestamps.slice(tsBytes, latBytes);
+                long ts = firstTs;
+                for (int i = 0; i < count; i++) {
+                    ts += zigzagDecode(readVarLong(timestamps));
+                    int latency = (int) zigzagDecode(readVarLong(latencies));
+                    if (ts >= fromMillis && ts < toMillis) {
+                        averager.addSample(ts, latency);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error al leer el bloque en " + offset, e);
+            }
+            return averager;
+        }
+    }
+
+    /** Acumula un bloque en memoria y lo vuelca con su pie; al terminar escribe el índice y el encabezado. */
+    private static final class BlockWriter {
+        private final FileChannel out;
+        private final ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+        private byte[] tsColumn = new byte[BLOCK_SIZE * 2];
+        private byte[] latColumn = new byte[BLOCK_SIZE * 2];
+        private int tsLength;
+        private int latLength;
+        private long position = HEADER_BYTES;
+        private int blockCount;
+
+        private int count;
+        private long firstTs;
+        private long previousTs;
+        private long minTs;
+        private long maxTs;
+        private int minLatency;
+        private int maxLatency;
+
+        BlockWriter(FileChannel out) {
+            this.out = out;
+        }
+
+        void add(long epochMillis, int latency) throws IOException {
+            if (count == 0) {
+                firstTs = previousTs = minTs = maxTs = epochMillis;
+                minLatency = maxLatency = latency;
+            }
+            tsColumn = ensureCapacity(tsColumn, tsLength);
+            tsLength = writeVarLong(tsColumn, tsLength, zigzagEncode(epochMillis - previousTs));
+            latColumn = ensureCapacity(latColumn, latLength);
+            latLength = writeVarLong(latColumn, latLength, zigzagEncode(latency));
+            previousTs = epochMillis;
+            minTs = Math.min(minTs, epochMillis);
+            maxTs = Math.max(maxTs, epochMillis);
+            minLatency = Math.min(minLatency, latency);
+            maxLatency = Math.max(maxLatency, latency);
+            if (++count == BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (count == 0) return;
+            long blockOffset = position;
+            write(ByteBuffer.wrap(tsColumn, 0, tsLength));
+            write(ByteBuffer.wrap(latColumn, 0, latLength));
+            footer.clear();
+            footer.putInt(count).putLong(firstTs).putLong(minTs).putLong(maxTs)
+                    .putInt(minLatency).putInt(maxLatency).putInt(tsLength).putInt(latLength);
+            write(footer.flip());
+
+            DataOutputStream entry = new DataOutputStream(index);
+            entry.writeLong(blockOffset);
+            entry.write(footer.array(), 0, FOOTER_BYTES);
+            blockCount++;
+            count = 0;
+            tsLength = 0;
+            latLength = 0;
+        }
+
+        void finish(long sourceSize, long sourceModified, long parsedLines, long[] rejectedLines) throws IOException {
+            flushBlock();
+            long indexOffset = position;
+            write(ByteBuffer.wrap(index.toByteArray()));
+            write(ByteBuffer.allocate(TRAILER_BYTES).putLong(indexOffset).putInt(blockCount).putInt(MAGIC).flip());
+
+            // El encabezado va último: un archivo a medio escribir no pasa la validación
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION)
+                    .putLong(sourceSize).putLong(sourceModified).putLong(parsedLines);
+            for (long rejected : rejectedLines) {
+                header.putLong(rejected);
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(false);
+        }
+
+        private void write(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                position += out.write(buf, position);
+            }
+        }
+
+        private static byte[] ensureCapacity(byte[] column, int length) {
+            return length + 10 <= column.length ? column : Arrays.copyOf(column, column.length * 2);
+        }
+    }
+
+    static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int writeVarLong(byte[] buf, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    static long readVarLong(ByteBuffer buf) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
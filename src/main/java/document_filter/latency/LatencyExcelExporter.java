@@ -1,23 +1,146 @@
 package document_filter.latency;
 
 
+import document_filter.domain.FileAnalysis;
+import document_filter.domain.FileSummary;
+import document_filter.domain.LatencyHistogram;
+import document_filter.domain.PreviewEstimate;
+import document_filter.domain.Spike;
 import document_filter.domain.Stats;
 import document_filter.domain.WindowResult;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class LatencyExcelExporter {
+    static final String[] SUMMARY_HEADERS = {
+            "Archivo", "Promedio (ms)", "Prom. ventanas (ms)", "Desvío estándar",
+            "Máxima", "Mínima", "Picos (>μ+σ)", "P95", "P99", "P99.9", "Mediana" ,"Cantidad > P95",
+            "Tamaño muestra","Prom. < P95","Prom. > P95 (ms)","Prom. msg/s"
+    };
+    // Ancho en caracteres de un Instant ISO-8601 y de un double en formato General
+    private static final int INSTANT_WIDTH = 24;
+    private static final int NUMBER_WIDTH = 18;
+    private static final int MAX_SHEET_NAME = 31;
 
     public static void processDirectory(String folderPath, int windowSeconds, String outputExcelFile) {
+        processDirectory(folderPath, outputExcelFile, new ProcessingOptions(windowSeconds));
+    }
+
+    /**
+     * Los archivos se analizan (parseo + estadísticas) en {@code options.getFileExecutor()}, con a lo sumo
+     * {@code maxInFlightFiles} resultados pendientes; el armado del workbook sigue en el hilo que llama y
+     * respeta el orden de los subdirectorios. El workbook es SXSSF: las hojas de ventanas se escriben en
+     * streaming con {@code rowAccessWindow} filas en memoria y anchos de columna precalculados. Si
+     * {@code outputExcelFile} está vacío no se genera el archivo resumen y sólo se devuelven los resúmenes.
+     */
+    public static List<FileSummary> processDirectory(String folderPath, String outputExcelFile, ProcessingOptions options) {
+        Map<String, File> nameToFile = findDelayLogs(folderPath);
+
+        if (nameToFile.isEmpty()) {
+            System.out.println("No se encontraron archivos delay.log en subdirectorios de la carpeta.");
+            return List.of();
+        }
+
+        if (options.getIngester() != null) {
+            options.getIngester().retain(nameToFile.keySet());
+        }
+        int windowSeconds = options.getWindowSeconds();
+        // Falla antes de analizar si alguna resolución es inválida
+        options.baseWindowSeconds();
+        // Sin ejecutor el análisis es síncrono: no tiene sentido retener más de un resultado
+        int maxInFlight = options.getFileExecutor() == null ? 1 : Math.max(1, options.getMaxInFlightFiles());
+        ForkJoinPool parsePool = options.getParseParallelism() > 1 ? new ForkJoinPool(options.getParseParallelism()) : null;
+        Deque<Future<FileAnalysis>> inFlight = new ArrayDeque<>();
+        List<FileSummary> summaries = new ArrayList<>();
+        boolean writeSummaryFile = outputExcelFile != null && !outputExcelFile.isBlank();
+        SXSSFWorkbook workbook = writeSummaryFile ? new SXSSFWorkbook(options.getRowAccessWindow()) : null;
+        try {
+            // La hoja resumen se crea primero para que quede primera; sus filas se escriben al final
+            Sheet summarySheet = null;
+            if (writeSummaryFile) {
+                workbook.setCompressTempFiles(true);
+                summarySheet = workbook.createSheet("Latency Summary");
+            }
+
+            Iterator<Map.Entry<String, File>> pending = nameToFile.entrySet().iterator();
+            int processed = 0;
+            // Tiempo armando hojas, sin contar la espera por los análisis
+            long buildNanos = 0;
+            while (pending.hasNext() || !inFlight.isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Procesamiento cancelado");
+                }
+                while (pending.hasNext() && inFlight.size() < maxInFlight) {
+                    Map.Entry<String, File> entry = pending.next();
+                    inFlight.add(submitAnalysis(entry.getKey(), entry.getValue(), options, parsePool));
+                }
+
+                FileAnalysis analysis = await(inFlight.poll());
+                processed++;
+                if (analysis == null) {
+                    notifyProgress(options, null, processed, nameToFile.size());
+                    continue;
+                }
+                if (writeSummaryFile) {
+                    long start = System.nanoTime();
+                    for (Map.Entry<Integer, List<WindowResult>> entry : analysis.resultsByResolution.entrySet()) {
+                        String suffix = entry.getKey() == windowSeconds ? "_ventanas" : "_vent_" + entry.getKey() + "s";
+                        writeWindowSheet(workbook, sheetName(workbook, analysis.name, suffix), entry.getValue());
+                    }
+                    writeSpikeSheet(workbook, sheetName(workbook, analysis.name, "_picos"), analysis.spikes);
+                    buildNanos += System.nanoTime() - start;
+                }
+                summaries.add(toSummary(analysis));
+
+                System.out.println("✔ Procesado: " + analysis.name + " (" + analysis.parsedLines + " líneas, "
+                        + analysis.malformedLines + " inválidas, "
+                        + bytesPerSample(analysis) + " bytes/muestra)");
+                notifyProgress(options, analysis.name, processed, nameToFile.size());
+            }
+
+            if (writeSummaryFile) {
+                long start = System.nanoTime();
+                writeSummarySheet(workbook, summarySheet, summaries);
+                options.getMetrics().stage(PipelineMetrics.Stage.SUMMARY_BUILD, buildNanos + System.nanoTime() - start);
+                start = System.nanoTime();
+                try (FileOutputStream fos = new FileOutputStream(outputExcelFile)) {
+                    workbook.write(fos);
+                    System.out.println("✅ Exportado a Excel: " + outputExcelFile);
+                }
+                options.getMetrics().stage(PipelineMetrics.Stage.SUMMARY_WRITE, System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error al generar el Excel", e);
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+            if (parsePool != null) parsePool.shutdown();
+            if (workbook != null) workbook.dispose();
+        }
+        return summaries;
+    }
+
+    private static void notifyProgress(ProcessingOptions options, String name, int processed, int total) {
+        if (options.getProgressListener() != null) {
+            options.getProgressListener().fileProcessed(name, processed, total);
+        }
+    }
+
+    /**
+     * Los delay.log de cada subdirectorio de {@code folderPath}, incluidos rotados y comprimidos (ver
+     * {@link DelayLogFiles}), por nombre "subdir/archivo".
+     */
+    public static Map<String, File> findDelayLogs(String folderPath) {
         File folder = new File(folderPath);
         if (!folder.exists() || !folder.isDirectory()) {
             throw new IllegalArgumentException("Ruta inválida: " + folderPath);
@@ -27,212 +150,488 @@ public class LatencyExcelExporter {
         File[] subdirs = folder.listFiles(File::isDirectory);
         if (subdirs != null) {
             for (File subdir : subdirs) {
-                File delayLog = new File(subdir, "delay.log");
-                if (delayLog.exists()) {
-                    nameToFile.put(subdir.getName() + "/delay.log", delayLog);
+                String[] logs = subdir.list((dir, fileName) -> DelayLogFiles.isDelayLog(fileName));
+                if (logs == null) continue;
+                Arrays.sort(logs, DelayLogFiles.ORDER);
+                for (String log : logs) {
+                    File delayLog = new File(subdir, log);
+                    if (delayLog.isFile()) {
+                        nameToFile.put(subdir.getName() + "/" + log, delayLog);
+                    }
                 }
             }
         }
+        return nameToFile;
+    }
 
-        if (nameToFile.isEmpty()) {
-            System.out.println("No se encontraron archivos delay.log en subdirectorios de la carpeta.");
-            return;
+    /**
+     * Nombre de hoja para el archivo {@code name} ("subdir/delay.log.1.gz") con {@code suffix}, dentro de los
+     * 31 caracteres de Excel: se omite "delay.log" ("subdir.1.gz_picos"), se recorta el nombre del archivo y
+     * no el sufijo, y si ya hay una hoja con ese nombre (Excel no distingue mayúsculas) se agrega "~N".
+     */
+    static String sheetName(Workbook workbook, String name, String suffix) {
+        String base = WorkbookUtil.createSafeSheetName(name.replace("/" + DelayLogFiles.CURRENT, "").replace("/", "_"));
+        String sheetName = fitSheetName(base, suffix);
+        for (int i = 2; workbook.getSheet(sheetName) != null; i++) {
+            sheetName = fitSheetName(base, "~" + i + suffix);
         }
+        return sheetName;
+    }
 
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet summarySheet = workbook.createSheet("Latency Summary");
-            String[] headers = {
-                    "Archivo", "Promedio (ms)", "Prom. ventanas (ms)", "Desvío estándar",
-                    "Máxima", "Mínima", "Picos (>μ+σ)", "P95", "P99", "P99.9", "Mediana" ,"Cantidad > P95",
-                    "Tamaño muestra","Prom. < P95","Prom. > P95 (ms)","Prom. msg/s"
-            };
-
-            Row headerRow = summarySheet.createRow(0);
-            for (int i = 0; i < headers.length; i++) {
-                headerRow.createCell(i).setCellValue(headers[i]);
-            }
+    private static String fitSheetName(String base, String suffix) {
+        return base.substring(0, Math.min(base.length(), MAX_SHEET_NAME - suffix.length())) + suffix;
+    }
 
-            int rowNum = 1;
-            double bestAvg = Double.MAX_VALUE;
-            int bestRow = -1;
+    private static void writeWindowSheet(Workbook workbook, String sheetName, List<WindowResult> results) {
+        Sheet windowSheet = workbook.createSheet(sheetName);
+        Row header = windowSheet.createRow(0);
+        header.createCell(0).setCellValue("Window Start");
+        header.createCell(1).setCellValue("Promedio (ms)");
+        header.createCell(2).setCellValue("Cantidad");
+        header.createCell(3).setCellValue("Ponderado (ms)");
+        header.createCell(4).setCellValue("P50 (ms)");
+        header.createCell(5).setCellValue("P99 (ms)");
+        header.createCell(6).setCellValue("Máximo (ms)");
+        header.createCell(7).setCellValue("Desvío (ms)");
+
+        int r = 1;
+        for (WindowResult result : results) {
+            Row rowW = windowSheet.createRow(r++);
+            rowW.createCell(0).setCellValue(result.windowStart.toString());
+            rowW.createCell(1).setCellValue(result.averageLatency);
+            rowW.createCell(2).setCellValue(result.count);
+            rowW.createCell(3).setCellValue(result.averageLatency*result.count*result.count); // genera un ponderado donde cada mensaje pesa n, siendo n la cantidad de mensajes totales durante ese segundo
+            rowW.createCell(4).setCellValue(result.p50Latency);
+            rowW.createCell(5).setCellValue(result.p99Latency);
+            rowW.createCell(6).setCellValue(result.maxLatency);
+            rowW.createCell(7).setCellValue(result.stdDev);
+        }
+        // Anchos fijos en lugar de autoSizeColumn, que recorre todas las filas (y en SXSSF ya no están)
+        setColumnWidth(windowSheet, 0, INSTANT_WIDTH);
+        for (int c = 1; c <= 7; c++) {
+            setColumnWidth(windowSheet, c, NUMBER_WIDTH);
+        }
+    }
 
-            for (Map.Entry<String, File> entry : nameToFile.entrySet()) {
-                String name = entry.getKey();
-                File file = entry.getValue();
+    private static void writeSpikeSheet(Workbook workbook, String sheetName, List<Spike> spikes) {
+        Sheet spikeSheet = workbook.createSheet(sheetName);
+        String[] headers = {"Inicio", "Duración (s)", "Ventanas", "Pico (ms)", "Inicio del pico", "Umbral μ+kσ (ms)"};
+        writeHeader(spikeSheet, headers);
+        int r = 1;
+        for (Spike spike : spikes) {
+            Row row = spikeSheet.createRow(r++);
+            row.createCell(0).setCellValue(spike.start.toString());
+            row.createCell(1).setCellValue(spike.durationSeconds);
+            row.createCell(2).setCellValue(spike.windows);
+            row.createCell(3).setCellValue(spike.peakLatency);
+            row.createCell(4).setCellValue(spike.peakWindowStart.toString());
+            row.createCell(5).setCellValue(spike.threshold);
+        }
+        setColumnWidth(spikeSheet, 0, INSTANT_WIDTH);
+        setColumnWidth(spikeSheet, 4, INSTANT_WIDTH);
+        for (int c : new int[]{1, 2, 3, 5}) {
+            setColumnWidth(spikeSheet, c, Math.max(headers[c].length(), NUMBER_WIDTH));
+        }
+    }
 
-                LatencyWindowAverager averager = new document_filter.latency.LatencyWindowAverager(windowSeconds);
+    /** msg/s sale de las ventanas de 1s, sea la resolución principal o una adicional; si no hay, -1. */
+    private static FileSummary toSummary(FileAnalysis analysis) {
+        List<WindowResult> perSecond = analysis.resultsByResolution.get(1);
+        double messagesPerSecond = -1;
+        if (perSecond != null) {
+            double windowCountAvg = 0;
+            for (WindowResult result : perSecond) {
+                windowCountAvg += result.count;
+            }
+            messagesPerSecond = windowCountAvg / perSecond.size();
+        }
+        return new FileSummary(analysis.name, analysis.stats, analysis.windowAvg, messagesPerSecond, analysis.histogram,
+                analysis.spikeWindows);
+    }
 
-                try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        averager.addLine(line);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    continue;
-                }
+    private static void writeSummarySheet(Workbook workbook, Sheet summarySheet, List<FileSummary> summaries) {
+        Row headerRow = summarySheet.createRow(0);
+        for (int i = 0; i < SUMMARY_HEADERS.length; i++) {
+            headerRow.createCell(i).setCellValue(SUMMARY_HEADERS[i]);
+        }
 
-                List<WindowResult> results = averager.getResults();
-                Stats stats = averager.getStats();
-                double windowAvg = document_filter.latency.LatencyWindowAverager.getWindowWeightedAvg(results);
+        int bestIndex = -1;
+        double bestAvg = Double.MAX_VALUE;
+        for (int i = 0; i < summaries.size(); i++) {
+            if (summaries.get(i).stats.average < bestAvg) {
+                bestAvg = summaries.get(i).stats.average;
+                bestIndex = i;
+            }
+        }
 
-                Row row = summarySheet.createRow(rowNum);
-                row.createCell(0).setCellValue(name);
-                row.createCell(1).setCellValue(stats.average);
-                row.createCell(2).setCellValue(windowAvg);
-                row.createCell(3).setCellValue(stats.stdDev);
-                row.createCell(4).setCellValue(stats.maxLatency);
-                row.createCell(5).setCellValue(stats.minLatency);
-                row.createCell(6).setCellValue(0);
-                row.createCell(7).setCellValue(stats.p95);
-                row.createCell(8).setCellValue(stats.p99);
-                row.createCell(9).setCellValue(stats.p999);
-                row.createCell(10).setCellValue(stats.p50);
-                row.createCell(11).setCellValue(stats.aboveP95Count);
-                row.createCell(12).setCellValue(stats.totalDataSize);
-                row.createCell(13).setCellValue(stats.averageBelowP95);
-                row.createCell(14).setCellValue(stats.averageUpperP95);
-
-
-                if (stats.average < bestAvg) {
-                    bestAvg = stats.average;
-                    bestRow = rowNum;
+        CellStyle greenStyle = workbook.createCellStyle();
+        greenStyle.setFillForegroundColor(IndexedColors.GREEN.getIndex());
+        greenStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+
+        int nameWidth = SUMMARY_HEADERS[0].length();
+        for (int i = 0; i < summaries.size(); i++) {
+            Row row = summarySheet.createRow(i + 1);
+            writeSummaryRow(row, summaries.get(i));
+            nameWidth = Math.max(nameWidth, summaries.get(i).name.length());
+            if (i == bestIndex) {
+                for (int c = 0; c < SUMMARY_HEADERS.length; c++) {
+                    row.getCell(c).setCellStyle(greenStyle);
                 }
+            }
+        }
 
-                rowNum++;
+        setColumnWidth(summarySheet, 0, nameWidth);
+        for (int i = 1; i < SUMMARY_HEADERS.length; i++) {
+            setColumnWidth(summarySheet, i, Math.max(SUMMARY_HEADERS[i].length(), NUMBER_WIDTH));
+        }
+    }
 
-                Sheet windowSheet = workbook.createSheet(name.replace("/", "_") + "_ventanas");
-                Row header = windowSheet.createRow(0);
-                header.createCell(0).setCellValue("Window Start");
-                header.createCell(1).setCellValue("Promedio (ms)");
-                header.createCell(2).setCellValue("Cantidad");
-                header.createCell(3).setCellValue("Ponderado (ms)");
+    static void writeSummaryRow(Row row, FileSummary summary) {
+        Stats stats = summary.stats;
+        row.createCell(0).setCellValue(summary.name);
+        row.createCell(1).setCellValue(stats.average);
+        row.createCell(2).setCellValue(summary.windowAvg);
+        row.createCell(3).setCellValue(stats.stdDev);
+        row.createCell(4).setCellValue(stats.maxLatency);
+        row.createCell(5).setCellValue(stats.minLatency);
+        row.createCell(6).setCellValue(summary.spikeWindows);
+        row.createCell(7).setCellValue(stats.p95);
+        row.createCell(8).setCellValue(stats.p99);
+        row.createCell(9).setCellValue(stats.p999);
+        row.createCell(10).setCellValue(stats.p50);
+        row.createCell(11).setCellValue(stats.aboveP95Count);
+        row.createCell(12).setCellValue(stats.totalDataSize);
+        row.createCell(13).setCellValue(stats.averageBelowP95);
+        row.createCell(14).setCellValue(stats.averageUpperP95);
+        row.createCell(15).setCellValue(summary.messagesPerSecond);
+    }
 
-                int r = 1;
-                double windowCountAvg=0;
-                for (WindowResult result : results) {
-                    Row rowW = windowSheet.createRow(r++);
-                    rowW.createCell(0).setCellValue(result.windowStart.toString());
-                    rowW.createCell(1).setCellValue(result.averageLatency);
-                    rowW.createCell(2).setCellValue(result.count);
-                    windowCountAvg+= result.count;
-                    rowW.createCell(3).setCellValue(result.averageLatency*result.count*result.count); // genera un ponderado donde cada mensaje pesa n, siendo n la cantidad de mensajes totales durante ese segundo
-                }
+    private static void setColumnWidth(Sheet sheet, int column, int characters) {
+        sheet.setColumnWidth(column, Math.min(255, characters + 2) * 256);
+    }
 
-                if(windowSeconds==1){
-                    row.createCell(15).setCellValue(windowCountAvg/ results.size());
-                }else{
-                    row.createCell(15).setCellValue(-1);
-                }
-                for (int i = 0; i < 4; i++) {
-                    windowSheet.autoSizeColumn(i);
-                }
+    private static Future<FileAnalysis> submitAnalysis(String name, File file, ProcessingOptions options, ForkJoinPool parsePool) {
+        ExecutorService executor = options.getFileExecutor();
+        if (executor == null) {
+            return CompletableFuture.completedFuture(analyzeFile(name, file, options, parsePool));
+        }
+        return executor.submit(() -> analyzeFile(name, file, options, parsePool));
+    }
 
-                System.out.println("✔ Procesado: " + name);
+    /** Parseo y estadísticas de un archivo; devuelve null si no se pudo leer. */
+    static FileAnalysis analyzeFile(String name, File file, ProcessingOptions options, ForkJoinPool parsePool) {
+        long start = System.nanoTime();
+        FileAnalysis analysis;
+        try {
+            // Los comprimidos no crecen: la ingesta incremental no aplica
+            if (options.getIngester() != null && !DelayLogFiles.isCompressed(file)) {
+                analysis = options.getIngester().ingest(name, file, options, parsePool, averager -> analyze(name, averager, options));
+            } else if (options.getShardCoordinator() != null) {
+                analysis = analyze(name, options.getShardCoordinator().read(name, file, options, parsePool), options);
+            } else if (options.getColumnStore() != null) {
+                analysis = analyze(name, options.getColumnStore().load(name, file, options, parsePool), options);
+            } else {
+                analysis = analyze(name, readFile(file, options, parsePool), options);
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        options.getMetrics().fileAnalyzed(name, analysis.heapBytes, System.nanoTime() - start);
+        return analysis;
+    }
 
-            for (int i = 0; i < headers.length; i++) {
-                summarySheet.autoSizeColumn(i);
-            }
+    private static FileAnalysis analyze(String name, LatencyWindowAverager averager, ProcessingOptions options) {
+        Map<Integer, List<WindowResult>> resultsByResolution = new LinkedHashMap<>();
+        for (int resolution : options.allResolutions()) {
+            resultsByResolution.put(resolution, averager.getResults(resolution));
+        }
+        List<WindowResult> results = resultsByResolution.get(options.getWindowSeconds());
+        long start = System.nanoTime();
+        Stats stats = averager.getStats();
+        options.getMetrics().stage(PipelineMetrics.Stage.STATS, System.nanoTime() - start);
+        double windowAvg = LatencyWindowAverager.getWindowWeightedAvg(results);
+        SpikeDetector detector = options.newSpikeDetector();
+        for (WindowResult result : results) {
+            detector.add(result);
+        }
+        return new FileAnalysis(name, resultsByResolution, stats, averager.getHistogram(), windowAvg, averager.getParsedLines(),
+                averager.getMalformedLines(), averager.estimatedHeapBytes(), detector.getSpikeWindows(), detector.getSpikes());
+    }
 
-            if (bestRow > 0) {
-                CellStyle greenStyle = workbook.createCellStyle();
-                greenStyle.setFillForegroundColor(IndexedColors.GREEN.getIndex());
-                greenStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    private static FileAnalysis await(Future<FileAnalysis> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Procesamiento interrumpido", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error al analizar el archivo", e.getCause());
+        }
+    }
 
-                Row best = summarySheet.getRow(bestRow);
-                for (int i = 0; i < headers.length; i++) {
-                    best.getCell(i).setCellStyle(greenStyle);
-                }
+    private static LatencyWindowAverager readFile(File file, ProcessingOptions options, ForkJoinPool parsePool) throws IOException {
+        long start = System.nanoTime();
+        LatencyWindowAverager averager;
+        if (DelayLogFiles.isCompressed(file)) {
+            averager = DelayLogFiles.parse(file, options::newAverager, parsePool);
+        } else if (parsePool != null) {
+            averager = MappedDelayLogParser.parse(file.toPath(), options::newAverager, parsePool);
+        } else {
+            averager = options.newAverager();
+            try (InputStream in = new FileInputStream(file)) {
+                DelayLogReader.read(in, averager);
             }
+        }
+        options.getMetrics().textParsed(file.length(), averager.getParsedLines(), averager.getRejectedLines(),
+                System.nanoTime() - start);
+        return averager;
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(outputExcelFile)) {
-                workbook.write(fos);
-                System.out.println("✅ Exportado a Excel: " + outputExcelFile);
+    /**
+     * Averager del rango {@code [from, to)} de un delay.log, que debe empezar en un inicio de línea; con
+     * {@code to} negativo se lee hasta el final. Los comprimidos sólo se leen enteros.
+     */
+    public static LatencyWindowAverager readRange(File file, long from, long to, ProcessingOptions options,
+                                                  ForkJoinPool parsePool) throws IOException {
+        if (from == 0 && to < 0) {
+            return readFile(file, options, parsePool);
+        }
+        if (DelayLogFiles.isCompressed(file)) {
+            throw new IllegalArgumentException("Los archivos comprimidos sólo se leen enteros: " + file.getName());
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long end = to < 0 ? channel.size() : Math.min(to, channel.size());
+            if (from < 0 || from > end) {
+                throw new IllegalArgumentException("Rango inválido: [" + from + ", " + to + ")");
             }
-        } catch (IOException e) {
-            throw new RuntimeException("Error al generar el Excel", e);
+            LatencyWindowAverager averager = MappedDelayLogParser.parse(channel, from, end, options::newAverager, parsePool);
+            options.getMetrics().textParsed(end - from, averager.getParsedLines(), averager.getRejectedLines(),
+                    System.nanoTime() - start);
+            return averager;
         }
     }
 
-    public static void copySummaryToExistingExcel(String sourceExcelFile, String targetExcelFile, String outputDirectory) {
-        try (FileInputStream sourceFis = new FileInputStream(sourceExcelFile);
-             FileInputStream targetFis = new FileInputStream(targetExcelFile);
-             Workbook sourceWorkbook = WorkbookFactory.create(sourceFis);
-             Workbook targetWorkbook = new XSSFWorkbook(targetFis)) {
-
-            Sheet summarySheet = sourceWorkbook.getSheet("Latency Summary");
-            Sheet reportDataSheet = targetWorkbook.getSheet("Report Data");
-
-            validateSheetsExist(summarySheet, reportDataSheet);
-            clearInputTab(reportDataSheet); // Limpiar hoja destino
-            copySummaryData(summarySheet, reportDataSheet); // Copiar fila por fila
+    private static String bytesPerSample(FileAnalysis analysis) {
+        long samples = analysis.stats.totalDataSize;
+        return samples == 0 ? "-" : String.format("%.1f", (double) analysis.heapBytes / samples);
+    }
 
-            // Guardar cambios en el archivo destino
-            String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            String outputFilePath = Paths.get(outputDirectory, "report-" + dateStr + ".xlsx").toString();
+    /**
+     * Completa la hoja "Report Data" del template directamente con los resúmenes calculados, sin pasar
+     * por el archivo resumen intermedio. El template se toma de {@link ReportTemplateCache}.
+     */
+    public static String writeReport(List<FileSummary> summaries, String templateFile, String outputDirectory,
+                                     PipelineMetrics metrics) {
+        long start = System.nanoTime();
+        String dateStr = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        String outputFilePath = Paths.get(outputDirectory, "report-" + dateStr + ".xlsx").toString();
+        try (Workbook targetWorkbook = buildReport(summaries, templateFile)) {
+            metrics.stage(PipelineMetrics.Stage.REPORT_BUILD, System.nanoTime() - start);
+            start = System.nanoTime();
             try (FileOutputStream fos = new FileOutputStream(outputFilePath)) {
-                for (int i = 0; i < targetWorkbook.getNumberOfSheets(); i++) {
-                    Sheet sheet = targetWorkbook.getSheetAt(i);
-                    if (sheet != null) {
-                        sheet.setForceFormulaRecalculation(true);
-                    }
-                }
-                targetWorkbook.setForceFormulaRecalculation(true);
                 targetWorkbook.write(fos);
                 System.out.println("✅ Archivo generado en: " + outputFilePath);
             }
-
+            metrics.stage(PipelineMetrics.Stage.REPORT_WRITE, System.nanoTime() - start);
         } catch (IOException e) {
-            throw new RuntimeException("Error al copiar datos al Excel destino", e);
+            throw new RuntimeException("Error al generar el reporte", e);
         }
+        return outputFilePath;
     }
 
-    private static void validateSheetsExist(Sheet summarySheet, Sheet reportDataSheet) {
-        if (summarySheet == null) {
-            throw new IllegalArgumentException("La hoja 'Latency Summary' no existe en el archivo fuente.");
+    /**
+     * Reporte aproximado en memoria: el template con los resúmenes estimados y una hoja "Aproximado" con
+     * los intervalos de confianza, la fracción muestreada y los archivos que no se pudieron muestrear.
+     */
+    public static byte[] writePreviewReport(List<PreviewEstimate> estimates, List<String> skipped, String templateFile) {
+        List<FileSummary> summaries = new ArrayList<>();
+        for (PreviewEstimate estimate : estimates) {
+            summaries.add(estimate.summary);
+        }
+        try (Workbook workbook = buildReport(summaries, templateFile); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Aproximado");
+            String[] headers = {"Archivo", "Muestreado (%)", "Bloques", "Promedio (ms)", "Promedio mín.", "Promedio máx.",
+                    "P50", "P50 mín.", "P50 máx.", "P95", "P95 mín.", "P95 máx.", "P99", "P99 mín.", "P99 máx.",
+                    "P99.9", "P99.9 mín.", "P99.9 máx.", "Prom. msg/s"};
+            writeHeader(sheet, headers);
+            int r = 1;
+            for (PreviewEstimate estimate : estimates) {
+                Stats stats = estimate.summary.stats;
+                Row row = sheet.createRow(r++);
+                row.createCell(0).setCellValue(estimate.summary.name);
+                row.createCell(1).setCellValue(estimate.getSampledFraction() * 100);
+                row.createCell(2).setCellValue(estimate.blocks);
+                row.createCell(3).setCellValue(stats.average);
+                row.createCell(4).setCellValue(estimate.meanLow);
+                row.createCell(5).setCellValue(estimate.meanHigh);
+                row.createCell(6).setCellValue(stats.p50);
+                row.createCell(7).setCellValue(estimate.p50Low);
+                row.createCell(8).setCellValue(estimate.p50High);
+                row.createCell(9).setCellValue(stats.p95);
+                row.createCell(10).setCellValue(estimate.p95Low);
+                row.createCell(11).setCellValue(estimate.p95High);
+                row.createCell(12).setCellValue(stats.p99);
+                row.createCell(13).setCellValue(estimate.p99Low);
+                row.createCell(14).setCellValue(estimate.p99High);
+                row.createCell(15).setCellValue(stats.p999);
+                row.createCell(16).setCellValue(estimate.p999Low);
+                row.createCell(17).setCellValue(estimate.p999High);
+                row.createCell(18).setCellValue(estimate.summary.messagesPerSecond);
+            }
+            for (String name : skipped) {
+                Row row = sheet.createRow(r++);
+                row.createCell(0).setCellValue(name);
+                row.createCell(1).setCellValue("Omitido: comprimido, sin acceso aleatorio");
+            }
+            r++;
+            double confidence = estimates.isEmpty() ? SampledPreview.CONFIDENCE : estimates.get(0).confidence;
+            sheet.createRow(r).createCell(0).setCellValue(String.format(
+                    "Reporte APROXIMADO por muestreo de bloques: intervalos de confianza del %.0f%%. "
+                            + "Máxima y mínima son las de la muestra; Picos no se estima (-1).", confidence * 100));
+            setColumnWidth(sheet, 0, INSTANT_WIDTH);
+            for (int i = 1; i < headers.length; i++) {
+                setColumnWidth(sheet, i, Math.max(headers[i].length(), NUMBER_WIDTH));
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error al generar el reporte aproximado", e);
         }
+    }
 
+    /** Template con la hoja "Report Data" llena con los resúmenes y las fórmulas marcadas para recalcular. */
+    private static Workbook buildReport(List<FileSummary> summaries, String templateFile) throws IOException {
+        Workbook targetWorkbook = new XSSFWorkbook(new ByteArrayInputStream(ReportTemplateCache.load(Paths.get(templateFile))));
+        Sheet reportDataSheet = targetWorkbook.getSheet("Report Data");
         if (reportDataSheet == null) {
+            targetWorkbook.close();
             throw new IllegalArgumentException("La hoja 'Report Data' no existe en el archivo destino.");
         }
-    }
+        clearInputTab(reportDataSheet);
 
-    private static void clearInputTab(Sheet reportDataSheet) {
-        int lastRow = reportDataSheet.getLastRowNum();
-        for (int i = lastRow; i >= 0; i--) {
-            Row row = reportDataSheet.getRow(i);
-            if (row != null) reportDataSheet.removeRow(row);
+        Row headerRow = reportDataSheet.createRow(0);
+        for (int i = 0; i < SUMMARY_HEADERS.length; i++) {
+            headerRow.createCell(i).setCellValue(SUMMARY_HEADERS[i]);
+        }
+        for (int i = 0; i < summaries.size(); i++) {
+            writeSummaryRow(reportDataSheet.createRow(i + 1), summaries.get(i));
         }
-    }
-
-    private static void copySummaryData(Sheet summarySheet, Sheet reportDataSheet) {
-        for (int i = 0; i <= summarySheet.getLastRowNum(); i++) {
-            Row sourceRow = summarySheet.getRow(i);
-            Row targetRow = reportDataSheet.createRow(i);
 
-            if (sourceRow == null) continue;
+        for (int i = 0; i < targetWorkbook.getNumberOfSheets(); i++) {
+            targetWorkbook.getSheetAt(i).setForceFormulaRecalculation(true);
+        }
+        targetWorkbook.setForceFormulaRecalculation(true);
+        return targetWorkbook;
+    }
 
-            for (int j = 0; j < sourceRow.getLastCellNum(); j++) {
-                Cell sourceCell = sourceRow.getCell(j);
-                if (sourceCell == null) continue;
+    /**
+     * Reporte de tendencia de varios días armado sólo con el historial: una hoja por archivo con una fila
+     * por día y una hoja con los percentiles del período completo, calculados combinando los histogramas
+     * diarios de cada archivo.
+     */
+    public static byte[] writeTrendReport(SortedMap<LocalDate, List<FileSummary>> history) {
+        Map<String, List<Map.Entry<LocalDate, FileSummary>>> byFile = new TreeMap<>();
+        for (Map.Entry<LocalDate, List<FileSummary>> day : history.entrySet()) {
+            for (FileSummary summary : day.getValue()) {
+                byFile.computeIfAbsent(summary.name, name -> new ArrayList<>()).add(Map.entry(day.getKey(), summary));
+            }
+        }
 
-                Cell targetCell = targetRow.createCell(j);
-                copyCellValue(sourceCell, targetCell);
+        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet merged = workbook.createSheet("Percentiles " + history.size() + " días");
+            String[] mergedHeaders = {"Archivo", "Días", "Promedio (ms)", "Desvío estándar", "P50", "P95", "P99",
+                    "P99.9", "Máxima", "Mínima", "Tamaño muestra", "Error máx. percentiles (%)"};
+            writeHeader(merged, mergedHeaders);
+            int mergedRow = 1;
+            for (Map.Entry<String, List<Map.Entry<LocalDate, FileSummary>>> file : byFile.entrySet()) {
+                LatencyHistogram histogram = mergeHistograms(file.getValue());
+                Stats stats = histogram.toStats();
+                Row row = merged.createRow(mergedRow++);
+                row.createCell(0).setCellValue(file.getKey());
+                row.createCell(1).setCellValue(file.getValue().size());
+                row.createCell(2).setCellValue(stats.average);
+                row.createCell(3).setCellValue(stats.stdDev);
+                row.createCell(4).setCellValue(stats.p50);
+                row.createCell(5).setCellValue(stats.p95);
+                row.createCell(6).setCellValue(stats.p99);
+                row.createCell(7).setCellValue(stats.p999);
+                row.createCell(8).setCellValue(stats.maxLatency);
+                row.createCell(9).setCellValue(stats.minLatency);
+                row.createCell(10).setCellValue(stats.totalDataSize);
+                // Cota del error relativo de un bucket: 1/2^(bits-1)
+                row.createCell(11).setCellValue(100.0 / (1 << (histogram.getPrecisionBits() - 1)));
+            }
+            for (int i = 0; i < mergedHeaders.length; i++) {
+                setColumnWidth(merged, i, Math.max(mergedHeaders[i].length(), NUMBER_WIDTH));
+            }
 
+            String[] trendHeaders = {"Fecha", "Promedio (ms)", "Prom. ventanas (ms)", "P50", "P95", "P99", "P99.9",
+                    "Máxima", "Tamaño muestra", "Prom. msg/s", "Picos (>μ+σ)"};
+            for (Map.Entry<String, List<Map.Entry<LocalDate, FileSummary>>> file : byFile.entrySet()) {
+                Sheet sheet = workbook.createSheet(sheetName(workbook, file.getKey(), "_tendencia"));
+                writeHeader(sheet, trendHeaders);
+                int r = 1;
+                for (Map.Entry<LocalDate, FileSummary> day : file.getValue()) {
+                    FileSummary summary = day.getValue();
+                    Row row = sheet.createRow(r++);
+                    row.createCell(0).setCellValue(day.getKey().toString());
+                    row.createCell(1).setCellValue(summary.stats.average);
+                    row.createCell(2).setCellValue(summary.windowAvg);
+                    row.createCell(3).setCellValue(summary.stats.p50);
+                    row.createCell(4).setCellValue(summary.stats.p95);
+                    row.createCell(5).setCellValue(summary.stats.p99);
+                    row.createCell(6).setCellValue(summary.stats.p999);
+                    row.createCell(7).setCellValue(summary.stats.maxLatency);
+                    row.createCell(8).setCellValue(summary.stats.totalDataSize);
+                    row.createCell(9).setCellValue(summary.messagesPerSecond);
+                    row.createCell(10).setCellValue(summary.spikeWindows);
+                }
+                for (int i = 0; i < trendHeaders.length; i++) {
+                    setColumnWidth(sheet, i, Math.max(trendHeaders[i].length(), NUMBER_WIDTH));
+                }
             }
+            workbook.write(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Error al generar el reporte de tendencia", e);
+        }
+    }
+
+    /**
+     * Días sin histograma se omiten. Si los días tienen distinta precisión (por ejemplo, guardados antes de
+     * cambiar histogramDigits) se combinan con la menor de ellas.
+     */
+    private static LatencyHistogram mergeHistograms(List<Map.Entry<LocalDate, FileSummary>> days) {
+        int bits = Integer.MAX_VALUE;
+        for (Map.Entry<LocalDate, FileSummary> day : days) {
+            LatencyHistogram histogram = day.getValue().histogram;
+            if (histogram != null) bits = Math.min(bits, histogram.getPrecisionBits());
+        }
+        if (bits == Integer.MAX_VALUE) {
+            return new LatencyHistogram(1);
         }
+        LatencyHistogram merged = new LatencyHistogram(bits);
+        for (Map.Entry<LocalDate, FileSummary> day : days) {
+            LatencyHistogram histogram = day.getValue().histogram;
+            if (histogram != null) merged.add(histogram.withPrecisionBits(bits));
+        }
+        return merged;
     }
 
-    private static void copyCellValue(Cell source, Cell target) {
-        switch (source.getCellType()) {
-            case STRING -> target.setCellValue(source.getStringCellValue());
-            case NUMERIC -> target.setCellValue(source.getNumericCellValue());
-            case BOOLEAN -> target.setCellValue(source.getBooleanCellValue());
-            case FORMULA -> target.setCellFormula(source.getCellFormula());
-            case BLANK -> target.setBlank();
-            default -> target.setCellValue(source.toString());
+    private static void writeHeader(Sheet sheet, String[] headers) {
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < headers.length; i++) {
+            header.createCell(i).setCellValue(headers[i]);
         }
     }
 
+    private static void clearInputTab(Sheet reportDataSheet) {
+        int lastRow = reportDataSheet.getLastRowNum();
+        for (int i = lastRow; i >= 0; i--) {
+            Row row = reportDataSheet.getRow(i);
+            if (row != null) reportDataSheet.removeRow(row);
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package document_filter.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular de muestras (timestamp, latencia) sin locks: varios productores reservan lotes con
+ * un único getAndAdd y marcan cada posición publicada con su número de secuencia; un solo consumidor
+ * las lee en orden. Con el buffer lleno el productor espera (la memoria no crece).
+ */
+final class LatencyRingBuffer {
+    /** Recibe las muestras drenadas, en el hilo consumidor. */
+    interface Sink {
+        void accept(long epochMillis, int latency);
+    }
+
+    private final int mask;
+    private final long[] timestamps;
+    private final int[] latencies;
+    // published[i] == secuencia escrita en la posición i; -1 si todavía no se usó
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private volatile boolean closed;
+    // Sólo la usa el consumidor
+    private long next;
+
+    LatencyRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de 2: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.timestamps = new long[capacity];
+        this.latencies = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.lazySet(i, -1);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /** Publica {@code count} muestras (count no puede superar la capacidad). */
+    void put(long[] epochMillis, int[] latency, int count) {
+        if (count > capacity()) {
+            throw new IllegalArgumentException("Lote de " + count + " muestras mayor que el buffer de " + capacity());
+        }
+        long start = claimed.getAndAdd(count);
+        long wrapPoint = start + count - capacity();
+        while (consumed.get() < wrapPoint) {
+            if (closed) {
+                throw new IllegalStateException("Buffer de ingesta cerrado");
+            }
+            LockSupport.parkNanos(1_000);
+        }
+        for (int i = 0; i < count; i++) {
+            long sequence = start + i;
+            int index = (int) (sequence & mask);
+            timestamps[index] = epochMillis[i];
+            latencies[index] = latency[i];
+            published.lazySet(index, sequence);
+        }
+    }
+
+    /** Entrega hasta {@code max} muestras publicadas en orden; devuelve cuántas. */
+    int drain(Sink sink, int max) {
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (next & mask);
+            if (published.get(index) != next) {
+                break;
+            }
+            sink.accept(timestamps[index], latencies[index]);
+            next++;
+            drained++;
+        }
+        if (drained > 0) {
+            consumed.lazySet(next);
+        }
+        return drained;
+    }
+
+    void close() {
+        closed = true;
+    }
+}
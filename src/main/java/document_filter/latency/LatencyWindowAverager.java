@@ -1,102 +1,412 @@
 package document_filter.latency;
 
+import document_filter.domain.LatencyHistogram;
+import document_filter.domain.LatencySamples;
 import document_filter.domain.Stats;
 import document_filter.domain.Window;
 import document_filter.domain.WindowResult;
 
-import java.time.LocalDateTime;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class LatencyWindowAverager {
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+    public static final ZoneId DEFAULT_ZONE = ZoneId.of("America/Argentina/Buenos_Aires"); // o configurable
+    private static final int MAX_SLOTS = 1 << 24;
+    private static final int STATE_VERSION = 6;
+    private static final RejectReason[] REJECT_REASONS = RejectReason.values();
+    public static final int DEFAULT_WINDOW_SKETCH_DIGITS = 1;
+
     private final int windowSizeSeconds;
     private final ZoneId zoneId;
-    private final Map<Long, Window> windows = new TreeMap<>();
+    private final DelayLineParser parser;
+    private final long windowMillis;
+    private final StatsMode statsMode;
+    // Sólo en modo HISTOGRAM: se llena en addSample y de él salen las Stats
+    private final LatencyHistogram histogram;
+    // Sólo en modo EXACT: todas las latencias del archivo, de ellas salen las Stats exactas
+    private LatencySamples samples;
+    // Precisión del histograma del archivo (getHistogram), también en modo EXACT
+    private final int histogramPrecisionBits;
+    // Precisión del histograma de cada ventana (percentiles por ventana)
+    private final int sketchPrecisionBits;
+    // Índice denso: slots[i] es la ventana que empieza en (firstSlot + i) * windowMillis
+    private Window[] slots = new Window[0];
+    private long firstSlot;
+    private long sampleCount;
+    private long outOfRangeSamples;
+    private long mergedParsedLines;
+    private final long[] mergedRejectedLines = new long[REJECT_REASONS.length];
 
     public LatencyWindowAverager(int windowSizeSeconds) {
+        this(windowSizeSeconds, DEFAULT_ZONE);
+    }
+
+    public LatencyWindowAverager(int windowSizeSeconds, ZoneId zoneId) {
+        this(windowSizeSeconds, zoneId, StatsMode.EXACT, 3);
+    }
+
+    public LatencyWindowAverager(int windowSizeSeconds, ZoneId zoneId, StatsMode statsMode, int histogramDigits) {
+        this(windowSizeSeconds, zoneId, statsMode, histogramDigits, DEFAULT_WINDOW_SKETCH_DIGITS);
+    }
+
+    public LatencyWindowAverager(int windowSizeSeconds, ZoneId zoneId, StatsMode statsMode, int histogramDigits,
+                                 int windowSketchDigits) {
+        this(windowSizeSeconds, zoneId, statsMode,
+                statsMode == StatsMode.HISTOGRAM ? LatencyHistogram.withSignificantDigits(histogramDigits) : null,
+                statsMode == StatsMode.EXACT ? new LatencySamples() : null,
+                LatencyHistogram.precisionBitsFor(histogramDigits), LatencyHistogram.precisionBitsFor(windowSketchDigits));
+    }
+
+    private LatencyWindowAverager(int windowSizeSeconds, ZoneId zoneId, StatsMode statsMode, LatencyHistogram histogram,
+                                  LatencySamples samples, int histogramPrecisionBits, int sketchPrecisionBits) {
         this.windowSizeSeconds = windowSizeSeconds;
-        this.zoneId = ZoneId.of("America/Argentina/Buenos_Aires"); // o configurable
+        this.windowMillis = windowSizeSeconds * 1000L;
+        this.zoneId = zoneId;
+        this.parser = new DelayLineParser(zoneId);
+        this.statsMode = statsMode;
+        this.histogram = histogram;
+        this.samples = samples;
+        this.histogramPrecisionBits = histogramPrecisionBits;
+        this.sketchPrecisionBits = sketchPrecisionBits;
+    }
+
+    /** Mismo tamaño de ventana, zona, modo y precisiones: sus estados se pueden combinar. */
+    public boolean isCompatibleWith(LatencyWindowAverager other) {
+        return windowMillis == other.windowMillis && zoneId.equals(other.zoneId) && statsMode == other.statsMode
+                && sketchPrecisionBits == other.sketchPrecisionBits
+                && histogramPrecisionBits == other.histogramPrecisionBits;
     }
 
+    /** Serializa el estado agregado (ventanas, histograma o muestras y contadores) para retomarlo más tarde. */
+    public void writeState(DataOutput out) throws IOException {
+        out.writeInt(STATE_VERSION);
+        out.writeInt(windowSizeSeconds);
+        out.writeUTF(zoneId.getId());
+        out.writeUTF(statsMode.name());
+        out.writeInt(histogramPrecisionBits);
+        out.writeInt(sketchPrecisionBits);
+        if (histogram != null) {
+            histogram.writeTo(out);
+        }
+        out.writeLong(outOfRangeSamples);
+        out.writeLong(getParsedLines());
+        for (RejectReason reason : REJECT_REASONS) {
+            out.writeLong(getRejectedLines(reason));
+        }
+        int windowCount = 0;
+        for (Window window : slots) {
+            if (window != null) windowCount++;
+        }
+        out.writeInt(windowCount);
+        for (Window window : slots) {
+            if (window != null) window.writeTo(out);
+        }
+        if (samples != null) {
+            samples.writeTo(out);
+        }
+    }
 
+    public static LatencyWindowAverager readState(DataInput in) throws IOException {
+        int version = in.readInt();
+        if (version != STATE_VERSION) {
+            throw new IOException("Versión de estado no soportada: " + version);
+        }
+        int windowSizeSeconds = in.readInt();
+        ZoneId zoneId = ZoneId.of(in.readUTF());
+        StatsMode statsMode = StatsMode.valueOf(in.readUTF());
+        int histogramPrecisionBits = in.readInt();
+        int sketchPrecisionBits = in.readInt();
+        LatencyHistogram histogram = statsMode == StatsMode.HISTOGRAM ? LatencyHistogram.readFrom(in) : null;
+        // Las muestras van al final del estado: se completan después de leer las ventanas
+        LatencySamples samples = statsMode == StatsMode.EXACT ? new LatencySamples() : null;
+        LatencyWindowAverager averager = new LatencyWindowAverager(windowSizeSeconds, zoneId, statsMode, histogram,
+                samples, histogramPrecisionBits, sketchPrecisionBits);
+        averager.outOfRangeSamples = in.readLong();
+        averager.mergedParsedLines = in.readLong();
+        for (RejectReason reason : REJECT_REASONS) {
+            averager.mergedRejectedLines[reason.ordinal()] = in.readLong();
+        }
+        int windowCount = in.readInt();
+        for (int i = 0; i < windowCount; i++) {
+            Window window = Window.readFrom(in);
+            int index = averager.indexOf(window.getStartEpochMillis() / averager.windowMillis);
+            if (index < 0) {
+                throw new IOException("Ventana fuera de rango en el estado: " + window.getStartEpochMillis());
+            }
+            averager.slots[index] = window;
+            averager.sampleCount += window.getCount();
+        }
+        if (samples != null) {
+            samples.addAll(LatencySamples.readFrom(in));
+        }
+        return averager;
+    }
 
     public void addLine(String line) {
-        String[] parts = line.split(";");
-        if (parts.length != 5) return;
+        if (parser.parse(line)) {
+            addSample(parser.getEpochMillis(), parser.getLatency());
+        }
+    }
+
+    public void addLine(byte[] buf, int from, int to) {
+        if (parser.parse(buf, from, to)) {
+            addSample(parser.getEpochMillis(), parser.getLatency());
+        }
+    }
+
+    public void addSample(long epochMillis, int latency) {
+        //if (document_filter.latency < 0) return;
+        long slot = epochMillis / windowMillis;
+        int index = indexOf(slot);
+        if (index < 0) {
+            outOfRangeSamples++;
+            return;
+        }
+        Window window = slots[index];
+        if (window == null) {
+            window = new Window(slot * windowMillis, sketchPrecisionBits);
+            slots[index] = window;
+        }
+        window.add(latency);
+        if (samples != null) {
+            samples.add(latency);
+        }
+        if (histogram != null) {
+            histogram.record(latency);
+        }
+        sampleCount++;
+    }
+
+    /**
+     * Combina un averager parcial (por ejemplo, de otro chunk del mismo archivo). Las muestras del
+     * parcial se agregan después de las propias; el parcial no debe usarse después.
+     */
+    public void merge(LatencyWindowAverager other) {
+        if (other.windowMillis != windowMillis) {
+            throw new IllegalArgumentException("No se pueden combinar ventanas de distinto tamaño: "
+                    + other.windowSizeSeconds + "s vs " + windowSizeSeconds + "s");
+        }
+        if (other.statsMode != statsMode) {
+            throw new IllegalArgumentException("No se pueden combinar modos distintos: " + other.statsMode + " vs " + statsMode);
+        }
+        if (other.sketchPrecisionBits != sketchPrecisionBits) {
+            throw new IllegalArgumentException("No se pueden combinar ventanas de distinta precisión: "
+                    + other.sketchPrecisionBits + " vs " + sketchPrecisionBits);
+        }
+        for (int i = 0; i < other.slots.length; i++) {
+            Window source = other.slots[i];
+            if (source == null) continue;
+            long slot = other.firstSlot + i;
+            int index = indexOf(slot);
+            if (index < 0) {
+                outOfRangeSamples += source.getCount();
+                continue;
+            }
+            if (slots[index] == null) {
+                slots[index] = source;
+            } else {
+                slots[index].addAll(source);
+            }
+            sampleCount += source.getCount();
+        }
+        if (histogram != null) {
+            histogram.add(other.histogram);
+        }
+        if (samples != null) {
+            samples.addAll(other.samples);
+        }
+        outOfRangeSamples += other.outOfRangeSamples;
+        mergedParsedLines += other.getParsedLines();
+        for (RejectReason reason : REJECT_REASONS) {
+            mergedRejectedLines[reason.ordinal()] += other.getRejectedLines(reason);
+        }
+    }
+
+    /** Suma contadores de líneas leídas por fuera del parser (por ejemplo, desde el almacén columnar). */
+    public void addLineCounts(long parsedLines, long[] rejectedLines) {
+        mergedParsedLines += parsedLines;
+        for (int i = 0; i < mergedRejectedLines.length; i++) {
+            mergedRejectedLines[i] += rejectedLines[i];
+        }
+    }
+
+    private int indexOf(long slot) {
+        if (slots.length == 0) {
+            slots = new Window[64];
+            firstSlot = slot;
+            return 0;
+        }
+        long index = slot - firstSlot;
+        if (index >= 0 && index < slots.length) {
+            return (int) index;
+        }
+        long lastSlot = firstSlot + slots.length - 1;
+        long newFirst = Math.min(firstSlot, slot);
+        long needed = Math.max(lastSlot, slot) - newFirst + 1;
+        if (needed > MAX_SLOTS) {
+            // Un timestamp absurdo no debe inflar el índice: se descarta la muestra
+            return -1;
+        }
+        int capacity = (int) Math.min(MAX_SLOTS, Math.max(needed, slots.length * 2L));
+        Window[] grown = new Window[capacity];
+        // Si el slot nuevo es anterior, el margen extra queda hacia atrás
+        long start = slot < firstSlot ? lastSlot - capacity + 1 : firstSlot;
+        System.arraycopy(slots, 0, grown, (int) (firstSlot - start), slots.length);
+        slots = grown;
+        firstSlot = start;
+        return (int) (slot - firstSlot);
+    }
+
+    /**
+     * En modo EXACT saca las muestras crudas y deja el averager con un conjunto vacío; ventanas y
+     * contadores no cambian. Devuelve null en modo HISTOGRAM.
+     */
+    public LatencySamples detachSamples() {
+        if (samples == null) {
+            return null;
+        }
+        LatencySamples detached = samples;
+        samples = new LatencySamples();
+        return detached;
+    }
+
+    /** Vuelve a poner muestras sacadas con {@link #detachSamples()} (o leídas de disco) en lugar de las actuales. */
+    public void attachSamples(LatencySamples attached) {
+        if (samples == null) {
+            throw new IllegalStateException("El modo " + statsMode + " no guarda las muestras");
+        }
+        samples = attached;
+    }
 
-        try {
-            String recvTimeStr = parts[2];
-            int latency = Integer.parseInt(parts[4]);
-            //if (document_filter.latency < 0) return;
-            long epochMillis = LocalDateTime.parse(recvTimeStr, formatter)
-                    .atZone(zoneId)
-                    .toInstant()
-                    .toEpochMilli();
+    public long getSampleCount() {
+        return sampleCount;
+    }
 
-            long windowStart = (epochMillis / (windowSizeSeconds * 1000L)) * (windowSizeSeconds * 1000L);
+    public long getOutOfRangeSamples() {
+        return outOfRangeSamples;
+    }
 
-            windows.computeIfAbsent(windowStart, Window::new).add(latency);
-        } catch (Exception e) {
-            // log error o ignorar línea inválida
+    /** Heap estimado retenido por las ventanas (índice incluido), las muestras y el histograma. */
+    public long estimatedHeapBytes() {
+        long bytes = 16 + 8L * slots.length;
+        for (Window window : slots) {
+            if (window != null) bytes += window.estimatedHeapBytes();
         }
+        if (samples != null) bytes += samples.estimatedHeapBytes();
+        return histogram == null ? bytes : bytes + histogram.estimatedHeapBytes();
+    }
+
+    public long getParsedLines() {
+        return parser.getParsedLines() + mergedParsedLines;
+    }
+
+    public long getMalformedLines() {
+        long merged = 0;
+        for (long rejected : mergedRejectedLines) {
+            merged += rejected;
+        }
+        return parser.getMalformedLines() + merged;
+    }
+
+    public long getRejectedLines(RejectReason reason) {
+        return parser.getRejectedLines(reason) + mergedRejectedLines[reason.ordinal()];
+    }
+
+    /** Rechazos por motivo, indexados por ordinal. */
+    public long[] getRejectedLines() {
+        long[] rejected = parser.getRejectedLines();
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] += mergedRejectedLines[i];
+        }
+        return rejected;
+    }
+
+    public int getWindowSizeSeconds() {
+        return windowSizeSeconds;
     }
 
     public List<WindowResult> getResults() {
         List<WindowResult> results = new ArrayList<>();
-        for (Window window : windows.values()) {
-            results.add(window.toResult());
+        for (Window window : slots) {
+            if (window != null) results.add(window.toResult());
         }
         return results;
     }
 
-    public List<Integer> getAllLatencies() {
-        List<Integer> all = new ArrayList<>();
-        for (Window b : windows.values()) {
-            all.addAll(b.getLatencies());
+    /**
+     * Ventanas de {@code resolutionSeconds} (múltiplo del tamaño de ventana) armadas combinando los
+     * resúmenes de las ventanas base consecutivas, sin volver a recorrer las muestras.
+     */
+    public List<WindowResult> getResults(int resolutionSeconds) {
+        if (resolutionSeconds == windowSizeSeconds) {
+            return getResults();
         }
-        return all;
+        List<WindowResult> results = new ArrayList<>();
+        forEachResult(resolutionSeconds, results::add);
+        return results;
     }
+
+    /** Como {@link #getResults(int)}, pero entrega cada ventana en orden sin armar la lista. */
+    public void forEachResult(int resolutionSeconds, Consumer<WindowResult> consumer) {
+        if (resolutionSeconds <= 0 || resolutionSeconds % windowSizeSeconds != 0) {
+            throw new IllegalArgumentException("La resolución " + resolutionSeconds
+                    + "s no es múltiplo de la ventana de " + windowSizeSeconds + "s");
+        }
+        if (resolutionSeconds == windowSizeSeconds) {
+            for (Window window : slots) {
+                if (window != null) consumer.accept(window.toResult());
+            }
+            return;
+        }
+        long resolutionMillis = resolutionSeconds * 1000L;
+        Window rollup = null;
+        for (Window window : slots) {
+            if (window == null) continue;
+            long start = window.getStartEpochMillis() / resolutionMillis * resolutionMillis;
+            if (rollup == null || rollup.getStartEpochMillis() != start) {
+                if (rollup != null) consumer.accept(rollup.toResult());
+                rollup = window.emptyCopy(start);
+            }
+            rollup.addAll(window);
+        }
+        if (rollup != null) consumer.accept(rollup.toResult());
+    }
+
+    public int[] getAllLatencies() {
+        if (samples == null) {
+            throw new IllegalStateException("El modo " + statsMode + " no guarda las muestras");
+        }
+        return samples.toArray();
+    }
+    public StatsMode getStatsMode() {
+        return statsMode;
+    }
+
+    /**
+     * Histograma de todo el archivo con {@code histogramDigits}, independiente del averager: el de modo
+     * HISTOGRAM o, en modo EXACT, uno armado con las muestras (no la suma de las ventanas, que tienen
+     * la precisión más baja del sketch).
+     */
+    public LatencyHistogram getHistogram() {
+        if (histogram != null) {
+            LatencyHistogram copy = new LatencyHistogram(histogram.getPrecisionBits());
+            copy.add(histogram);
+            return copy;
+        }
+        LatencyHistogram fromSamples = new LatencyHistogram(histogramPrecisionBits);
+        samples.forEach(fromSamples::record);
+        return fromSamples;
+    }
+
     public Stats getStats() {
-        List<Integer> values = getAllLatencies();
-        if (values.isEmpty()) return new Stats(0, 0,0,0, 0, 0,0, 0, 0, 0, 0,0);
-
-        Collections.sort(values);
-        int n = values.size();
-
-        double avg = values.stream().mapToInt(i -> i).average().orElse(0);
-        double std = Math.sqrt(values.stream().mapToDouble(i -> Math.pow(i - avg, 2)).average().orElse(0));
-        int max = values.get(n - 1);
-        int min = values.getFirst();
-
-        int p50= values.get(Math.min((int) Math.ceil(0.5 * n) - 1, n - 1));
-        int p95 = values.get(Math.min((int) Math.ceil(0.95 * n) - 1, n - 1));
-        int p99 = values.get(Math.min((int) Math.ceil(0.99 * n) - 1, n - 1));
-        int p999 = values.get(Math.min((int) Math.ceil(0.999 * n) - 1, n - 1));
-        int aboveP95 = (int) values.stream().filter(i -> i > p95).count();
-        double averageBelowP95= getAverageBelowP95(values,p95);
-        double averageUpperP95= getAverageUpperP95(values,p95);
-        return new Stats(avg, averageBelowP95,averageUpperP95,std, max, min, p50, p95, p99, p999, aboveP95,n);
-    }
-
-    private static double getAverageBelowP95(List<Integer> values,int p95) {
-        List<Integer> filtered = values.stream()
-                .filter(v -> v <= p95)
-                .toList();
-        return filtered.stream()
-                .mapToInt(i -> i)
-                .average()
-                .orElse(0.0);
-    }
-    private static double getAverageUpperP95(List<Integer> values,int p95) {
-        List<Integer> filtered = values.stream()
-                .filter(v -> v >= p95)
-                .toList();
-        return filtered.stream()
-                .mapToInt(i -> i)
-                .average()
-                .orElse(0.0);
+        if (statsMode == StatsMode.HISTOGRAM) {
+            return histogram.toStats();
+        }
+        return ExactStats.compute(getAllLatencies());
     }
 
     public static double getWindowWeightedAvg(List<WindowResult> results) {
@@ -0,0 +1,224 @@
+package document_filter.latency;
+
+import document_filter.domain.LatencyHistogram;
+import document_filter.domain.Spike;
+import document_filter.domain.Window;
+import document_filter.domain.WindowResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Agregación en vivo de registros de delay.log. Cada productor ({@link #ingest}) parsea sus líneas en
+ * su propio hilo y publica lotes en un {@link LatencyRingBuffer}; un único hilo escritor los vuelca en
+ * las ventanas, así las ventanas no necesitan sincronización. Se retienen sólo las últimas
+ * {@code retentionSeconds}: la ventana más vieja se reutiliza cuando llega una nueva y las muestras
+ * anteriores a la retención se cuentan como tardías. El escritor publica cada
+ * {@code publishIntervalMillis} un {@link LiveSnapshot} inmutable que es lo que ven las consultas.
+ * Cada ventana pasa por el {@link SpikeDetector} cuando llega la primera muestra de una ventana más
+ * nueva; lo que llegue tarde a una ventana ya evaluada no cambia los picos.
+ */
+public class LiveAggregator implements AutoCloseable {
+    private static final int BATCH_SIZE = 1024;
+    private static final int DRAIN_BATCH = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final int windowSeconds;
+    private final long windowMillis;
+    private final ZoneId zoneId;
+    private final int sketchPrecisionBits;
+    private final long publishIntervalNanos;
+    private final LatencyRingBuffer ring;
+    private final SpikeDetector spikeDetector;
+    private final LongAdder malformedLines = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile LiveSnapshot snapshot;
+
+    // Estado del escritor: windows[floorMod(slot, length)] es la ventana del slot, si no expiró
+    private final Window[] windows;
+    private final WindowResult[] results;
+    private final boolean[] dirty;
+    private long newestSlot = Long.MIN_VALUE;
+    private long acceptedSamples;
+    private long lateSamples;
+
+    public LiveAggregator(int windowSeconds, int retentionSeconds, int ringCapacity, int sketchDigits,
+                          long publishIntervalMillis, ZoneId zoneId, SpikeDetector spikeDetector) {
+        if (windowSeconds <= 0 || retentionSeconds < windowSeconds) {
+            throw new IllegalArgumentException("Retención de " + retentionSeconds
+                    + "s inválida para ventanas de " + windowSeconds + "s");
+        }
+        // Los lotes se publican enteros: con un buffer más chico que un lote put() esperaría para siempre
+        if (ringCapacity < BATCH_SIZE) {
+            throw new IllegalArgumentException("La capacidad del buffer (" + ringCapacity
+                    + ") no puede ser menor que el lote de ingesta (" + BATCH_SIZE + ")");
+        }
+        this.windowSeconds = windowSeconds;
+        this.windowMillis = windowSeconds * 1000L;
+        this.zoneId = zoneId;
+        this.sketchPrecisionBits = LatencyHistogram.precisionBitsFor(sketchDigits);
+        this.publishIntervalNanos = publishIntervalMillis * 1_000_000L;
+        this.ring = new LatencyRingBuffer(ringCapacity);
+        this.spikeDetector = spikeDetector;
+        int windowCount = retentionSeconds / windowSeconds;
+        this.windows = new Window[windowCount];
+        this.results = new WindowResult[windowCount];
+        this.dirty = new boolean[windowCount];
+        this.snapshot = new LiveSnapshot(windowSeconds, 0, 0, 0, List.of(), 0, List.of());
+        this.writer = Thread.ofPlatform().name("live-aggregator").daemon(true).unstarted(this::runWriter);
+    }
+
+    public void start() {
+        running = true;
+        writer.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        ring.close();
+        LockSupport.unpark(writer);
+    }
+
+    public LiveSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /** Resultado de una ingesta: líneas válidas encoladas e inválidas descartadas. */
+    public record IngestCounts(long parsedLines, long malformedLines) {
+    }
+
+    /**
+     * Lee registros {@code ;}-delimitados hasta el fin de {@code in} y los encola. Puede llamarse desde
+     * varios hilos a la vez; si el escritor no da abasto, bloquea hasta que haya lugar.
+     */
+    public IngestCounts ingest(InputStream in) throws IOException {
+        if (!running) {
+            throw new IllegalStateException("Agregador en vivo detenido");
+        }
+        DelayLineParser parser = new DelayLineParser(zoneId);
+        long[] batchMillis = new long[BATCH_SIZE];
+        int[] batchLatencies = new int[BATCH_SIZE];
+        int batchCount = 0;
+        long reportedMalformed = 0;
+
+        byte[] buf = new byte[READ_BUFFER_SIZE];
+        int pending = 0;
+        int n;
+        while ((n = in.read(buf, pending, buf.length - pending)) != -1) {
+            int limit = pending + n;
+            int lineStart = 0;
+            for (int i = pending; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    if (parser.parse(buf, lineStart, i)) {
+                        batchMillis[batchCount] = parser.getEpochMillis();
+                        batchLatencies[batchCount++] = parser.getLatency();
+                        if (batchCount == BATCH_SIZE) {
+                            ring.put(batchMillis, batchLatencies, batchCount);
+                            batchCount = 0;
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            pending = limit - lineStart;
+            if (pending == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            } else if (pending > 0 && lineStart > 0) {
+                System.arraycopy(buf, lineStart, buf, 0, pending);
+            }
+            // En conexiones largas los lotes incompletos no deben quedar retenidos
+            if (batchCount > 0 && in.available() == 0) {
+                ring.put(batchMillis, batchLatencies, batchCount);
+                batchCount = 0;
+            }
+            malformedLines.add(parser.getMalformedLines() - reportedMalformed);
+            reportedMalformed = parser.getMalformedLines();
+        }
+        if (pending > 0 && parser.parse(buf, 0, pending)) {
+            batchMillis[batchCount] = parser.getEpochMillis();
+            batchLatencies[batchCount++] = parser.getLatency();
+        }
+        if (batchCount > 0) {
+            ring.put(batchMillis, batchLatencies, batchCount);
+        }
+        malformedLines.add(parser.getMalformedLines() - reportedMalformed);
+        return new IngestCounts(parser.getParsedLines(), parser.getMalformedLines());
+    }
+
+    private void runWriter() {
+        LatencyRingBuffer.Sink sink = this::record;
+        long nextPublish = System.nanoTime();
+        int idle = 0;
+        while (running) {
+            int drained = ring.drain(sink, DRAIN_BATCH);
+            long now = System.nanoTime();
+            if (now - nextPublish >= 0) {
+                publish();
+                nextPublish = now + publishIntervalNanos;
+            }
+            if (drained > 0) {
+                idle = 0;
+            } else if (++idle < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(idle < 1000 ? 10_000 : 1_000_000);
+            }
+        }
+    }
+
+    private void record(long epochMillis, int latency) {
+        long slot = Math.floorDiv(epochMillis, windowMillis);
+        if (slot > newestSlot) {
+            if (newestSlot != Long.MIN_VALUE) {
+                Window closed = windows[(int) Math.floorMod(newestSlot, (long) windows.length)];
+                spikeDetector.add(closed.toResult());
+            }
+            newestSlot = slot;
+        } else if (slot <= newestSlot - windows.length) {
+            lateSamples++;
+            return;
+        }
+        int index = (int) Math.floorMod(slot, (long) windows.length);
+        Window window = windows[index];
+        long start = slot * windowMillis;
+        if (window == null || window.getStartEpochMillis() != start) {
+            // La ventana anterior en esta posición ya salió de la retención
+            window = new Window(start, sketchPrecisionBits);
+            windows[index] = window;
+        }
+        window.add(latency);
+        dirty[index] = true;
+        acceptedSamples++;
+    }
+
+    private void publish() {
+        List<WindowResult> retained = new ArrayList<>();
+        if (newestSlot != Long.MIN_VALUE) {
+            long oldestStart = (newestSlot - windows.length + 1) * windowMillis;
+            for (long slot = newestSlot - windows.length + 1; slot <= newestSlot; slot++) {
+                int index = (int) Math.floorMod(slot, (long) windows.length);
+                Window window = windows[index];
+                if (window == null || window.getStartEpochMillis() < oldestStart) {
+                    continue;
+                }
+                if (dirty[index] || results[index] == null
+                        || results[index].windowStart.toEpochMilli() != window.getStartEpochMillis()) {
+                    results[index] = window.toResult();
+                    dirty[index] = false;
+                }
+                retained.add(results[index]);
+            }
+        }
+        List<Spike> spikes = List.copyOf(spikeDetector.getSpikes());
+        snapshot = new LiveSnapshot(windowSeconds, acceptedSamples, malformedLines.sum(), lateSamples,
+                List.copyOf(retained), spikeDetector.getSpikeWindows(), spikes);
+    }
+}
@@ -0,0 +1,76 @@
+package document_filter.latency;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Socket TCP de ingesta en vivo: cada conexión envía registros de delay.log separados por '\n' y se
+ * atiende en su propio hilo, que los parsea y los encola en el {@link LiveAggregator}.
+ */
+public class LiveIngestServer implements AutoCloseable {
+    private final LiveAggregator aggregator;
+    private final InetAddress bindAddress;
+    private final int port;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    public LiveIngestServer(LiveAggregator aggregator, InetAddress bindAddress, int port) {
+        this.aggregator = aggregator;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+        System.out.println("📡 Ingesta en vivo escuchando en " + serverSocket.getLocalSocketAddress());
+        Thread.ofPlatform().name("live-ingest-accept").daemon(true).start(this::acceptLoop);
+    }
+
+    public int getLocalPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread.ofPlatform().name("live-ingest-" + socket.getPort()).daemon(true).start(() -> handle(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error aceptando conexión de ingesta: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            LiveAggregator.IngestCounts counts = aggregator.ingest(new BufferedInputStream(socket.getInputStream(), 0x10000));
+            System.out.println("📡 Conexión " + socket.getRemoteSocketAddress() + " cerrada: "
+                    + counts.parsedLines() + " líneas, " + counts.malformedLines() + " inválidas");
+        } catch (SocketException e) {
+            // Conexión cortada por el cliente o por close()
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Error en la conexión de ingesta " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Socket socket : connections) {
+            socket.close();
+        }
+    }
+}
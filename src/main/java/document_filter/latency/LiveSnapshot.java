@@ -0,0 +1,23 @@
+package document_filter.latency;
+
+import document_filter.domain.Spike;
+import document_filter.domain.WindowResult;
+
+import java.util.List;
+
+/**
+ * Estado publicado por {@link LiveAggregator}: contadores de la ingesta y las ventanas retenidas, de la
+ * más vieja a la más nueva, y los picos detectados desde el arranque (sólo los últimos intervalos).
+ */
+public record LiveSnapshot(int windowSeconds, long acceptedSamples, long malformedLines, long lateSamples,
+                           List<WindowResult> windows, long spikeWindows, List<Spike> spikes) {
+
+    /** Las últimas {@code count} ventanas. */
+    public LiveSnapshot last(int count) {
+        if (count >= windows.size()) {
+            return this;
+        }
+        return new LiveSnapshot(windowSeconds, acceptedSamples, malformedLines, lateSamples,
+                windows.subList(windows.size() - count, windows.size()), spikeWindows, spikes);
+    }
+}
@@ -0,0 +1,178 @@
+package document_filter.latency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Procesa un delay.log mapeado en memoria, partido en chunks alineados a fin de línea que se parsean
+ * en paralelo sobre un ForkJoinPool. Cada chunk produce un averager parcial y los parciales se
+ * combinan en orden, así el resultado es idéntico al de una lectura secuencial.
+ */
+public final class MappedDelayLogParser {
+    private static final long MIN_CHUNK_BYTES = 8L << 20;
+    private static final long MAX_CHUNK_BYTES = 256L << 20;
+
+    private MappedDelayLogParser() {
+    }
+
+    public static LatencyWindowAverager parse(Path file, Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return parse(channel, 0, channel.size(), averagers, pool);
+        }
+    }
+
+    /**
+     * Parsea el rango {@code [from, to)}, que debe empezar en un inicio de línea. Sin pool los chunks se
+     * procesan en el hilo que llama.
+     */
+    public static LatencyWindowAverager parse(FileChannel channel, long from, long to,
+                                              Supplier<LatencyWindowAverager> averagers, ForkJoinPool pool) throws IOException {
+        int parallelism = pool == null ? 1 : pool.getParallelism();
+        long chunkSize = Math.clamp((to - from) / (parallelism * 4L), MIN_CHUNK_BYTES, MAX_CHUNK_BYTES);
+        return parse(channel, from, to, averagers, pool, chunkSize);
+    }
+
+    /** Como el anterior, con chunks de {@code chunkSize} bytes (más lo que falte hasta el fin de línea). */
+    static LatencyWindowAverager parse(FileChannel channel, long from, long to, Supplier<LatencyWindowAverager> averagers,
+                                       ForkJoinPool pool, long chunkSize) throws IOException {
+        List<ChunkTask> tasks = new ArrayList<>();
+        long start = from;
+        while (start < to) {
+            long end = start + chunkSize >= to ? to : nextLineStart(channel, start + chunkSize, to);
+            tasks.add(new ChunkTask(channel, start, end, averagers));
+            start = end;
+        }
+
+        return mergeInOrder(tasks, averagers.get(), pool);
+    }
+
+    /**
+     * Combina en orden los parciales de {@code tasks} en {@code result}. Un error de lectura de un chunk
+     * sale como la IOException original (y cancela los que faltan), así quien llama saltea el archivo.
+     */
+    static LatencyWindowAverager mergeInOrder(List<? extends ForkJoinTask<LatencyWindowAverager>> tasks,
+                                              LatencyWindowAverager result, ForkJoinPool pool) throws IOException {
+        try {
+            if (pool == null) {
+                for (ForkJoinTask<LatencyWindowAverager> task : tasks) {
+                    result.merge(task.invoke());
+                }
+                return result;
+            }
+            for (ForkJoinTask<LatencyWindowAverager> task : tasks) {
+                pool.execute(task);
+            }
+            for (ForkJoinTask<LatencyWindowAverager> task : tasks) {
+                result.merge(task.join());
+            }
+            return result;
+        } catch (UncheckedIOException e) {
+            tasks.forEach(task -> task.cancel(false));
+            throw e.getCause();
+        }
+    }
+
+    /** Posición siguiente al último '\n' de {@code [from, to)}, o {@code from} si no hay ninguno. */
+    static long lastLineEnd(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long end = to;
+        while (end > from) {
+            int length = (int) Math.min(buf.capacity(), end - from);
+            long position = end - length;
+            buf.clear().limit(length);
+            int read = 0;
+            while (read < length) {
+                int n = channel.read(buf, position + read);
+                if (n <= 0) throw new IOException("Lectura incompleta en la posición " + (position + read));
+                read += n;
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            end = position;
+        }
+        return from;
+    }
+
+    /** Posición siguiente al primer '\n' a partir de {@code from} (o el fin del archivo). */
+    static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            buf.clear();
+            int n = channel.read(buf, position);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    private static final class ChunkTask extends RecursiveTask<LatencyWindowAverager> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final Supplier<LatencyWindowAverager> averagers;
+
+        ChunkTask(FileChannel channel, long start, long end, Supplier<LatencyWindowAverager> averagers) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.averagers = averagers;
+        }
+
+        @Override
+        protected LatencyWindowAverager compute() {
+            LatencyWindowAverager averager = averagers.get();
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                DelayLogReader.read(new ByteBufferInputStream(mapped), averager);
+            } catch (IOException e) {
+                throw new UncheckedIOException(new IOException("Error al leer el chunk [" + start + ", " + end + ")", e));
+            }
+            return averager;
+        }
+    }
+
+    /** Vista InputStream sobre un buffer mapeado, para reutilizar el escaneo de líneas de DelayLogReader. */
+    static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
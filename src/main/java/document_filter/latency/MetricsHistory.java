@@ -0,0 +1,119 @@
+package document_filter.latency;
+
+import document_filter.domain.FileSummary;
+import document_filter.domain.LatencyHistogram;
+import document_filter.domain.Stats;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Historial local de los resúmenes diarios: un archivo {@code yyyy-MM-dd.hist} por día con las Stats y
+ * el histograma de cada archivo procesado. Los reportes de tendencia se arman sólo con esto, sin volver
+ * a los logs crudos. Una nueva corrida del mismo día reemplaza la anterior.
+ */
+public class MetricsHistory {
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".hist";
+
+    private final Path directory;
+
+    public MetricsHistory(Path directory) {
+        this.directory = directory;
+    }
+
+    public synchronized void record(LocalDate date, List<FileSummary> summaries) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(date + EXTENSION);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(VERSION);
+            out.writeInt(summaries.size());
+            for (FileSummary summary : summaries) {
+                out.writeUTF(summary.name);
+                writeStats(out, summary.stats);
+                out.writeDouble(summary.windowAvg);
+                out.writeDouble(summary.messagesPerSecond);
+                out.writeLong(summary.spikeWindows);
+                out.writeBoolean(summary.histogram != null);
+                if (summary.histogram != null) {
+                    summary.histogram.writeTo(out);
+                }
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Resúmenes de los días en {@code [from, to]} que tengan historial, ordenados por fecha. */
+    public synchronized SortedMap<LocalDate, List<FileSummary>> load(LocalDate from, LocalDate to) throws IOException {
+        SortedMap<LocalDate, List<FileSummary>> days = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return days;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(EXTENSION)) continue;
+                LocalDate date;
+                try {
+                    date = LocalDate.parse(fileName.substring(0, fileName.length() - EXTENSION.length()));
+                } catch (DateTimeParseException e) {
+                    continue;
+                }
+                if (date.isBefore(from) || date.isAfter(to)) continue;
+                days.put(date, read(file));
+            }
+        }
+        return days;
+    }
+
+    private static List<FileSummary> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int version = in.readInt();
+            // La versión 1 no tenía picos
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Versión de historial no soportada en " + file + ": " + version);
+            }
+            int count = in.readInt();
+            List<FileSummary> summaries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                Stats stats = readStats(in);
+                double windowAvg = in.readDouble();
+                double messagesPerSecond = in.readDouble();
+                long spikeWindows = version >= 2 ? in.readLong() : 0;
+                LatencyHistogram histogram = in.readBoolean() ? LatencyHistogram.readFrom(in) : null;
+                summaries.add(new FileSummary(name, stats, windowAvg, messagesPerSecond, histogram, spikeWindows));
+            }
+            return summaries;
+        }
+    }
+
+    private static void writeStats(DataOutput out, Stats stats) throws IOException {
+        out.writeDouble(stats.average);
+        out.writeDouble(stats.averageBelowP95);
+        out.writeDouble(stats.averageUpperP95);
+        out.writeDouble(stats.stdDev);
+        out.writeInt(stats.maxLatency);
+        out.writeInt(stats.minLatency);
+        out.writeInt(stats.p50);
+        out.writeInt(stats.p95);
+        out.writeInt(stats.p99);
+        out.writeInt(stats.p999);
+        out.writeInt(stats.aboveP95Count);
+        out.writeInt(stats.totalDataSize);
+    }
+
+    private static Stats readStats(DataInput in) throws IOException {
+        return new Stats(in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                in.readInt(), in.readInt());
+    }
+}
@@ -0,0 +1,47 @@
+package document_filter.latency;
+
+/**
+ * Observador de las etapas del procesamiento, para exponerlas como métricas. Se llama una vez por
+ * archivo o por etapa, nunca por línea. Las implementaciones deben ser thread-safe: los archivos se
+ * analizan en paralelo.
+ */
+public interface PipelineMetrics {
+    PipelineMetrics NONE = new PipelineMetrics() {
+    };
+
+    enum Stage {
+        // Parseo de texto (también la conversión al almacén columnar y lo nuevo en ingesta incremental)
+        PARSE,
+        STATS,
+        // Análisis completo de un archivo: lectura, ventanas y Stats
+        ANALYSIS,
+        SUMMARY_BUILD,
+        SUMMARY_WRITE,
+        REPORT_BUILD,
+        REPORT_WRITE,
+        // Generación completa del reporte diario
+        RUN
+    }
+
+    default void stage(Stage stage, long nanos) {
+    }
+
+    /** Texto parseado: bytes leídos, líneas válidas y rechazadas por motivo (indexado por ordinal). */
+    default void textParsed(long bytes, long parsedLines, long[] rejectedLines, long nanos) {
+    }
+
+    /**
+     * Archivo analizado, con el heap que retiene su averager según {@code estimatedHeapBytes()}: es una
+     * estimación de lo que ocupa el resultado, no el pico del proceso (que incluye buffers de lectura,
+     * basura y los demás archivos analizados en paralelo; ver {@link #runStarted()}).
+     */
+    default void fileAnalyzed(String name, long retainedBytes, long nanos) {
+    }
+
+    /**
+     * Empieza una generación completa, que termina con {@code stage(RUN, ...)}: el pico real de heap se mide
+     * entre las dos llamadas.
+     */
+    default void runStarted() {
+    }
+}
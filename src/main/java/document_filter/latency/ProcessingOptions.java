@@ -0,0 +1,84 @@
+package document_filter.latency;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+@Setter
+@Getter
+public class ProcessingOptions {
+    private int windowSeconds = 1;
+    // Resoluciones adicionales (en segundos) que se arman agrupando ventanas, con una hoja cada una
+    private List<Integer> resolutions = List.of();
+    // >1: cada delay.log se mapea en memoria y se parsea por chunks en un ForkJoinPool de ese tamaño
+    private int parseParallelism = 1;
+    // Ejecutor para analizar archivos en paralelo; null analiza en el hilo que llama
+    private ExecutorService fileExecutor;
+    // Máximo de archivos analizados y no volcados al Excel todavía: acota el heap pico
+    private int maxInFlightFiles = 4;
+    private StatsMode statsMode = StatsMode.EXACT;
+    // Precisión del histograma en modo HISTOGRAM (dígitos decimales significativos)
+    private int histogramDigits = 3;
+    // Precisión del histograma de cada ventana, del que salen sus percentiles
+    private int windowSketchDigits = LatencyWindowAverager.DEFAULT_WINDOW_SKETCH_DIGITS;
+    // Filas por hoja que el workbook SXSSF mantiene en memoria antes de bajarlas a disco
+    private int rowAccessWindow = 500;
+    // Si está presente, cada delay.log se procesa de forma incremental desde su último checkpoint
+    private IncrementalIngester ingester;
+    // Si está presente (y no hay ingesta incremental ni workers), cada delay.log se lee desde su versión columnar
+    private LatencyColumnStore columnStore;
+    // Si está presente (y no hay ingesta incremental), cada delay.log se parsea por rangos en los workers
+    private ShardCoordinator shardCoordinator;
+    // Opcional: se notifica cada archivo terminado
+    private ProgressListener progressListener;
+    // Tiempos y contadores por etapa
+    private PipelineMetrics metrics = PipelineMetrics.NONE;
+    // Picos sobre las ventanas de windowSeconds: umbral μ+kσ, alfa de la EWMA, ventanas de arranque e
+    // intervalos retenidos por archivo (ver SpikeDetector)
+    private double spikeThreshold = 1.0;
+    private double spikeAlpha = 0.05;
+    private int spikeWarmupWindows = 30;
+    private int maxRecordedSpikes = 1000;
+
+    public ProcessingOptions(int windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public LatencyWindowAverager newAverager() {
+        return new LatencyWindowAverager(baseWindowSeconds(), LatencyWindowAverager.DEFAULT_ZONE, statsMode, histogramDigits,
+                windowSketchDigits);
+    }
+
+    public SpikeDetector newSpikeDetector() {
+        return new SpikeDetector(spikeThreshold, spikeAlpha, spikeWarmupWindows, windowSeconds, maxRecordedSpikes);
+    }
+
+    /** Ventana con la que se agrega: el MCD de todas las resoluciones, así cada una es un agrupamiento exacto. */
+    public int baseWindowSeconds() {
+        int base = windowSeconds;
+        for (int resolution : resolutions) {
+            if (resolution <= 0) {
+                throw new IllegalArgumentException("Resolución inválida: " + resolution);
+            }
+            base = gcd(base, resolution);
+        }
+        return base;
+    }
+
+    /** windowSeconds primero y después las resoluciones adicionales, sin repetidos. */
+    public List<Integer> allResolutions() {
+        List<Integer> all = new ArrayList<>();
+        all.add(windowSeconds);
+        for (int resolution : resolutions) {
+            if (!all.contains(resolution)) all.add(resolution);
+        }
+        return all;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,7 @@
+package document_filter.latency;
+
+/** Avance de processDirectory: se llama en el hilo que arma el workbook después de cada archivo. */
+@FunctionalInterface
+public interface ProgressListener {
+    void fileProcessed(String name, int processed, int total);
+}
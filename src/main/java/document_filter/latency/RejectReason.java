@@ -0,0 +1,11 @@
+package document_filter.latency;
+
+/** Por qué {@link DelayLineParser} descartó una línea. */
+public enum RejectReason {
+    // Distinta cantidad de campos que 5 (incluye líneas vacías)
+    FIELD_COUNT,
+    // Timestamp con otro largo o formato, dígitos inválidos o fecha/hora fuera de rango
+    TIMESTAMP,
+    // Latencia que no es un entero de 32 bits
+    LATENCY
+}
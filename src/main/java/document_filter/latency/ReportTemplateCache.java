@@ -0,0 +1,35 @@
+package document_filter.latency;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Snapshot en memoria de report-template.xlsx: se vuelve a leer sólo si cambia su mtime o tamaño.
+ */
+public final class ReportTemplateCache {
+    private static Snapshot cached;
+
+    private ReportTemplateCache() {
+    }
+
+    public static synchronized byte[] load(Path template) throws IOException {
+        Snapshot snapshot = cached;
+        String version = version(template);
+        if (snapshot == null || !snapshot.path.equals(template) || !snapshot.version.equals(version)) {
+            snapshot = new Snapshot(template, version, Files.readAllBytes(template));
+            cached = snapshot;
+        }
+        return snapshot.bytes;
+    }
+
+    /** Identifica la versión del template (mtime + tamaño). */
+    public static String version(Path template) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(template);
+        return modified.toMillis() + ":" + Files.size(template);
+    }
+
+    private record Snapshot(Path path, String version, byte[] bytes) {
+    }
+}
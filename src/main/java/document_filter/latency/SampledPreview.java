@@ -0,0 +1,177 @@
+package document_filter.latency;
+
+import document_filter.domain.FileSummary;
+import document_filter.domain.LatencyHistogram;
+import document_filter.domain.PreviewEstimate;
+import document_filter.domain.Stats;
+import document_filter.domain.WindowResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Vista previa aproximada de un delay.log: en lugar de parsear el archivo entero se leen {@code blocks}
+ * bloques de {@code blockBytes} repartidos a intervalos regulares (mapeados en memoria y cortados en fin
+ * de línea), así el costo no depende del tamaño del archivo. Cada bloque es un conglomerado del
+ * muestreo: el promedio sale del estimador de razón y su intervalo de la varianza entre bloques; los
+ * intervalos de los percentiles se arman con el método de Woodruff (intervalo de la proporción
+ * acumulada, invertido sobre el histograma combinado). Los conteos se escalan por bytes leídos. Para
+ * msg/s sólo sirven los segundos que caen enteros en un bloque, y uno con más mensajes ocupa más bytes
+ * y cabe menos: cada segundo pesa la inversa de su probabilidad de quedar adentro, proporcional a
+ * 1/(bytes del bloque - bytes del segundo). Máximo y mínimo son los de la muestra.
+ */
+public final class SampledPreview {
+    public static final double CONFIDENCE = 0.95;
+    private static final double Z = 1.959964;
+
+    private SampledPreview() {
+    }
+
+    /** {@code options} aporta la ventana del resumen y la precisión del histograma; no se admiten comprimidos. */
+    public static PreviewEstimate estimate(String name, File file, ProcessingOptions options, int blocks,
+                                           long blockBytes) throws IOException {
+        if (DelayLogFiles.isCompressed(file)) {
+            throw new IllegalArgumentException("Sin acceso aleatorio a " + name + ": no se puede muestrear");
+        }
+        if (blocks <= 0 || blockBytes <= 0) {
+            throw new IllegalArgumentException("Muestreo inválido: " + blocks + " bloques de " + blockBytes + " bytes");
+        }
+        // Ventanas de 1s para msg/s; la resolución del resumen se arma agrupándolas
+        ProcessingOptions sampleOptions = new ProcessingOptions(1);
+        sampleOptions.setStatsMode(StatsMode.HISTOGRAM);
+        sampleOptions.setHistogramDigits(options.getHistogramDigits());
+        sampleOptions.setWindowSketchDigits(options.getWindowSketchDigits());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] starts = blockStarts(channel, size, blocks, blockBytes);
+            int k = starts.length;
+
+            LatencyWindowAverager pooled = sampleOptions.newAverager();
+            LatencyHistogram[] histograms = new LatencyHistogram[k];
+            long[] counts = new long[k];
+            double[] sums = new double[k];
+            long sampledBytes = 0;
+            double weightedCountSum = 0;
+            double weightSum = 0;
+            for (int i = 0; i < k; i++) {
+                long start = starts[i];
+                long end = k == 1 ? size : Math.min(i + 1 < k ? starts[i + 1] : size,
+                        MappedDelayLogParser.nextLineStart(channel, start + blockBytes, size));
+                LatencyWindowAverager block = MappedDelayLogParser.parse(channel, start, end, sampleOptions::newAverager, null);
+                sampledBytes += end - start;
+                histograms[i] = block.getHistogram();
+                counts[i] = histograms[i].getTotalCount();
+                sums[i] = histograms[i].getSum();
+
+                // El primer y el último segundo de cada bloque están cortados
+                List<WindowResult> seconds = block.getResults(1);
+                long lines = block.getParsedLines() + block.getMalformedLines();
+                double bytesPerLine = lines == 0 ? 0 : (double) (end - start) / lines;
+                for (int s = 1; s < seconds.size() - 1; s++) {
+                    double room = (end - start) - seconds.get(s).count * bytesPerLine;
+                    if (room > 0) {
+                        weightedCountSum += seconds.get(s).count / room;
+                        weightSum += 1 / room;
+                    }
+                }
+                pooled.merge(block);
+            }
+
+            LatencyHistogram histogram = pooled.getHistogram();
+            Stats sampled = histogram.toStats();
+            double scale = sampledBytes == 0 ? 1.0 : (double) size / sampledBytes;
+            Stats stats = new Stats(sampled.average, sampled.averageBelowP95, sampled.averageUpperP95, sampled.stdDev,
+                    sampled.maxLatency, sampled.minLatency, sampled.p50, sampled.p95, sampled.p99, sampled.p999,
+                    scaled(sampled.aboveP95Count, scale), scaled(sampled.totalDataSize, scale));
+            // Con un solo bloque se leyó todo y el promedio es exacto
+            double messagesPerSecond = k > 1 && weightSum > 0 ? weightedCountSum / weightSum
+                    : averageCount(pooled.getResults(1));
+            double windowAvg = LatencyWindowAverager.getWindowWeightedAvg(pooled.getResults(options.getWindowSeconds()));
+            // Picos no se estiman sobre una muestra: -1, como msg/s cuando falta
+            FileSummary summary = new FileSummary(name, stats, windowAvg, messagesPerSecond, null, -1);
+
+            double fpc = 1.0 - (double) sampledBytes / Math.max(1, size);
+            double meanError = Z * ratioStandardError(counts, sums, sampled.average, fpc);
+            int[] p50 = percentileInterval(0.5, histogram, histograms, counts, fpc);
+            int[] p95 = percentileInterval(0.95, histogram, histograms, counts, fpc);
+            int[] p99 = percentileInterval(0.99, histogram, histograms, counts, fpc);
+            int[] p999 = percentileInterval(0.999, histogram, histograms, counts, fpc);
+            return new PreviewEstimate(summary, size, sampledBytes, k, CONFIDENCE,
+                    sampled.average - meanError, sampled.average + meanError,
+                    p50[0], p50[1], p95[0], p95[1], p99[0], p99[1], p999[0], p999[1]);
+        }
+    }
+
+    /** Inicios de línea de los bloques; si el archivo no es mayor que la muestra, un único bloque con todo. */
+    private static long[] blockStarts(FileChannel channel, long size, int blocks, long blockBytes) throws IOException {
+        if ((long) blocks * blockBytes >= size) {
+            return new long[]{0};
+        }
+        long[] starts = new long[blocks];
+        for (int i = 1; i < blocks; i++) {
+            long position = size / blocks * i;
+            starts[i] = MappedDelayLogParser.nextLineStart(channel, position - 1, size);
+        }
+        return starts;
+    }
+
+    /** Intervalo de Woodruff: el de la proporción de muestras <= percentil, llevado a valores. */
+    private static int[] percentileInterval(double quantile, LatencyHistogram pooled, LatencyHistogram[] blocks,
+                                            long[] counts, double fpc) {
+        int value = pooled.getValueAtPercentile(quantile);
+        double[] below = new double[blocks.length];
+        long belowTotal = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            long count = blocks[i].getCountAtOrBelow(value);
+            below[i] = count;
+            belowTotal += count;
+        }
+        long total = pooled.getTotalCount();
+        double proportion = total == 0 ? 0 : (double) belowTotal / total;
+        double error = Z * ratioStandardError(counts, below, proportion, fpc);
+        return new int[]{
+                pooled.getValueAtPercentile(Math.max(0.0, quantile - error)),
+                pooled.getValueAtPercentile(Math.min(1.0, quantile + error))};
+    }
+
+    /**
+     * Error estándar del estimador de razón Σy/Σn con los bloques como conglomerados de un muestreo
+     * aleatorio simple, con corrección por población finita.
+     */
+    private static double ratioStandardError(long[] counts, double[] values, double ratio, double fpc) {
+        int k = counts.length;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (k < 2 || total == 0) {
+            return 0.0;
+        }
+        double squares = 0;
+        for (int i = 0; i < k; i++) {
+            double residual = values[i] - ratio * counts[i];
+            squares += residual * residual;
+        }
+        double meanCount = (double) total / k;
+        return Math.sqrt(Math.max(0.0, fpc) * squares / ((k - 1) * (double) k * meanCount * meanCount));
+    }
+
+    private static double averageCount(List<WindowResult> seconds) {
+        if (seconds.isEmpty()) {
+            return -1;
+        }
+        long total = 0;
+        for (WindowResult second : seconds) {
+            total += second.count;
+        }
+        return (double) total / seconds.size();
+    }
+
+    private static int scaled(int count, double scale) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(count * scale));
+    }
+}
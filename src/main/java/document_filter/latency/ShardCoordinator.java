@@ -0,0 +1,216 @@
+package document_filter.latency;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Modo coordinador: cada delay.log se parte en rangos de hasta {@code rangeBytes} cortados en fin de
+ * línea y los rangos se reparten round-robin entre los workers ({@code GET /api/metrics/partial}). Cada
+ * worker devuelve el estado serializado de un {@link LatencyWindowAverager} y acá se combinan, así las
+ * Stats, las ventanas y el Excel salen igual que en una sola JVM. Con archivos chicos cada archivo es un
+ * rango: los subdirectorios quedan repartidos entre los workers. Los comprimidos van enteros a un worker.
+ * Si un worker falla el rango pasa al siguiente y, si fallan todos, se parsea localmente.
+ * Los workers leen la misma carpeta de entrada (disco compartido o la misma máquina).
+ *
+ * <p>Entre todos los archivos hay a lo sumo {@code workers * inFlightPerWorker} pedidos en curso: un
+ * archivo grande no encola miles de rangos en los workers ni deja sus respuestas esperando a ser leídas.
+ * Cada lectura pide los rangos siguientes mientras haya lugar y sólo espera un permiso cuando no tiene
+ * ninguno tomado, así dos archivos no pueden bloquearse entre sí.
+ */
+public class ShardCoordinator {
+    public static final String PARTIAL_PATH = "/api/metrics/partial";
+
+    private final List<URI> workers;
+    private final long rangeBytes;
+    private final Duration timeout;
+    private final HttpClient client;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    // Un permiso por rango pedido y todavía no leído (incluidos sus reintentos)
+    private final Semaphore inFlight;
+
+    public ShardCoordinator(List<String> workers, long rangeBytes, Duration timeout, int inFlightPerWorker) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("El coordinador necesita al menos un worker");
+        }
+        if (rangeBytes <= 0) {
+            throw new IllegalArgumentException("Tamaño de rango inválido: " + rangeBytes);
+        }
+        if (inFlightPerWorker <= 0) {
+            throw new IllegalArgumentException("Pedidos por worker inválidos: " + inFlightPerWorker);
+        }
+        this.workers = workers.stream().map(worker -> URI.create(worker.endsWith("/")
+                ? worker.substring(0, worker.length() - 1) : worker)).toList();
+        this.rangeBytes = rangeBytes;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        this.inFlight = new Semaphore(workers.size() * inFlightPerWorker);
+    }
+
+    /** Averager de {@code file} entero, armado con los parciales de los workers. */
+    public LatencyWindowAverager read(String name, File file, ProcessingOptions options, ForkJoinPool parsePool)
+            throws IOException {
+        List<Range> ranges = split(file);
+        int first = nextWorker.getAndAdd(ranges.size());
+        List<ShardRequest> requests = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            requests.add(ShardRequest.of(name, range.from, range.to, options));
+        }
+        List<CompletableFuture<HttpResponse<InputStream>>> responses = new ArrayList<>(ranges.size());
+
+        LatencyWindowAverager result = options.newAverager();
+        long start = System.nanoTime();
+        long remoteBytes = 0;
+        long remoteParsed = 0;
+        long[] remoteRejected = new long[RejectReason.values().length];
+        int received = 0;
+        // Primer rango pedido cuyo permiso sigue tomado
+        int firstPending = 0;
+        try {
+            for (; received < ranges.size(); received++) {
+                if (responses.size() == received) {
+                    // Sin permisos propios: se puede esperar sin trabar a otra lectura
+                    acquire();
+                    responses.add(send(requests.get(received), first + received));
+                }
+                // Los rangos siguientes se piden mientras haya lugar, así los workers trabajan en paralelo
+                while (responses.size() < ranges.size() && inFlight.tryAcquire()) {
+                    responses.add(send(requests.get(responses.size()), first + responses.size()));
+                }
+                Range range = ranges.get(received);
+                LatencyWindowAverager partial;
+                try {
+                    partial = receive(requests.get(received), responses.get(received), first + received, result);
+                } finally {
+                    inFlight.release();
+                    firstPending = received + 1;
+                }
+                if (partial == null) {
+                    System.err.println("⚠ Ningún worker respondió " + name + " [" + range.from + ", " + range.to
+                            + "): se parsea localmente");
+                    result.merge(LatencyExcelExporter.readRange(file, range.from, range.to, options, parsePool));
+                    continue;
+                }
+                remoteBytes += range.to < 0 ? file.length() : range.to - range.from;
+                remoteParsed += partial.getParsedLines();
+                long[] rejected = partial.getRejectedLines();
+                for (int r = 0; r < rejected.length; r++) {
+                    remoteRejected[r] += rejected[r];
+                }
+                result.merge(partial);
+            }
+        } finally {
+            // Si se corta antes, las respuestas pendientes se descartan para liberar las conexiones y los permisos
+            for (int i = firstPending; i < responses.size(); i++) {
+                responses.get(i).whenComplete((response, error) -> {
+                    try {
+                        if (response != null) response.body().close();
+                    } catch (IOException ignored) {
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        if (remoteBytes > 0) {
+            options.getMetrics().textParsed(remoteBytes, remoteParsed, remoteRejected, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private List<Range> split(File file) throws IOException {
+        if (DelayLogFiles.isCompressed(file)) {
+            return List.of(new Range(0, -1));
+        }
+        List<Range> ranges = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            do {
+                long end = start + rangeBytes >= size ? size : MappedDelayLogParser.nextLineStart(channel, start + rangeBytes, size);
+                ranges.add(new Range(start, end));
+                start = end;
+            } while (start < size);
+        }
+        return ranges;
+    }
+
+    private void acquire() throws InterruptedIOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura de parciales interrumpida");
+        }
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> send(ShardRequest request, int attempt) {
+        URI worker = workers.get(Math.floorMod(attempt, workers.size()));
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(worker + PARTIAL_PATH + "?" + request.toQuery()))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /** Parcial del primer worker que responda, empezando por el ya pedido; null si fallan todos. */
+    private LatencyWindowAverager receive(ShardRequest request, CompletableFuture<HttpResponse<InputStream>> response,
+                                          int attempt, LatencyWindowAverager target) throws IOException {
+        for (int tries = 0; tries < workers.size(); tries++) {
+            URI worker = workers.get(Math.floorMod(attempt + tries, workers.size()));
+            if (tries > 0) {
+                response = send(request, attempt + tries);
+            }
+            try {
+                LatencyWindowAverager partial = readResponse(response.get());
+                if (!partial.isCompatibleWith(target)) {
+                    throw new IOException("configuración de ventanas incompatible");
+                }
+                return partial;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Lectura de parciales interrumpida");
+            } catch (ExecutionException | IOException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                System.err.println("⚠ Worker " + worker + " falló con " + request.file() + ": " + cause);
+            }
+        }
+        return null;
+    }
+
+    private static LatencyWindowAverager readResponse(HttpResponse<InputStream> response) throws IOException {
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                String message = new String(body.readNBytes(512), StandardCharsets.UTF_8);
+                throw new IOException("HTTP " + response.statusCode() + " " + message);
+            }
+            return readPartial(body);
+        }
+    }
+
+    public static void writePartial(LatencyWindowAverager partial, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        partial.writeState(data);
+        data.flush();
+    }
+
+    public static LatencyWindowAverager readPartial(InputStream in) throws IOException {
+        return LatencyWindowAverager.readState(new DataInputStream(new BufferedInputStream(in, 1 << 16)));
+    }
+
+    private record Range(long from, long to) {
+    }
+}
@@ -0,0 +1,37 @@
+package document_filter.latency;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parcial que el coordinador le pide a un worker: el rango {@code [from, to)} de un delay.log (por nombre
+ * "subdir/archivo", relativo a la carpeta de entrada del worker) agregado con la configuración del
+ * coordinador, así los parciales se pueden combinar. {@code from} es inicio de línea; {@code to}
+ * negativo lee hasta el final.
+ */
+public record ShardRequest(String file, long from, long to, int windowSeconds, StatsMode statsMode,
+                           int histogramDigits, int sketchDigits) {
+
+    public static ShardRequest of(String file, long from, long to, ProcessingOptions options) {
+        return new ShardRequest(file, from, to, options.baseWindowSeconds(), options.getStatsMode(),
+                options.getHistogramDigits(), options.getWindowSketchDigits());
+    }
+
+    /** Opciones del worker para este parcial: la ventana base del coordinador, sin resoluciones adicionales. */
+    public ProcessingOptions toOptions() {
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("Ventana inválida: " + windowSeconds);
+        }
+        ProcessingOptions options = new ProcessingOptions(windowSeconds);
+        options.setStatsMode(statsMode);
+        options.setHistogramDigits(histogramDigits);
+        options.setWindowSketchDigits(sketchDigits);
+        return options;
+    }
+
+    String toQuery() {
+        return "file=" + URLEncoder.encode(file, StandardCharsets.UTF_8) + "&from=" + from + "&to=" + to
+                + "&windowSeconds=" + windowSeconds + "&statsMode=" + statsMode + "&histogramDigits=" + histogramDigits
+                + "&sketchDigits=" + sketchDigits;
+    }
+}
@@ -0,0 +1,123 @@
+package document_filter.latency;
+
+import document_filter.domain.Spike;
+import document_filter.domain.WindowResult;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detección de picos en streaming sobre una serie de ventanas en orden. La línea base es una media y una
+ * varianza exponencialmente ponderadas (EWMA) del promedio de cada ventana; una ventana es pico si su
+ * promedio supera μ+kσ de la línea base previa. Las primeras {@code warmupWindows} sólo arman la línea
+ * base (con peso 1/n, o sea media y varianza acumuladas). Las ventanas en pico también actualizan la
+ * base: un cambio de nivel sostenido deja de contarse como pico. Ventanas pico consecutivas forman un
+ * intervalo; una ventana normal o un hueco lo cierran. Memoria fija: se guardan sólo los últimos
+ * {@code maxSpikes} intervalos, los contadores cubren toda la serie.
+ */
+public class SpikeDetector {
+    private final double threshold;
+    private final double alpha;
+    private final int warmupWindows;
+    private final long windowMillis;
+    private final int maxSpikes;
+
+    private long observed;
+    private double mean;
+    private double variance;
+    private long spikeWindows;
+    private final ArrayDeque<Spike> spikes = new ArrayDeque<>();
+
+    // Intervalo abierto; openWindows == 0 si no hay
+    private int openWindows;
+    private long openStart;
+    private long openEnd;
+    private double openThreshold;
+    private double openPeak;
+    private long openPeakStart;
+
+    public SpikeDetector(double threshold, double alpha, int warmupWindows, int windowSeconds, int maxSpikes) {
+        if (!(alpha > 0 && alpha <= 1)) {
+            throw new IllegalArgumentException("Alfa de la EWMA inválido: " + alpha);
+        }
+        this.threshold = threshold;
+        this.alpha = alpha;
+        this.warmupWindows = warmupWindows;
+        this.windowMillis = windowSeconds * 1000L;
+        this.maxSpikes = maxSpikes;
+    }
+
+    /** Incorpora la ventana siguiente de la serie; devuelve true si es pico. */
+    public boolean add(WindowResult result) {
+        if (result.count == 0) {
+            return false;
+        }
+        long start = result.windowStart.toEpochMilli();
+        double value = result.averageLatency;
+        double limit = mean + threshold * Math.sqrt(variance);
+        boolean spike = observed >= warmupWindows && value > limit;
+
+        if (openWindows > 0 && (!spike || start != openEnd)) {
+            close();
+        }
+        if (spike) {
+            if (openWindows == 0) {
+                openStart = start;
+                openThreshold = limit;
+                openPeak = Double.NEGATIVE_INFINITY;
+            }
+            openWindows++;
+            openEnd = start + windowMillis;
+            if (value > openPeak) {
+                openPeak = value;
+                openPeakStart = start;
+            }
+            spikeWindows++;
+        }
+
+        // Media y varianza incrementales con peso max(alfa, 1/n)
+        observed++;
+        double weight = Math.max(alpha, 1.0 / observed);
+        double diff = value - mean;
+        double increment = weight * diff;
+        mean += increment;
+        variance = (1 - weight) * (variance + diff * increment);
+        return spike;
+    }
+
+    private void close() {
+        if (spikes.size() == maxSpikes) {
+            spikes.pollFirst();
+        }
+        if (maxSpikes > 0) {
+            spikes.addLast(openSpike());
+        }
+        openWindows = 0;
+    }
+
+    private Spike openSpike() {
+        return new Spike(Instant.ofEpochMilli(openStart), (openEnd - openStart) / 1000, openWindows, openPeak,
+                Instant.ofEpochMilli(openPeakStart), openThreshold);
+    }
+
+    /** Ventanas por encima del umbral en toda la serie. */
+    public long getSpikeWindows() {
+        return spikeWindows;
+    }
+
+    /** Los últimos intervalos retenidos, del más viejo al más nuevo; el último puede seguir abierto. */
+    public List<Spike> getSpikes() {
+        List<Spike> result = new ArrayList<>(spikes);
+        if (openWindows > 0) {
+            if (result.size() == maxSpikes && !result.isEmpty()) {
+                result.remove(0);
+            }
+            if (maxSpikes > 0) {
+                result.add(openSpike());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,8 @@
+package document_filter.latency;
+
+public enum StatsMode {
+    // Guarda cada latencia y calcula percentiles exactos (nearest-rank)
+    EXACT,
+    // Sólo un histograma log-lineal: memoria fija, percentiles con error relativo acotado
+    HISTOGRAM
+}
@@ -0,0 +1,66 @@
+package document_filter.latency;
+
+import document_filter.domain.WindowResult;
+
+import java.io.IOException;
+
+/** Formatos de salida de ventanas para consumo por herramientas externas, una ventana por línea. */
+public enum WindowResultFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String mediaType;
+
+    WindowResultFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public static WindowResultFormat parse(String name) {
+        for (WindowResultFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Formato no soportado: " + name);
+    }
+
+    /** Encabezado, o nada si el formato no lo usa. */
+    public void writeHeader(Appendable out) throws IOException {
+        if (this == CSV) {
+            out.append("windowStart,count,averageLatency,p50Latency,p99Latency,maxLatency,stdDev\n");
+        }
+    }
+
+    public void write(WindowResult result, Appendable out) throws IOException {
+        if (this == CSV) {
+            out.append(result.windowStart.toString()).append(',')
+                    .append(Integer.toString(result.count)).append(',')
+                    .append(csvNumber(result.averageLatency)).append(',')
+                    .append(Integer.toString(result.p50Latency)).append(',')
+                    .append(Integer.toString(result.p99Latency)).append(',')
+                    .append(Integer.toString(result.maxLatency)).append(',')
+                    .append(csvNumber(result.stdDev)).append('\n');
+            return;
+        }
+        out.append("{\"windowStart\":\"").append(result.windowStart.toString())
+                .append("\",\"count\":").append(Integer.toString(result.count))
+                .append(",\"averageLatency\":").append(jsonNumber(result.averageLatency))
+                .append(",\"p50Latency\":").append(Integer.toString(result.p50Latency))
+                .append(",\"p99Latency\":").append(Integer.toString(result.p99Latency))
+                .append(",\"maxLatency\":").append(Integer.toString(result.maxLatency))
+                .append(",\"stdDev\":").append(jsonNumber(result.stdDev)).append("}\n");
+    }
+
+    // NaN e infinito no son números JSON válidos: van como null, y en CSV como campo vacío
+    private static String jsonNumber(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "null";
+    }
+
+    private static String csvNumber(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : "";
+    }
+}
@@ -0,0 +1,148 @@
+package document_filter.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void significantDigitsMapToPrecisionBits() {
+        assertEquals(5, LatencyHistogram.withSignificantDigits(1).getPrecisionBits());
+        assertEquals(8, LatencyHistogram.withSignificantDigits(2).getPrecisionBits());
+        assertEquals(11, LatencyHistogram.withSignificantDigits(3).getPrecisionBits());
+        for (int digits = 1; digits <= 5; digits++) {
+            assertEquals(LatencyHistogram.withSignificantDigits(digits).getPrecisionBits(), LatencyHistogram.precisionBitsFor(digits));
+        }
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.withSignificantDigits(0));
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.precisionBitsFor(6));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram(8);
+        for (int value = 0; value < 256; value++) {
+            int index = histogram.indexOf(value);
+            assertEquals(value, histogram.lowestEquivalentValue(index));
+            assertEquals(value, histogram.highestEquivalentValue(index));
+        }
+        assertEquals(0, histogram.indexOf(-5));
+    }
+
+    @Test
+    void bucketsAreContiguousWithBoundedRelativeError() {
+        for (int bits : new int[]{1, 5, 8, 11}) {
+            LatencyHistogram histogram = new LatencyHistogram(bits);
+            int last = histogram.indexOf(Integer.MAX_VALUE);
+            for (int index = 1; index <= last; index++) {
+                assertEquals(histogram.highestEquivalentValue(index - 1) + 1, histogram.lowestEquivalentValue(index),
+                        "bucket " + index + " con " + bits + " bits");
+            }
+            SplittableRandom random = new SplittableRandom(bits);
+            double maxError = 1.0 / (1 << (bits - 1));
+            for (int i = 0; i < 100_000; i++) {
+                int value = random.nextInt(Integer.MAX_VALUE) >>> random.nextInt(31);
+                int index = histogram.indexOf(value);
+                long lowest = histogram.lowestEquivalentValue(index);
+                long highest = histogram.highestEquivalentValue(index);
+                assertTrue(lowest <= value && value <= highest, value + " fuera de [" + lowest + ", " + highest + "]");
+                assertTrue(highest - lowest <= Math.max(0, lowest * maxError), "bucket de " + value + " demasiado ancho");
+            }
+        }
+    }
+
+    @Test
+    void percentilesStayWithinBucketOfExactRank() {
+        SplittableRandom random = new SplittableRandom(5);
+        LatencyHistogram histogram = LatencyHistogram.withSignificantDigits(2);
+        int[] values = new int[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(20) == 0 ? random.nextInt(1_000_000) : random.nextInt(400);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : new double[]{0.5, 0.95, 0.99, 0.999, 1.0}) {
+            int exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            int index = histogram.indexOf(exact);
+            assertEquals(Math.min(histogram.highestEquivalentValue(index), values[values.length - 1]),
+                    histogram.getValueAtPercentile(quantile), "percentil " + quantile);
+        }
+        assertEquals(values.length, histogram.getTotalCount());
+        assertEquals(Arrays.stream(values).asLongStream().sum(), histogram.getSum());
+        assertEquals(values[0], histogram.getMin());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(Arrays.stream(values).filter(v -> v <= 250).count(), histogram.getCountAtOrBelow(250));
+    }
+
+    @Test
+    void addMatchesRecordingEverything() {
+        SplittableRandom random = new SplittableRandom(9);
+        LatencyHistogram all = new LatencyHistogram(8);
+        LatencyHistogram low = new LatencyHistogram(8);
+        LatencyHistogram high = new LatencyHistogram(8);
+        for (int i = 0; i < 10_000; i++) {
+            int value = random.nextInt(2) == 0 ? random.nextInt(100) : 10_000 + random.nextInt(50_000);
+            all.record(value);
+            (value < 100 ? low : high).record(value);
+        }
+        // Los rangos no se solapan: el destino tiene que crecer hacia ambos lados
+        high.add(low);
+        assertSameHistogram(all, high);
+        assertThrows(IllegalArgumentException.class, () -> all.add(new LatencyHistogram(5)));
+    }
+
+    @Test
+    void lowerPrecisionCopyMatchesRecordingAtThatPrecision() {
+        SplittableRandom random = new SplittableRandom(11);
+        LatencyHistogram fine = new LatencyHistogram(11);
+        LatencyHistogram coarse = new LatencyHistogram(5);
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(20) == 0 ? random.nextInt(1_000_000) : random.nextInt(-5, 400);
+            fine.record(value);
+            coarse.record(value);
+        }
+        assertSameHistogram(coarse, fine.withPrecisionBits(5));
+        assertSameHistogram(fine, fine.withPrecisionBits(11));
+        assertThrows(IllegalArgumentException.class, () -> coarse.withPrecisionBits(8));
+    }
+
+    @Test
+    void serializationRoundTrips() throws IOException {
+        LatencyHistogram histogram = LatencyHistogram.withSignificantDigits(3);
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 10_000; i++) {
+            histogram.record(random.nextInt(-10, 100_000));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.writeTo(new DataOutputStream(bytes));
+        LatencyHistogram read = LatencyHistogram.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertSameHistogram(histogram, read);
+    }
+
+    private static void assertSameHistogram(LatencyHistogram expected, LatencyHistogram actual) {
+        assertEquals(expected.getPrecisionBits(), actual.getPrecisionBits());
+        assertEquals(expected.getTotalCount(), actual.getTotalCount());
+        assertEquals(expected.getSum(), actual.getSum());
+        assertEquals(expected.getSumOfSquares(), actual.getSumOfSquares());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        for (double quantile = 0.01; quantile <= 1.0; quantile += 0.01) {
+            assertEquals(expected.getValueAtPercentile(quantile), actual.getValueAtPercentile(quantile));
+        }
+        Stats e = expected.toStats();
+        Stats a = actual.toStats();
+        assertEquals(e.averageBelowP95, a.averageBelowP95);
+        assertEquals(e.averageUpperP95, a.averageUpperP95);
+        assertEquals(e.aboveP95Count, a.aboveP95Count);
+    }
+}
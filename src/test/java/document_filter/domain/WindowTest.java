@@ -0,0 +1,75 @@
+package document_filter.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WindowTest {
+
+    @Test
+    void matchesFileHistogramOfSamePrecision() {
+        for (int bits : new int[]{1, 5, 8, 11}) {
+            SplittableRandom random = new SplittableRandom(bits);
+            Window window = new Window(0, bits);
+            LatencyHistogram histogram = new LatencyHistogram(bits);
+            for (int i = 0; i < 5_000; i++) {
+                int latency = random.nextInt(50) == 0 ? random.nextInt(100_000) : random.nextInt(-5, 300);
+                window.add(latency);
+                histogram.record(latency);
+            }
+            assertSameResult(histogram, window);
+        }
+    }
+
+    @Test
+    void addAllMatchesRecordingEverything() {
+        SplittableRandom random = new SplittableRandom(4);
+        Window all = new Window(0, 5);
+        Window low = new Window(0, 5);
+        Window high = new Window(0, 5);
+        for (int i = 0; i < 10_000; i++) {
+            int latency = random.nextInt(2) == 0 ? random.nextInt(100) : 10_000 + random.nextInt(50_000);
+            all.add(latency);
+            (latency < 100 ? low : high).add(latency);
+        }
+        // Rangos disjuntos: el destino tiene que crecer hacia ambos lados
+        Window combined = high.emptyCopy(0);
+        combined.addAll(high);
+        combined.addAll(low);
+        assertEquals(all.toResult().toString(), combined.toResult().toString());
+        assertThrows(IllegalArgumentException.class, () -> all.addAll(new Window(0, 8)));
+    }
+
+    @Test
+    void serializationRoundTrips() throws IOException {
+        Window window = new Window(1_700_000_000_000L, 5);
+        SplittableRandom random = new SplittableRandom(6);
+        for (int i = 0; i < 1_000; i++) {
+            window.add(random.nextInt(-10, 100_000));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        window.writeTo(new DataOutputStream(bytes));
+        Window read = Window.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(window.getStartEpochMillis(), read.getStartEpochMillis());
+        assertEquals(window.toResult().toString(), read.toResult().toString());
+        assertEquals(window.estimatedHeapBytes(), read.estimatedHeapBytes());
+    }
+
+    private static void assertSameResult(LatencyHistogram expected, Window actual) {
+        assertEquals(expected.getTotalCount(), actual.getCount());
+        assertEquals(expected.getSum(), actual.getSum());
+        assertEquals(expected.getMean(), actual.getAverage());
+        assertEquals(expected.getStdDev(), actual.getStdDev());
+        for (double quantile = 0.01; quantile <= 1.0; quantile += 0.01) {
+            assertEquals(expected.getValueAtPercentile(quantile), actual.getValueAtPercentile(quantile));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package document_filter.files;
+
+import document_filter.latency.PipelineMetrics;
+import document_filter.latency.WindowResultFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MetricsServiceTest {
+    @TempDir
+    Path directory;
+
+    private MetricsService service;
+
+    @BeforeEach
+    void createService() throws IOException {
+        Path input = Files.createDirectories(directory.resolve("input/INSTR"));
+        // Horario de Buenos Aires (UTC-3)
+        Files.writeString(input.resolve("delay.log"), """
+                ORD;1;20250310 23:59:09.900;ACK;7
+                ORD;2;20250310 23:59:10.100;ACK;10
+                ORD;3;20250310 23:59:12.000;ACK;30
+                ORD;4;20250310 23:59:16.000;ACK;5
+                ORD;5;20250310 23:59:25.000;ACK;99
+                """);
+        service = new MetricsService(null, false, "", false, "", directory.resolve("history").toString(), 8,
+                List.of(), 1, 1, 1, PipelineMetrics.NONE);
+        ReflectionTestUtils.setField(service, "inputFolderPath", directory.resolve("input").toString());
+        ReflectionTestUtils.setField(service, "windowSizeSeconds", 1);
+        ReflectionTestUtils.setField(service, "parseParallelism", 1);
+        ReflectionTestUtils.setField(service, "windowSketchDigits", 1);
+    }
+
+    @Test
+    void windowQueryRoundsTheRangeToWholeWindows() {
+        // from baja al inicio de su ventana y to sube al final de la suya; local e ISO son equivalentes
+        WindowQuery query = service.windowQuery("INSTR", null, "2025-03-10T23:59:10.250", "2025-03-11T02:59:20.001Z", 5, "csv");
+        assertEquals("INSTR/delay.log", query.name());
+        assertEquals(Instant.parse("2025-03-11T02:59:10Z").toEpochMilli(), query.fromMillis());
+        assertEquals(Instant.parse("2025-03-11T02:59:25Z").toEpochMilli(), query.toMillis());
+        assertEquals(5, query.resolutionSeconds());
+        assertEquals(WindowResultFormat.CSV, query.format());
+
+        // Bordes ya alineados quedan igual
+        query = service.windowQuery("INSTR", null, "2025-03-11T02:59:10Z", "2025-03-11T02:59:20Z", 5, "ndjson");
+        assertEquals(Instant.parse("2025-03-11T02:59:10Z").toEpochMilli(), query.fromMillis());
+        assertEquals(Instant.parse("2025-03-11T02:59:20Z").toEpochMilli(), query.toMillis());
+
+        // Sin límites ni resolución: todo el archivo, con la ventana configurada
+        query = service.windowQuery("INSTR", null, null, null, null, "ndjson");
+        assertEquals(Long.MIN_VALUE, query.fromMillis());
+        assertEquals(Long.MAX_VALUE, query.toMillis());
+        assertEquals(1, query.resolutionSeconds());
+    }
+
+    @Test
+    void windowQueryRejectsInvalidParameters() {
+        assertNull(service.windowQuery("OTRO", null, null, null, null, "csv"));
+        assertThrows(IllegalArgumentException.class, () -> service.windowQuery("INSTR", null, null, null, 0, "csv"));
+        assertThrows(IllegalArgumentException.class, () -> service.windowQuery("INSTR", null, "ayer", null, null, "csv"));
+        assertThrows(IllegalArgumentException.class, () -> service.windowQuery("INSTR", null, null, null, null, "xml"));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.windowQuery("INSTR", null, "2025-03-11T03:00:00Z", "2025-03-11T02:59:00Z", 5, "csv"));
+    }
+
+    @Test
+    void streamWindowsWritesOnlyTheWindowsOfTheRange() throws IOException {
+        WindowQuery csv = service.windowQuery("INSTR", null, "2025-03-10T23:59:10.250", "2025-03-10T23:59:20.001", 5, "csv");
+        assertEquals("""
+                windowStart,count,averageLatency,p50Latency,p99Latency,maxLatency,stdDev
+                2025-03-11T02:59:10Z,2,20.0,10,30,30,10.0
+                2025-03-11T02:59:15Z,1,5.0,5,5,5,0.0
+                """, stream(csv));
+
+        WindowQuery ndjson = service.windowQuery("INSTR", null, "2025-03-11T02:59:15Z", null, 5, "ndjson");
+        assertEquals("""
+                {"windowStart":"2025-03-11T02:59:15Z","count":1,"averageLatency":5.0,"p50Latency":5,"p99Latency":5,"maxLatency":5,"stdDev":0.0}
+                {"windowStart":"2025-03-11T02:59:25Z","count":1,"averageLatency":99.0,"p50Latency":99,"p99Latency":99,"maxLatency":99,"stdDev":0.0}
+                """, stream(ndjson));
+    }
+
+    private String stream(WindowQuery query) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.streamWindows(query, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
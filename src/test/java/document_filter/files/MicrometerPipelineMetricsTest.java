@@ -0,0 +1,31 @@
+package document_filter.files;
+
+import document_filter.latency.PipelineMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicrometerPipelineMetricsTest {
+
+    @Test
+    void runRecordsTheHeapPeakAndFilesTheirRetainedEstimate() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerPipelineMetrics metrics = new MicrometerPipelineMetrics(registry);
+
+        metrics.runStarted();
+        byte[] allocated = new byte[32 << 20];
+        metrics.fileAnalyzed("INSTR/delay.log", 1234, 1_000_000);
+        metrics.stage(PipelineMetrics.Stage.RUN, 5_000_000);
+
+        DistributionSummary retained = registry.get("latency.pipeline.file.retained").summary();
+        assertEquals(1, retained.count());
+        assertEquals(1234, retained.totalAmount());
+        DistributionSummary peak = registry.get("latency.pipeline.run.heap.peak").summary();
+        assertEquals(1, peak.count());
+        // El pico real incluye lo asignado durante la corrida, no sólo lo que estimó el averager
+        assertTrue(peak.max() >= allocated.length, "pico " + peak.max());
+    }
+}
@@ -0,0 +1,83 @@
+package document_filter.files;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReportCacheTest {
+
+    @Test
+    void joinedCallerRegeneratesWhenTheOwnerIsCancelled() throws Exception {
+        ReportCache<String> cache = new ReportCache<>(4);
+        CountDownLatch ownerStarted = new CountDownLatch(1);
+        AtomicInteger generations = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // El dueño queda bloqueado hasta que lo interrumpen, como un job cancelado
+            Future<byte[]> owner = executor.submit(() -> cache.get("hoy", () -> {
+                generations.incrementAndGet();
+                ownerStarted.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Procesamiento cancelado");
+                }
+                return new byte[]{0};
+            }));
+            ownerStarted.await();
+            Future<byte[]> joined = executor.submit(() -> cache.get("hoy", () -> {
+                generations.incrementAndGet();
+                return new byte[]{1};
+            }));
+            // Se deja que el segundo pedido se sume a la generación en curso antes de cancelarla
+            Thread.sleep(200);
+            owner.cancel(true);
+
+            assertArrayEquals(new byte[]{1}, joined.get(10, TimeUnit.SECONDS));
+            assertEquals(2, generations.get());
+            assertArrayEquals(new byte[]{1}, cache.get("hoy", () -> new byte[]{2}));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void joinedCallerSharesOtherFailures() throws Exception {
+        ReportCache<String> cache = new ReportCache<>(4);
+        CountDownLatch ownerStarted = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<byte[]> owner = executor.submit(() -> cache.get("hoy", () -> {
+                ownerStarted.countDown();
+                try {
+                    fail.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new IllegalStateException("Error al generar el Excel");
+            }));
+            ownerStarted.await();
+            Future<byte[]> joined = executor.submit(() -> cache.get("hoy", () -> new byte[]{1}));
+            Thread.sleep(200);
+            fail.countDown();
+
+            assertEquals(IllegalStateException.class,
+                    assertThrows(Exception.class, () -> joined.get(10, TimeUnit.SECONDS)).getCause().getClass());
+            assertThrows(Exception.class, owner::get);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package document_filter.latency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static document_filter.latency.DelayLogFixtures.assertSameAggregate;
+import static document_filter.latency.DelayLogFixtures.log;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BgzfDelayLogParserTest {
+    private static final Supplier<LatencyWindowAverager> AVERAGERS = () -> new LatencyWindowAverager(1);
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void chunksMatchSequentialRead() throws IOException {
+        for (boolean trailingNewline : new boolean[]{true, false}) {
+            byte[] text = log(21, 20_000, trailingNewline);
+            LatencyWindowAverager expected = readSequential(text, AVERAGERS);
+            // Bloques de 1 a 3000 bytes: hay líneas repartidas en varios bloques y bloques sin ningún '\n'
+            Path file = writeBgzf(directory.resolve("delay.log.1.gz"), text, new SplittableRandom(21));
+            for (long chunkBytes : new long[]{1, 500, 5_000, 50_000, Long.MAX_VALUE}) {
+                assertSameAggregate(expected, BgzfDelayLogParser.parse(file, AVERAGERS, pool, chunkBytes));
+            }
+            assertSameAggregate(expected, DelayLogFiles.parse(file.toFile(), AVERAGERS, pool));
+            assertSameAggregate(expected, DelayLogFiles.parse(file.toFile(), AVERAGERS, null));
+        }
+    }
+
+    @Test
+    void plainGzipFallsBackToStreaming() throws IOException {
+        byte[] text = log(22, 5_000, true);
+        Path file = directory.resolve("delay.log.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(text);
+        }
+        assertNull(BgzfDelayLogParser.parse(file, AVERAGERS, pool));
+        assertSameAggregate(readSequential(text, AVERAGERS), DelayLogFiles.parse(file.toFile(), AVERAGERS, pool));
+    }
+
+    @Test
+    void corruptBlockFailsWithIOException() throws IOException {
+        Path file = writeBgzf(directory.resolve("delay.log.gz"), log(23, 5_000, true), new SplittableRandom(23));
+        byte[] bytes = Files.readAllBytes(file);
+        // Basura en los datos comprimidos del primer bloque, sin tocar los encabezados
+        for (int i = 18; i < 28; i++) {
+            bytes[i] = (byte) 0xFF;
+        }
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> BgzfDelayLogParser.parse(file, AVERAGERS, pool, 1));
+    }
+
+    /** {@code text} en bloques BGZF de tamaño aleatorio, con el bloque vacío de fin de archivo. */
+    private static Path writeBgzf(Path file, byte[] text, SplittableRandom random) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int position = 0;
+        while (position < text.length) {
+            int length = Math.min(text.length - position, 1 + random.nextInt(3000));
+            writeBlock(out, text, position, length);
+            position += length;
+        }
+        writeBlock(out, text, 0, 0);
+        return Files.write(file, out.toByteArray());
+    }
+
+    private static void writeBlock(ByteArrayOutputStream out, byte[] text, int offset, int length) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(text, offset, length);
+        deflater.finish();
+        byte[] compressed = new byte[length + 1024];
+        int compressedLength = deflater.deflate(compressed);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(text, offset, length);
+
+        ByteBuffer block = ByteBuffer.allocate(18 + compressedLength + 8).order(ByteOrder.LITTLE_ENDIAN);
+        block.put((byte) 31).put((byte) 139).put((byte) 8).put((byte) 4).putInt(0).put((byte) 0).put((byte) 255);
+        block.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+        block.putShort((short) (block.capacity() - 1));
+        block.put(compressed, 0, compressedLength);
+        block.putInt((int) crc.getValue()).putInt(length);
+        out.write(block.array(), 0, block.capacity());
+    }
+}
@@ -0,0 +1,108 @@
+package document_filter.latency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static document_filter.latency.DelayLogFixtures.assertSameAggregate;
+import static document_filter.latency.DelayLogFixtures.log;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentLatencyWindowAveragerTest {
+    private static final Supplier<LatencyWindowAverager> AVERAGERS = () -> new LatencyWindowAverager(1);
+
+    @Test
+    void concurrentProducersMatchSequentialRead() throws Exception {
+        byte[] text = log(30, 80_000, true);
+        // Menos franjas que productores: también se ejercita el reintento sobre franjas ocupadas
+        ConcurrentLatencyWindowAverager averager = new ConcurrentLatencyWindowAverager(AVERAGERS, 2);
+        List<int[]> slices = lineSlices(text, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(slices.size() + 1);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int[] slice : slices) {
+                producers.add(executor.submit(() -> {
+                    // Mitad línea por línea, mitad en lotes y como parcial armado aparte
+                    int middle = slice[0] + (slice[1] - slice[0]) / 2;
+                    int lineStart = slice[0];
+                    while (lineStart < middle) {
+                        int end = lineStart;
+                        while (text[end] != '\n') end++;
+                        averager.addLine(text, lineStart, end);
+                        lineStart = end + 1;
+                    }
+                    int batchEnd = nextLineStart(text, lineStart + (slice[1] - lineStart) / 2);
+                    averager.addLines(text, lineStart, batchEnd);
+                    LatencyWindowAverager partial = AVERAGERS.get();
+                    for (int start = batchEnd; start < slice[1]; ) {
+                        int end = start;
+                        while (text[end] != '\n') end++;
+                        partial.addLine(text, start, end);
+                        start = end + 1;
+                    }
+                    averager.merge(partial);
+                }));
+            }
+            // Lecturas mientras escriben: nunca ven más muestras que las del archivo
+            Future<?> reader = executor.submit(() -> {
+                long last = 0;
+                while (!producers.stream().allMatch(Future::isDone)) {
+                    long count = averager.read(LatencyWindowAverager::getSampleCount);
+                    assertTrue(count >= last, "las muestras leídas no pueden bajar");
+                    last = count;
+                }
+            });
+            for (Future<?> producer : producers) {
+                producer.get();
+            }
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+        LatencyWindowAverager expected = readSequential(text, AVERAGERS);
+        averager.read(actual -> {
+            assertSameAggregate(expected, actual);
+            return null;
+        });
+    }
+
+    @Test
+    void readWithoutWritesKeepsTheAggregate() {
+        ConcurrentLatencyWindowAverager averager = new ConcurrentLatencyWindowAverager(AVERAGERS, 4);
+        averager.addSample(1_700_000_000_000L, 10);
+        averager.addSample(1_700_000_000_500L, 30);
+        assertEquals(2, averager.read(LatencyWindowAverager::getSampleCount));
+        assertEquals(2, averager.read(LatencyWindowAverager::getSampleCount));
+        assertEquals(20.0, averager.read(LatencyWindowAverager::getStats).average);
+    }
+
+    /** {@code parts} tramos [inicio, fin) que empiezan en inicio de línea; {@code text} termina en '\n'. */
+    private static List<int[]> lineSlices(byte[] text, int parts) {
+        List<int[]> slices = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= parts && start < text.length; i++) {
+            int end = i == parts ? text.length : nextLineStart(text, text.length / parts * i);
+            if (end > start) {
+                slices.add(new int[]{start, end});
+            }
+            start = end;
+        }
+        return slices;
+    }
+
+    private static int nextLineStart(byte[] text, int from) {
+        int position = Math.max(from, 0);
+        if (position > 0 && text[position - 1] == '\n') {
+            return position;
+        }
+        while (position < text.length && text[position] != '\n') position++;
+        return Math.min(position + 1, text.length);
+    }
+}
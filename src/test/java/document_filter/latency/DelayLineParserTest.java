@@ -0,0 +1,128 @@
+package document_filter.latency;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+import static document_filter.latency.DelayLogFixtures.ZONE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DelayLineParserTest {
+    private static final DateTimeFormatter BASELINE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+    private static final String TIMESTAMP_NOISE = "0123456789 :.-+aX";
+
+    @Test
+    void matchesBaselineOnRandomLines() {
+        SplittableRandom random = new SplittableRandom(1);
+        DelayLineParser chars = new DelayLineParser(ZONE);
+        DelayLineParser bytes = new DelayLineParser(ZONE);
+        long accepted = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String line = randomLine(random);
+            assertParity(line, chars, bytes);
+            if (baseline(line) != null) accepted++;
+        }
+        assertEquals(accepted, chars.getParsedLines());
+        assertEquals(accepted, bytes.getParsedLines());
+        assertEquals(200_000 - accepted, chars.getMalformedLines());
+        long rejected = 0;
+        for (long count : bytes.getRejectedLines()) {
+            rejected += count;
+        }
+        assertEquals(bytes.getMalformedLines(), rejected);
+    }
+
+    @Test
+    void matchesBaselineAcrossDstTransitions() {
+        // Buenos Aires tuvo horario de verano entre 2007 y 2009
+        DelayLineParser chars = new DelayLineParser(ZONE);
+        DelayLineParser bytes = new DelayLineParser(ZONE);
+        for (String day : new String[]{"20071230", "20080316", "20081019", "20090315", "20250310"}) {
+            for (int minutes = 0; minutes < 24 * 60; minutes += 7) {
+                String time = String.format("%02d:%02d:%02d.%03d", minutes / 60, minutes % 60, minutes % 60, minutes % 1000);
+                assertParity("ORD;1;" + day + " " + time + ";ACK;" + minutes, chars, bytes);
+            }
+        }
+    }
+
+    @Test
+    void stripsCarriageReturnLikeReadLine() {
+        DelayLineParser parser = new DelayLineParser(ZONE);
+        assertTrue(parser.parse("ORD;1;20250310 09:00:00.123;ACK;17\r"));
+        long[] expected = baseline("ORD;1;20250310 09:00:00.123;ACK;17");
+        assertEquals(expected[0], parser.getEpochMillis());
+        assertEquals(17, parser.getLatency());
+        assertFalse(parser.parse("ORD;1;20250310 09:00:00.123;ACK;17\r\r"));
+    }
+
+    private static void assertParity(String line, DelayLineParser chars, DelayLineParser bytes) {
+        long[] expected = baseline(line);
+        byte[] buf = ("<" + line + ">").getBytes(StandardCharsets.ISO_8859_1);
+        boolean charsAccepted = chars.parse(line);
+        boolean bytesAccepted = bytes.parse(buf, 1, buf.length - 1);
+        assertEquals(expected != null, charsAccepted, line);
+        assertEquals(expected != null, bytesAccepted, line);
+        if (expected != null) {
+            assertEquals(expected[0], chars.getEpochMillis(), line);
+            assertEquals(expected[1], chars.getLatency(), line);
+            assertEquals(expected[0], bytes.getEpochMillis(), line);
+            assertEquals(expected[1], bytes.getLatency(), line);
+        }
+    }
+
+    /** Lo que hacía el LatencyWindowAverager original con la línea: {epochMillis, latencia}, o null si la descartaba. */
+    private static long[] baseline(String line) {
+        String[] parts = line.split(";");
+        if (parts.length != 5) return null;
+        try {
+            int latency = Integer.parseInt(parts[4]);
+            long epochMillis = LocalDateTime.parse(parts[2], BASELINE_FORMAT).atZone(ZONE).toInstant().toEpochMilli();
+            return new long[]{epochMillis, latency};
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String randomLine(SplittableRandom random) {
+        int year = random.nextInt(2006, 2027);
+        int month = 1 + random.nextInt(12);
+        int day = 1 + random.nextInt(31);
+        String timestamp = String.format("%04d%02d%02d %02d:%02d:%02d.%03d", year, month, day,
+                random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000));
+        String latency = Integer.toString(random.nextInt(5) == 0 ? random.nextInt() : random.nextInt(1000));
+        String[] fields = {"ORD", Integer.toString(random.nextInt(1_000_000)), timestamp, "ACK", latency};
+
+        switch (random.nextInt(14)) {
+            case 0 -> fields[4] = "";
+            case 1 -> fields[4] = (random.nextBoolean() ? "+" : "-") + random.nextInt(1000);
+            case 2 -> fields[4] = random.nextBoolean() ? "2147483648" : "-2147483648";
+            case 3 -> fields[4] = random.nextBoolean() ? "99999999999" : "+";
+            case 4 -> fields[4] = random.nextInt(1000) + "a";
+            case 5 -> {
+                char[] chars = timestamp.toCharArray();
+                chars[random.nextInt(chars.length)] = TIMESTAMP_NOISE.charAt(random.nextInt(TIMESTAMP_NOISE.length()));
+                fields[2] = new String(chars);
+            }
+            case 6 -> fields[2] = random.nextBoolean() ? timestamp.substring(1) : timestamp + "0";
+            case 7 -> fields[2] = String.format("%04d%02d%02d", year, random.nextInt(14), random.nextInt(34))
+                    + timestamp.substring(8);
+            case 8 -> fields[0] = "";
+            default -> {
+            }
+        }
+        String line = String.join(";", fields);
+        return switch (random.nextInt(12)) {
+            case 0 -> line + ";";
+            case 1 -> line + ";;";
+            case 2 -> line + ";extra";
+            case 3 -> line.substring(line.indexOf(';') + 1);
+            case 4 -> line.substring(0, random.nextInt(line.length() + 1));
+            default -> line;
+        };
+    }
+}
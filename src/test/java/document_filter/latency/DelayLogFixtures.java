@@ -0,0 +1,103 @@
+package document_filter.latency;
+
+import document_filter.domain.Stats;
+import document_filter.domain.WindowResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** delay.log sintéticos y comparaciones de resultados compartidas por los tests. */
+final class DelayLogFixtures {
+    static final ZoneId ZONE = LatencyWindowAverager.DEFAULT_ZONE;
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+    private static final String[] MALFORMED = {
+            "garbage line",
+            "ORD;1;2025031X 09:00:00.000;ACK;12",
+            "ORD;1;20250310 09:00:00.000;12",
+            "ORD;1;20250310 09:00:00.000;ACK;abc",
+            "",
+    };
+
+    private DelayLogFixtures() {
+    }
+
+    /**
+     * {@code lines} líneas que arrancan un minuto antes de medianoche (cruzan de día), con timestamps que
+     * a veces retroceden, latencias con cola larga y ~1% de líneas inválidas.
+     */
+    static byte[] log(long seed, int lines, boolean trailingNewline) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime time = LocalDateTime.of(2025, 3, 10, 23, 59);
+        StringBuilder text = new StringBuilder(lines * 40);
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(100) == 0) {
+                text.append(MALFORMED[random.nextInt(MALFORMED.length)]);
+            } else {
+                time = time.plusNanos(random.nextInt(-2, 15) * 1_000_000L);
+                int latency = random.nextInt(50) == 0 ? random.nextInt(100_000) : random.nextInt(300);
+                text.append("ORD;").append(i).append(';').append(time.format(FORMAT)).append(";ACK;").append(latency);
+            }
+            if (i < lines - 1 || trailingNewline) {
+                text.append('\n');
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Resultado de referencia: lectura secuencial de todo el texto en un solo averager. */
+    static LatencyWindowAverager readSequential(byte[] text, Supplier<LatencyWindowAverager> averagers) throws IOException {
+        LatencyWindowAverager averager = averagers.get();
+        DelayLogReader.read(new ByteArrayInputStream(text), averager);
+        return averager;
+    }
+
+    static void assertSameAggregate(LatencyWindowAverager expected, LatencyWindowAverager actual) {
+        assertSameWindows(expected.getResults(), actual.getResults());
+        assertSameStats(expected.getStats(), actual.getStats());
+        assertEquals(expected.getSampleCount(), actual.getSampleCount(), "muestras");
+        assertEquals(expected.getParsedLines(), actual.getParsedLines(), "líneas parseadas");
+        assertArrayEquals(expected.getRejectedLines(), actual.getRejectedLines(), "líneas rechazadas");
+    }
+
+    static void assertSameWindows(List<WindowResult> expected, List<WindowResult> actual) {
+        assertEquals(expected.size(), actual.size(), "cantidad de ventanas");
+        for (int i = 0; i < expected.size(); i++) {
+            WindowResult e = expected.get(i);
+            WindowResult a = actual.get(i);
+            String window = "ventana " + e.windowStart;
+            assertEquals(e.windowStart, a.windowStart, window);
+            assertEquals(e.count, a.count, window);
+            assertEquals(e.averageLatency, a.averageLatency, window);
+            assertEquals(e.p50Latency, a.p50Latency, window);
+            assertEquals(e.p99Latency, a.p99Latency, window);
+            assertEquals(e.maxLatency, a.maxLatency, window);
+            assertEquals(e.stdDev, a.stdDev, window);
+        }
+    }
+
+    /** Igualdad bit a bit de todos los campos. */
+    static void assertSameStats(Stats expected, Stats actual) {
+        assertEquals(expected.average, actual.average, "promedio");
+        assertEquals(expected.averageBelowP95, actual.averageBelowP95, "promedio <= P95");
+        assertEquals(expected.averageUpperP95, actual.averageUpperP95, "promedio >= P95");
+        assertEquals(expected.stdDev, actual.stdDev, "desvío");
+        assertEquals(expected.maxLatency, actual.maxLatency, "máximo");
+        assertEquals(expected.minLatency, actual.minLatency, "mínimo");
+        assertEquals(expected.p50, actual.p50, "P50");
+        assertEquals(expected.p95, actual.p95, "P95");
+        assertEquals(expected.p99, actual.p99, "P99");
+        assertEquals(expected.p999, actual.p999, "P99.9");
+        assertEquals(expected.aboveP95Count, actual.aboveP95Count, "cantidad > P95");
+        assertEquals(expected.totalDataSize, actual.totalDataSize, "tamaño");
+    }
+}
@@ -0,0 +1,181 @@
+package document_filter.latency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static document_filter.latency.DelayLogFixtures.ZONE;
+import static document_filter.latency.DelayLogFixtures.assertSameAggregate;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DelayLogRangeTest {
+    private static final Supplier<LatencyWindowAverager> AVERAGERS = () -> new LatencyWindowAverager(1);
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void rangesMatchLinearScan() throws IOException {
+        // Tandas largas de líneas inválidas: varias búsquedas caen sobre ellas y tienen que avanzar
+        byte[] text = orderedLog(40, 30_000);
+        Path file = Files.write(directory.resolve("delay.log"), text);
+        long[] timestamps = effectiveTimestamps(text);
+        long first = timestamps[0];
+        long last = lastValid(timestamps);
+
+        SplittableRandom random = new SplittableRandom(41);
+        for (int i = 0; i < 20; i++) {
+            long from = first + random.nextLong(last - first);
+            long to = from + random.nextLong(last - from + 1);
+            assertRange(text, file, timestamps, from, to);
+        }
+        // Bordes exactos en timestamps de líneas: from incluye, to excluye
+        long middle = timestamps[timestamps.length / 2];
+        assertRange(text, file, timestamps, middle, last);
+        assertRange(text, file, timestamps, first, middle);
+        assertRange(text, file, timestamps, middle, middle);
+    }
+
+    @Test
+    void rangesBeyondBothEndsOfTheFile() throws IOException {
+        byte[] text = orderedLog(42, 5_000);
+        Path file = Files.write(directory.resolve("delay.log"), text);
+        long[] timestamps = effectiveTimestamps(text);
+        long first = timestamps[0];
+        long last = lastValid(timestamps);
+
+        // Todo el archivo, con y sin límites explícitos
+        assertRange(text, file, timestamps, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertRange(text, file, timestamps, first - 60_000, last + 60_000);
+        assertRange(text, file, timestamps, first - 60_000, Long.MAX_VALUE);
+        // Sólo un extremo afuera
+        assertRange(text, file, timestamps, first - 60_000, first + 10_000);
+        assertRange(text, file, timestamps, last - 10_000, last + 60_000);
+        // Rango entero antes del principio o después del final
+        assertRange(text, file, timestamps, first - 60_000, first - 1);
+        assertRange(text, file, timestamps, last + 1, last + 60_000);
+        assertRange(text, file, timestamps, last + 1, Long.MAX_VALUE);
+        assertEquals(0, DelayLogRange.read(file, first - 60_000, first, ZONE, AVERAGERS, pool).getSampleCount());
+        assertEquals(0, DelayLogRange.read(file, last + 1, last + 60_000, ZONE, AVERAGERS, pool).getSampleCount());
+    }
+
+    @Test
+    void fileWithoutValidLines() throws IOException {
+        Path file = Files.write(directory.resolve("delay.log"), "garbage\n\nORD;1;x;ACK;2\n".getBytes(StandardCharsets.US_ASCII));
+        // Sin timestamps, las líneas sólo entran cuando el rango llega hasta el final
+        assertEquals(0, rejected(DelayLogRange.read(file, 0, 1_000, ZONE, AVERAGERS, null)));
+        assertEquals(3, rejected(DelayLogRange.read(file, 0, Long.MAX_VALUE, ZONE, AVERAGERS, null)));
+    }
+
+    /**
+     * Compara contra el tramo que da un recorrido lineal: desde la primera línea cuyo timestamp efectivo
+     * (el propio, o el de la siguiente válida si es inválida) es >= from, hasta la primera >= to.
+     */
+    private static void assertRange(byte[] text, Path file, long[] timestamps, long from, long to) throws IOException {
+        int[] starts = lineStarts(text);
+        int start = firstAtOrAfter(timestamps, starts, text.length, from);
+        int end = to == Long.MAX_VALUE ? text.length : firstAtOrAfter(timestamps, starts, text.length, to);
+        LatencyWindowAverager expected = readSequential(Arrays.copyOfRange(text, start, Math.max(start, end)), AVERAGERS);
+        assertSameAggregate(expected, DelayLogRange.read(file, from, to, ZONE, AVERAGERS, pool));
+        assertSameAggregate(expected, DelayLogRange.read(file, from, to, ZONE, AVERAGERS, null));
+    }
+
+    private static int firstAtOrAfter(long[] timestamps, int[] starts, int size, long epochMillis) {
+        for (int i = 0; i < timestamps.length; i++) {
+            if (timestamps[i] >= epochMillis) {
+                return starts[i];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Log en orden, con tandas de hasta 200 líneas inválidas (también al principio y al final) para que
+     * las búsquedas caigan sobre ellas.
+     */
+    private static byte[] orderedLog(long seed, int lines) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime time = LocalDateTime.of(2025, 3, 10, 23, 59);
+        StringBuilder text = new StringBuilder(lines * 40);
+        text.append("garbage line\n");
+        int i = 0;
+        while (i < lines) {
+            if (random.nextInt(50) == 0) {
+                for (int run = random.nextInt(1, 200); run > 0; run--, i++) {
+                    text.append(random.nextBoolean() ? "ORD;" + i + ";20250310;ACK;1\n" : "\n");
+                }
+            } else {
+                time = time.plusNanos(random.nextInt(0, 40) * 1_000_000L);
+                text.append("ORD;").append(i).append(';').append(time.format(FORMAT)).append(";ACK;")
+                        .append(random.nextInt(300)).append('\n');
+                i++;
+            }
+        }
+        text.append("garbage line\n");
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Timestamp de cada línea, o el de la siguiente válida; MAX_VALUE para las inválidas del final. */
+    private static long[] effectiveTimestamps(byte[] text) {
+        String[] lines = new String(text, StandardCharsets.US_ASCII).split("\n", -1);
+        long[] timestamps = new long[lines.length - 1];
+        DelayLineParser parser = new DelayLineParser(ZONE);
+        long next = Long.MAX_VALUE;
+        for (int i = timestamps.length - 1; i >= 0; i--) {
+            if (parser.parse(lines[i])) {
+                next = parser.getEpochMillis();
+            }
+            timestamps[i] = next;
+        }
+        return timestamps;
+    }
+
+    private static int[] lineStarts(byte[] text) {
+        int[] starts = new int[text.length];
+        int count = 0;
+        for (int i = 0; i < text.length; i++) {
+            if (i == 0 || text[i - 1] == '\n') {
+                starts[count++] = i;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static long rejected(LatencyWindowAverager averager) {
+        return Arrays.stream(averager.getRejectedLines()).sum();
+    }
+
+    private static long lastValid(long[] timestamps) {
+        for (int i = timestamps.length - 1; i >= 0; i--) {
+            if (timestamps[i] != Long.MAX_VALUE) {
+                return timestamps[i];
+            }
+        }
+        throw new IllegalStateException("sin líneas válidas");
+    }
+}
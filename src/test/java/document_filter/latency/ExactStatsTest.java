@@ -0,0 +1,86 @@
+package document_filter.latency;
+
+import document_filter.domain.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static document_filter.latency.DelayLogFixtures.assertSameStats;
+
+class ExactStatsTest {
+
+    @Test
+    void countingSortMatchesBaseline() {
+        SplittableRandom random = new SplittableRandom(6);
+        for (int round = 0; round < 300; round++) {
+            int n = 1 + random.nextInt(5000);
+            // Rango acotado (<= 2^16): counting sort, con negativos y muchos repetidos
+            int min = random.nextInt(-1000, 1000);
+            int range = 1 + random.nextInt(random.nextBoolean() ? 50 : 1 << 16);
+            int[] values = new int[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = min + random.nextInt(range);
+            }
+            assertMatchesBaseline(values);
+        }
+    }
+
+    @Test
+    void arraysSortMatchesBaseline() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int round = 0; round < 300; round++) {
+            int n = 1 + random.nextInt(5000);
+            // Rango mayor que max(2^16, n): Arrays.sort
+            int[] values = new int[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = random.nextInt(4) == 0 ? random.nextInt(-1_000_000_000, 1_000_000_000) : random.nextInt(300);
+            }
+            values[0] = 0;
+            values[n - 1] = 200_000;
+            assertMatchesBaseline(values);
+        }
+    }
+
+    @Test
+    void edgeCasesMatchBaseline() {
+        assertMatchesBaseline(new int[]{42});
+        assertMatchesBaseline(new int[]{5, 5, 5, 5, 5, 5, 5});
+        assertMatchesBaseline(new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE, 0});
+        assertMatchesBaseline(new int[]{-3, 7});
+        assertSameStats(baselineStats(List.of()), ExactStats.compute(new int[0]));
+    }
+
+    private static void assertMatchesBaseline(int[] values) {
+        List<Integer> boxed = new ArrayList<>(values.length);
+        for (int value : values) {
+            boxed.add(value);
+        }
+        assertSameStats(baselineStats(boxed), ExactStats.compute(values.clone()));
+    }
+
+    /** El cálculo original de LatencyWindowAverager.getStats sobre List<Integer>. */
+    private static Stats baselineStats(List<Integer> input) {
+        List<Integer> values = new ArrayList<>(input);
+        if (values.isEmpty()) return new Stats(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+        Collections.sort(values);
+        int n = values.size();
+
+        double avg = values.stream().mapToInt(i -> i).average().orElse(0);
+        double std = Math.sqrt(values.stream().mapToDouble(i -> Math.pow(i - avg, 2)).average().orElse(0));
+        int max = values.get(n - 1);
+        int min = values.getFirst();
+
+        int p50 = values.get(Math.min((int) Math.ceil(0.5 * n) - 1, n - 1));
+        int p95 = values.get(Math.min((int) Math.ceil(0.95 * n) - 1, n - 1));
+        int p99 = values.get(Math.min((int) Math.ceil(0.99 * n) - 1, n - 1));
+        int p999 = values.get(Math.min((int) Math.ceil(0.999 * n) - 1, n - 1));
+        int aboveP95 = (int) values.stream().filter(i -> i > p95).count();
+        double averageBelowP95 = values.stream().filter(v -> v <= p95).mapToInt(i -> i).average().orElse(0.0);
+        double averageUpperP95 = values.stream().filter(v -> v >= p95).mapToInt(i -> i).average().orElse(0.0);
+        return new Stats(avg, averageBelowP95, averageUpperP95, std, max, min, p50, p95, p99, p999, aboveP95, n);
+    }
+}
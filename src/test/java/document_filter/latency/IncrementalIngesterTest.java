@@ -0,0 +1,106 @@
+package document_filter.latency;
+
+import document_filter.domain.Stats;
+import document_filter.domain.WindowResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static document_filter.latency.DelayLogFixtures.assertSameStats;
+import static document_filter.latency.DelayLogFixtures.assertSameWindows;
+import static document_filter.latency.DelayLogFixtures.log;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalIngesterTest {
+    private static final String NAME = "INSTR/delay.log";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedBytesMatchFullParse() throws IOException {
+        byte[] text = log(9, 60_000, true);
+        Path file = directory.resolve("delay.log");
+        Path state = directory.resolve("state");
+        ProcessingOptions options = new ProcessingOptions(1);
+
+        // Primer corte en medio de una línea: queda para la corrida siguiente
+        int firstCut = text.length / 3 + 5;
+        Files.write(file, Arrays.copyOf(text, firstCut));
+        IncrementalIngester ingester = new IncrementalIngester(state);
+        assertMatches(upToLastNewline(text, firstCut), ingester.ingest(NAME, file.toFile(), options, null, Snapshot::of));
+
+        int secondCut = 2 * text.length / 3;
+        Files.write(file, Arrays.copyOfRange(text, firstCut, secondCut), StandardOpenOption.APPEND);
+        assertMatches(upToLastNewline(text, secondCut), ingester.ingest(NAME, file.toFile(), options, null, Snapshot::of));
+
+        // Reinicio: otro ingester retoma desde los checkpoints en disco
+        Files.write(file, Arrays.copyOfRange(text, secondCut, text.length), StandardOpenOption.APPEND);
+        IncrementalIngester restarted = new IncrementalIngester(state);
+        Snapshot last = restarted.ingest(NAME, file.toFile(), options, null, Snapshot::of);
+        assertMatches(text, last);
+
+        // Las muestras crudas van al segmento, no al checkpoint
+        assertEquals(last.stats.totalDataSize * Integer.BYTES, Files.size(state.resolve("INSTR_delay.log.samples")));
+    }
+
+    @Test
+    void rewrittenFileIsReadFromTheStart() throws IOException {
+        Path file = directory.resolve("delay.log");
+        Path state = directory.resolve("state");
+        ProcessingOptions options = new ProcessingOptions(1);
+        IncrementalIngester ingester = new IncrementalIngester(state);
+        Files.write(file, log(10, 20_000, true));
+        ingester.ingest(NAME, file.toFile(), options, null, Snapshot::of);
+
+        byte[] rewritten = log(11, 5_000, true);
+        Files.write(file, rewritten);
+        assertMatches(rewritten, ingester.ingest(NAME, file.toFile(), options, null, Snapshot::of));
+        assertMatches(rewritten, new IncrementalIngester(state).ingest(NAME, file.toFile(), options, null, Snapshot::of));
+    }
+
+    @Test
+    void retainDropsCheckpointsOfMissingFiles() throws IOException {
+        Path file = directory.resolve("delay.log");
+        Path state = directory.resolve("state");
+        IncrementalIngester ingester = new IncrementalIngester(state);
+        Files.write(file, log(12, 1_000, true));
+        ingester.ingest(NAME, file.toFile(), new ProcessingOptions(1), null, Snapshot::of);
+        ingester.ingest("OTHER/delay.log", file.toFile(), new ProcessingOptions(1), null, Snapshot::of);
+
+        ingester.retain(Set.of(NAME));
+        assertTrue(Files.exists(state.resolve("INSTR_delay.log.ckpt")));
+        assertFalse(Files.exists(state.resolve("OTHER_delay.log.ckpt")));
+        assertFalse(Files.exists(state.resolve("OTHER_delay.log.samples")));
+    }
+
+    private static byte[] upToLastNewline(byte[] text, int length) {
+        int end = length;
+        while (end > 0 && text[end - 1] != '\n') end--;
+        return Arrays.copyOf(text, end);
+    }
+
+    private static void assertMatches(byte[] text, Snapshot actual) throws IOException {
+        Snapshot expected = Snapshot.of(readSequential(text, () -> new LatencyWindowAverager(1)));
+        assertSameStats(expected.stats, actual.stats);
+        assertSameWindows(expected.windows, actual.windows);
+        assertEquals(expected.parsedLines, actual.parsedLines);
+    }
+
+    /** Lo que se lee del averager mientras el ingester tiene las muestras cargadas. */
+    private record Snapshot(Stats stats, List<WindowResult> windows, long parsedLines) {
+        static Snapshot of(LatencyWindowAverager averager) {
+            return new Snapshot(averager.getStats(), averager.getResults(), averager.getParsedLines());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package document_filter.latency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static document_filter.latency.DelayLogFixtures.ZONE;
+import static document_filter.latency.DelayLogFixtures.assertSameAggregate;
+import static document_filter.latency.DelayLogFixtures.assertSameStats;
+import static document_filter.latency.DelayLogFixtures.assertSameWindows;
+import static document_filter.latency.DelayLogFixtures.log;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyColumnStoreTest {
+    private static final Supplier<LatencyWindowAverager> AVERAGERS = () -> new LatencyWindowAverager(1);
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void roundTripMatchesTextParse() throws IOException {
+        // Más de un bloque de 2^16 muestras
+        byte[] text = log(15, 150_000, false);
+        Path source = Files.write(directory.resolve("delay.log"), text);
+        Path store = directory.resolve("delay.lcol");
+        LatencyColumnStore.convert(source, store, text.length, 0, ZONE, PipelineMetrics.NONE);
+
+        LatencyWindowAverager expected = readSequential(text, AVERAGERS);
+        assertSameAggregate(expected, LatencyColumnStore.read(store, Long.MIN_VALUE, Long.MAX_VALUE, AVERAGERS, pool));
+        assertSameAggregate(expected, LatencyColumnStore.read(store, Long.MIN_VALUE, Long.MAX_VALUE, AVERAGERS, null));
+    }
+
+    @Test
+    void timeRangeReadsOnlyMatchingSamples() throws IOException {
+        byte[] text = log(16, 150_000, true);
+        Path source = Files.write(directory.resolve("delay.log"), text);
+        Path store = directory.resolve("delay.lcol");
+        LatencyColumnStore.convert(source, store, text.length, 0, ZONE, PipelineMetrics.NONE);
+
+        long first = readSequential(text, AVERAGERS).getResults().getFirst().windowStart.toEpochMilli();
+        long from = first + 90_000;
+        long to = first + 400_000;
+        LatencyWindowAverager expected = AVERAGERS.get();
+        DelayLineParser parser = new DelayLineParser(ZONE);
+        for (String line : new String(text, StandardCharsets.US_ASCII).split("\n")) {
+            if (parser.parse(line) && parser.getEpochMillis() >= from && parser.getEpochMillis() < to) {
+                expected.addSample(parser.getEpochMillis(), parser.getLatency());
+            }
+        }
+        LatencyWindowAverager actual = LatencyColumnStore.read(store, from, to, AVERAGERS, pool);
+        assertSameWindows(expected.getResults(), actual.getResults());
+        assertSameStats(expected.getStats(), actual.getStats());
+        // Los contadores de líneas sólo se suman al leer el archivo completo
+        assertEquals(0, actual.getParsedLines());
+    }
+
+    @Test
+    void prepareConvertsAgainWhenTheSourceChanges() throws IOException {
+        Path source = Files.write(directory.resolve("delay.log"), log(17, 10_000, true));
+        LatencyColumnStore columnStore = new LatencyColumnStore(directory.resolve("columns"));
+        Path store = columnStore.prepare("INSTR/delay.log", source.toFile());
+        FileTime converted = Files.getLastModifiedTime(store);
+        assertEquals(store, columnStore.prepare("INSTR/delay.log", source.toFile()));
+        assertEquals(converted, Files.getLastModifiedTime(store));
+
+        Files.write(source, log(18, 500, true), StandardOpenOption.APPEND);
+        byte[] grown = Files.readAllBytes(source);
+        ProcessingOptions options = new ProcessingOptions(1);
+        assertSameAggregate(readSequential(grown, AVERAGERS), columnStore.load("INSTR/delay.log", source.toFile(), options, pool));
+    }
+
+    @Test
+    void concurrentPrepareConvertsEachFileOnce() throws Exception {
+        Path first = Files.write(directory.resolve("a.log"), log(19, 20_000, true));
+        Path second = Files.write(directory.resolve("b.log"), log(20, 20_000, true));
+        LatencyColumnStore columnStore = new LatencyColumnStore(directory.resolve("columns"));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Map<String, List<Future<Path>>> prepared = new HashMap<>();
+            for (int i = 0; i < 16; i++) {
+                Path source = i % 2 == 0 ? first : second;
+                String name = i % 2 == 0 ? "A/delay.log" : "B/delay.log";
+                prepared.computeIfAbsent(name, key -> new ArrayList<>())
+                        .add(executor.submit(() -> columnStore.prepare(name, source.toFile())));
+            }
+            // Una conversión por archivo: los demás hilos encuentran el columnar vigente. Los dos archivos
+            // se convierten en paralelo, así que sólo se comparan los tiempos dentro de cada uno
+            for (Map.Entry<String, List<Future<Path>>> file : prepared.entrySet()) {
+                Set<FileTime> converted = new HashSet<>();
+                for (Future<Path> future : file.getValue()) {
+                    converted.add(Files.getLastModifiedTime(future.get()));
+                }
+                assertEquals(1, converted.size(), file.getKey());
+            }
+            try (Stream<Path> files = Files.list(directory.resolve("columns"))) {
+                assertEquals(2, files.count());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        ProcessingOptions options = new ProcessingOptions(1);
+        assertSameAggregate(readSequential(Files.readAllBytes(first), AVERAGERS),
+                columnStore.load("A/delay.log", first.toFile(), options, pool));
+        assertSameAggregate(readSequential(Files.readAllBytes(second), AVERAGERS),
+                columnStore.load("B/delay.log", second.toFile(), options, pool));
+    }
+}
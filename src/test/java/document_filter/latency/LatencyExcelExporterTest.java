@@ -0,0 +1,78 @@
+package document_filter.latency;
+
+import document_filter.domain.FileSummary;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static document_filter.latency.DelayLogFixtures.log;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyExcelExporterTest {
+    // Comparten los primeros 31 caracteres: recortados a secas chocarían
+    private static final String[] SUBDIRS = {
+            "MERCADO_ELECTRONICO_DERIVADOS_FUTUROS_A", "MERCADO_ELECTRONICO_DERIVADOS_FUTUROS_B", "corto"
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sheetNamesAreShortAndUnique() throws IOException {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Set<String> names = new HashSet<>();
+            for (String subdir : SUBDIRS) {
+                for (String file : new String[]{"delay.log", "delay.log.1.gz"}) {
+                    for (String suffix : new String[]{"_ventanas", "_vent_300s", "_picos", "_tendencia"}) {
+                        String name = LatencyExcelExporter.sheetName(workbook, subdir + "/" + file, suffix);
+                        assertTrue(name.length() <= 31, name);
+                        assertTrue(name.endsWith(suffix), name);
+                        assertTrue(names.add(name.toLowerCase()), name);
+                        workbook.createSheet(name);
+                    }
+                }
+            }
+            assertEquals("corto_picos", LatencyExcelExporter.sheetName(new XSSFWorkbook(), "corto/delay.log", "_picos"));
+            assertEquals("corto.1.gz_picos", LatencyExcelExporter.sheetName(new XSSFWorkbook(), "corto/delay.log.1.gz", "_picos"));
+        }
+    }
+
+    @Test
+    void longDirectoryNamesWithSeveralResolutions() throws IOException {
+        for (int i = 0; i < SUBDIRS.length; i++) {
+            Path subdir = Files.createDirectories(directory.resolve("logs").resolve(SUBDIRS[i]));
+            Files.write(subdir.resolve("delay.log"), log(30 + i, 3_000, true));
+        }
+        ProcessingOptions options = new ProcessingOptions(1);
+        options.setResolutions(List.of(10, 60, 300));
+        Path output = directory.resolve("resumen.xlsx");
+        List<FileSummary> summaries = LatencyExcelExporter.processDirectory(
+                directory.resolve("logs").toString(), output.toString(), options);
+        assertEquals(SUBDIRS.length, summaries.size());
+        try (Workbook workbook = new XSSFWorkbook(Files.newInputStream(output))) {
+            // Resumen + por archivo 4 resoluciones y los picos
+            assertEquals(1 + SUBDIRS.length * 5, workbook.getNumberOfSheets());
+        }
+
+        TreeMap<LocalDate, List<FileSummary>> history = new TreeMap<>();
+        history.put(LocalDate.of(2026, 10, 1), summaries);
+        history.put(LocalDate.of(2026, 10, 2), new ArrayList<>(summaries));
+        byte[] trend = LatencyExcelExporter.writeTrendReport(history);
+        try (Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(trend))) {
+            assertEquals(1 + SUBDIRS.length, workbook.getNumberOfSheets());
+        }
+    }
+}
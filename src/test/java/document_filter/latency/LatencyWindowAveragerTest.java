@@ -0,0 +1,30 @@
+package document_filter.latency;
+
+import document_filter.domain.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyWindowAveragerTest {
+
+    @Test
+    void fileHistogramKeepsHistogramDigits() {
+        SplittableRandom random = new SplittableRandom(8);
+        LatencyWindowAverager averager = new LatencyWindowAverager(1, LatencyWindowAverager.DEFAULT_ZONE,
+                StatsMode.EXACT, 3, 1);
+        LatencyHistogram expected = LatencyHistogram.withSignificantDigits(3);
+        for (int i = 0; i < 10_000; i++) {
+            int latency = random.nextInt(50) == 0 ? random.nextInt(100_000) : random.nextInt(300);
+            averager.addSample(1_700_000_000_000L + i * 7L, latency);
+            expected.record(latency);
+        }
+        // No la suma de los sketches de 1 dígito de las ventanas
+        LatencyHistogram histogram = averager.getHistogram();
+        assertEquals(expected.getPrecisionBits(), histogram.getPrecisionBits());
+        for (double quantile : new double[]{0.5, 0.95, 0.99, 0.999}) {
+            assertEquals(expected.getValueAtPercentile(quantile), histogram.getValueAtPercentile(quantile));
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package document_filter.latency;
+
+import document_filter.domain.LatencyHistogram;
+import document_filter.domain.Window;
+import document_filter.domain.WindowResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static document_filter.latency.DelayLogFixtures.ZONE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class LiveAggregatorTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 10, 10, 0);
+    private static final long START_MILLIS = START.atZone(ZONE).toInstant().toEpochMilli();
+
+    @Test
+    void ringSmallerThanABatchIsRejected() {
+        // Antes put() quedaba esperando para siempre un lugar que el buffer no tiene
+        assertThrows(IllegalArgumentException.class, () -> new LiveAggregator(1, 60, 512, 1, 100,
+                LatencyWindowAverager.DEFAULT_ZONE, new SpikeDetector(1.0, 0.05, 30, 1, 10)));
+        LatencyRingBuffer ring = new LatencyRingBuffer(8);
+        assertThrows(IllegalArgumentException.class, () -> ring.put(new long[16], new int[16], 16));
+    }
+
+    @Test
+    void ingestedSamplesReachTheSnapshotWindows() throws Exception {
+        int precisionBits = LatencyHistogram.precisionBitsFor(2);
+        SplittableRandom random = new SplittableRandom(60);
+        StringBuilder text = new StringBuilder();
+        Window[] expected = new Window[10];
+        for (int second = 0; second < expected.length; second++) {
+            expected[second] = new Window(START_MILLIS + second * 1000L, precisionBits);
+            for (int i = 0; i < 1_000; i++) {
+                int latency = random.nextInt(50) == 0 ? random.nextInt(100_000) : random.nextInt(1, 1_000);
+                expected[second].add(latency);
+                line(text, second * 1000L + i, latency);
+            }
+        }
+        text.append("garbage line\n");
+
+        try (LiveAggregator aggregator = new LiveAggregator(1, 60, 4096, 2, 1, ZONE,
+                new SpikeDetector(1.0, 0.05, 30, 1, 10))) {
+            aggregator.start();
+            LiveAggregator.IngestCounts counts = aggregator.ingest(input(text));
+            assertEquals(10_000, counts.parsedLines());
+            assertEquals(1, counts.malformedLines());
+
+            LiveSnapshot snapshot = awaitSamples(aggregator, 10_000).last(3);
+            assertEquals(3, snapshot.windows().size());
+            assertEquals(1, snapshot.malformedLines());
+            for (int i = 0; i < 3; i++) {
+                WindowResult window = snapshot.windows().get(i);
+                WindowResult reference = expected[7 + i].toResult();
+                assertEquals(reference.windowStart, window.windowStart);
+                assertEquals(1_000, window.count);
+                assertEquals(reference.p99Latency, window.p99Latency);
+                assertEquals(reference.maxLatency, window.maxLatency);
+                assertEquals(reference.averageLatency, window.averageLatency);
+            }
+        }
+    }
+
+    @Test
+    void windowsOutsideTheRetentionExpire() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int second = 0; second < 100; second++) {
+            for (int i = 0; i < 10; i++) {
+                line(text, second * 1000L + i * 100, 10 + i);
+            }
+        }
+        try (LiveAggregator aggregator = new LiveAggregator(1, 10, 1024, 1, 1, ZONE,
+                new SpikeDetector(1.0, 0.05, 30, 1, 10))) {
+            aggregator.start();
+            aggregator.ingest(input(text));
+            // Sólo quedan las últimas 10 ventanas, aunque se hayan visto 100
+            LiveSnapshot snapshot = awaitSamples(aggregator, 1_000);
+            assertEquals(10, snapshot.windows().size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(START_MILLIS + (90 + i) * 1000L, snapshot.windows().get(i).windowStart.toEpochMilli());
+                assertEquals(10, snapshot.windows().get(i).count);
+            }
+
+            // Lo que llega para una ventana ya descartada se cuenta como tardío y no la revive
+            StringBuilder late = new StringBuilder();
+            line(late, 5_000, 7);
+            line(late, 89_999, 7);
+            line(late, 95_000, 7);
+            aggregator.ingest(input(late));
+            snapshot = awaitSamples(aggregator, 1_003);
+            assertEquals(2, snapshot.lateSamples());
+            assertEquals(1_001, snapshot.acceptedSamples());
+            assertEquals(10, snapshot.windows().size());
+            assertEquals(START_MILLIS + 90_000, snapshot.windows().getFirst().windowStart.toEpochMilli());
+            assertEquals(11, snapshot.windows().get(5).count);
+        }
+    }
+
+    @Test
+    void concurrentProducersWrapTheRing() throws Exception {
+        // Buffer del tamaño de un lote: cada lote espera a que el escritor vacíe el anterior
+        int producers = 4;
+        int perProducer = 50_000;
+        List<StringBuilder> texts = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < perProducer; i++) {
+                line(text, i / 10, 1 + p);
+            }
+            texts.add(text);
+        }
+        try (LiveAggregator aggregator = new LiveAggregator(1, 60, 1024, 1, 1, ZONE,
+                new SpikeDetector(1.0, 0.05, 30, 1, 10))) {
+            aggregator.start();
+            ExecutorService executor = Executors.newFixedThreadPool(producers);
+            try {
+                List<Future<LiveAggregator.IngestCounts>> ingests = new ArrayList<>();
+                for (StringBuilder text : texts) {
+                    ingests.add(executor.submit(() -> aggregator.ingest(input(text))));
+                }
+                for (Future<LiveAggregator.IngestCounts> ingest : ingests) {
+                    assertEquals(perProducer, ingest.get().parsedLines());
+                }
+            } finally {
+                executor.shutdown();
+            }
+            LiveSnapshot snapshot = awaitSamples(aggregator, (long) producers * perProducer);
+            assertEquals(0, snapshot.lateSamples());
+            // 10 muestras por ms de cada productor: 10_000 por segundo y productor
+            assertEquals(5, snapshot.windows().size());
+            for (WindowResult window : snapshot.windows()) {
+                assertEquals(producers * 10_000, window.count);
+                assertEquals(producers, window.maxLatency);
+            }
+        }
+    }
+
+    @Test
+    void ringDeliversEverySampleOnceWhenProducersOutrunTheConsumer() throws Exception {
+        LatencyRingBuffer ring = new LatencyRingBuffer(8);
+        int producers = 3;
+        int perProducer = 30_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> puts = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                puts.add(executor.submit(() -> {
+                    long[] sequence = new long[5];
+                    int[] source = new int[5];
+                    for (int i = 0; i < perProducer; i += 5) {
+                        for (int j = 0; j < 5; j++) {
+                            sequence[j] = i + j;
+                            source[j] = producer;
+                        }
+                        ring.put(sequence, source, 5);
+                    }
+                }));
+            }
+            // Consumidor lento: drena de a poco, así los productores dan la vuelta y esperan
+            long[] nextByProducer = new long[producers];
+            AtomicLong received = new AtomicLong();
+            LatencyRingBuffer.Sink sink = (value, producer) -> {
+                assertEquals(nextByProducer[producer], value, "orden del productor " + producer);
+                nextByProducer[producer]++;
+                received.incrementAndGet();
+            };
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (received.get() < (long) producers * perProducer) {
+                if (ring.drain(sink, 3) == 0) {
+                    Thread.onSpinWait();
+                }
+                if (System.nanoTime() > deadline) {
+                    fail("Se recibieron " + received.get() + " muestras");
+                }
+            }
+            for (Future<?> put : puts) {
+                put.get();
+            }
+            assertEquals(0, ring.drain(sink, 3));
+            for (long next : nextByProducer) {
+                assertEquals(perProducer, next);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /** Línea con el timestamp {@code offsetMillis} desde las 10:00. */
+    private static void line(StringBuilder text, long offsetMillis, int latency) {
+        text.append("ORD;1;").append(START.plusNanos(offsetMillis * 1_000_000L).format(FORMAT))
+                .append(";ACK;").append(latency).append('\n');
+    }
+
+    private static ByteArrayInputStream input(StringBuilder text) {
+        return new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Espera a que el escritor publique {@code samples} muestras, aceptadas o tardías. */
+    private static LiveSnapshot awaitSamples(LiveAggregator aggregator, long samples) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (true) {
+            LiveSnapshot snapshot = aggregator.snapshot();
+            long seen = snapshot.acceptedSamples() + snapshot.lateSamples();
+            if (seen == samples) {
+                return snapshot;
+            }
+            assertTrue(seen < samples, "más muestras que las ingeridas: " + seen);
+            if (System.nanoTime() > deadline) {
+                fail("El escritor publicó " + seen + " de " + samples + " muestras");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
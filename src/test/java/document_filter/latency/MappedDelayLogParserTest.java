@@ -0,0 +1,127 @@
+package document_filter.latency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import static document_filter.latency.DelayLogFixtures.assertSameAggregate;
+import static document_filter.latency.DelayLogFixtures.log;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedDelayLogParserTest {
+    private static final Supplier<LatencyWindowAverager> AVERAGERS = () -> new LatencyWindowAverager(1);
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void chunksMatchSequentialRead() throws IOException {
+        for (boolean trailingNewline : new boolean[]{true, false}) {
+            byte[] text = log(3, 5_000, trailingNewline);
+            Path file = Files.write(directory.resolve("delay.log"), text);
+            LatencyWindowAverager expected = readSequential(text, AVERAGERS);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // Desde chunks de un byte (cada uno se estira hasta su fin de línea) hasta uno solo
+                for (long chunkSize : new long[]{1, 100, 4096, 65_537, text.length}) {
+                    assertSameAggregate(expected, MappedDelayLogParser.parse(channel, 0, text.length, AVERAGERS, pool, chunkSize));
+                    assertSameAggregate(expected, MappedDelayLogParser.parse(channel, 0, text.length, AVERAGERS, null, chunkSize));
+                }
+            }
+            assertSameAggregate(expected, MappedDelayLogParser.parse(file, AVERAGERS, pool));
+        }
+    }
+
+    @Test
+    void lineAlignedRangesMatchSequentialRead() throws IOException {
+        byte[] text = log(4, 20_000, true);
+        Path file = Files.write(directory.resolve("delay.log"), text);
+        LatencyWindowAverager expected = readSequential(text, AVERAGERS);
+        SplittableRandom random = new SplittableRandom(4);
+        ProcessingOptions options = new ProcessingOptions(1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int round = 0; round < 20; round++) {
+                // Como el coordinador: cortes arbitrarios llevados al inicio de la línea siguiente
+                LatencyWindowAverager merged = AVERAGERS.get();
+                long start = 0;
+                while (start < text.length) {
+                    long cut = start + 1 + random.nextInt(text.length / 4);
+                    long end = cut >= text.length ? text.length : MappedDelayLogParser.nextLineStart(channel, cut, text.length);
+                    merged.merge(LatencyExcelExporter.readRange(file.toFile(), start, end, options, round % 2 == 0 ? pool : null));
+                    start = end;
+                }
+                assertSameAggregate(expected, merged);
+            }
+            assertEquals(0, MappedDelayLogParser.lastLineEnd(channel, 0, 10));
+            long lastLineEnd = MappedDelayLogParser.lastLineEnd(channel, 0, text.length - 1);
+            assertEquals('\n', text[(int) lastLineEnd - 1]);
+        }
+    }
+
+    @Test
+    void chunkReadErrorSurfacesAsIOException() {
+        List<RecursiveTask<LatencyWindowAverager>> tasks = List.of(
+                new FixedTask(AVERAGERS.get()),
+                new FailingTask(),
+                new FixedTask(AVERAGERS.get()));
+        IOException error = assertThrows(IOException.class,
+                () -> MappedDelayLogParser.mergeInOrder(tasks, AVERAGERS.get(), pool));
+        assertEquals("chunk ilegible", error.getMessage());
+    }
+
+    @Test
+    void unreadableFileIsSkipped() throws IOException {
+        // Un directorio con el nombre del log: leerlo falla con IOException
+        File broken = Files.createDirectories(directory.resolve("BROKEN").resolve("delay.log")).toFile();
+        ProcessingOptions options = new ProcessingOptions(1);
+        options.setParseParallelism(2);
+        assertNull(LatencyExcelExporter.analyzeFile("BROKEN/delay.log", broken, options, pool));
+    }
+
+    private static final class FixedTask extends RecursiveTask<LatencyWindowAverager> {
+        private final LatencyWindowAverager averager;
+
+        FixedTask(LatencyWindowAverager averager) {
+            this.averager = averager;
+        }
+
+        @Override
+        protected LatencyWindowAverager compute() {
+            return averager;
+        }
+    }
+
+    private static final class FailingTask extends RecursiveTask<LatencyWindowAverager> {
+        @Override
+        protected LatencyWindowAverager compute() {
+            throw new UncheckedIOException(new IOException("chunk ilegible"));
+        }
+    }
+}
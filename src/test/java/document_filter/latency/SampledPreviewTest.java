@@ -0,0 +1,116 @@
+package document_filter.latency;
+
+import document_filter.domain.PreviewEstimate;
+import document_filter.domain.Stats;
+import document_filter.domain.WindowResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SampledPreviewTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm:ss.SSS");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void singleBlockReadsTheWholeFile() throws IOException {
+        byte[] text = uniformLog(50, 20_000);
+        Path file = Files.write(directory.resolve("delay.log"), text);
+        ProcessingOptions options = new ProcessingOptions(1);
+        // La muestra alcanza para todo el archivo: un único bloque
+        PreviewEstimate estimate = SampledPreview.estimate("INSTR/delay.log", file.toFile(), options, 4, 1 << 20);
+        assertEquals(1, estimate.blocks);
+        assertEquals(text.length, estimate.sampledBytes);
+
+        // Latencias menores a 2048: el histograma de 3 dígitos es exacto; el desvío sólo difiere en redondeo
+        LatencyWindowAverager exact = readSequential(text, () -> new LatencyWindowAverager(1));
+        Stats stats = exact.getStats();
+        Stats sampled = estimate.summary.stats;
+        assertEquals(stats.average, sampled.average, 1e-9);
+        assertEquals(stats.averageBelowP95, sampled.averageBelowP95, 1e-9);
+        assertEquals(stats.averageUpperP95, sampled.averageUpperP95, 1e-9);
+        assertEquals(stats.stdDev, sampled.stdDev, 1e-9);
+        assertEquals(stats.maxLatency, sampled.maxLatency);
+        assertEquals(stats.minLatency, sampled.minLatency);
+        assertEquals(stats.p50, sampled.p50);
+        assertEquals(stats.p95, sampled.p95);
+        assertEquals(stats.p99, sampled.p99);
+        assertEquals(stats.p999, sampled.p999);
+        assertEquals(stats.aboveP95Count, sampled.aboveP95Count);
+        assertEquals(stats.totalDataSize, sampled.totalDataSize);
+        assertEquals(sampled.average, estimate.meanLow);
+        assertEquals(sampled.average, estimate.meanHigh);
+        assertEquals(stats.p99, estimate.p99Low);
+        assertEquals(stats.p99, estimate.p99High);
+        assertEquals(averageCount(exact.getResults(1)), estimate.summary.messagesPerSecond);
+        assertEquals(-1, estimate.summary.spikeWindows);
+    }
+
+    @Test
+    void blockSampleCoversTheExactValues() throws IOException {
+        // ~12 MB, de los que se leen 32 bloques de 32 KB. Semilla fija: el intervalo de 95% no es una garantía
+        byte[] text = uniformLog(51, 300_000);
+        Path file = Files.write(directory.resolve("delay.log"), text);
+        PreviewEstimate estimate = SampledPreview.estimate("INSTR/delay.log", file.toFile(), new ProcessingOptions(1), 32, 32 << 10);
+        assertEquals(32, estimate.blocks);
+        assertTrue(estimate.getSampledFraction() < 0.15, "fracción " + estimate.getSampledFraction());
+
+        LatencyWindowAverager exact = readSequential(text, () -> new LatencyWindowAverager(1));
+        Stats stats = exact.getStats();
+        assertTrue(estimate.meanLow < estimate.meanHigh);
+        assertCovers(estimate.meanLow, estimate.meanHigh, stats.average, "promedio");
+        assertCovers(estimate.p50Low, estimate.p50High, stats.p50, "P50");
+        assertCovers(estimate.p95Low, estimate.p95High, stats.p95, "P95");
+        assertCovers(estimate.p99Low, estimate.p99High, stats.p99, "P99");
+        assertCovers(estimate.p999Low, estimate.p999High, stats.p999, "P99.9");
+        // Uniforme en [1, 1000]: media 500.5
+        assertEquals(500.5, estimate.summary.stats.average, 10);
+
+        // Conteos escalados por bytes leídos y msg/s de los segundos enteros dentro de los bloques
+        assertEquals(stats.totalDataSize, estimate.summary.stats.totalDataSize, stats.totalDataSize * 0.02);
+        assertEquals(stats.aboveP95Count, estimate.summary.stats.aboveP95Count, stats.aboveP95Count * 0.1);
+        double messagesPerSecond = averageCount(exact.getResults(1));
+        assertEquals(messagesPerSecond, estimate.summary.messagesPerSecond, messagesPerSecond * 0.05);
+    }
+
+    private static void assertCovers(double low, double high, double exact, String label) {
+        assertTrue(low <= exact && exact <= high, label + ": " + exact + " fuera de [" + low + ", " + high + "]");
+    }
+
+    private static double averageCount(List<WindowResult> seconds) {
+        long total = 0;
+        for (WindowResult second : seconds) {
+            total += second.count;
+        }
+        return (double) total / seconds.size();
+    }
+
+    /**
+     * Log en orden con latencias uniformes en [1, 1000] y entre 0 y 4 ms entre mensajes (~500 msg/s,
+     * con segundos de distinta cantidad).
+     */
+    private static byte[] uniformLog(long seed, int lines) {
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDateTime time = LocalDateTime.of(2025, 3, 10, 10, 0);
+        StringBuilder text = new StringBuilder(lines * 42);
+        for (int i = 0; i < lines; i++) {
+            time = time.plusNanos(random.nextInt(0, 5) * 1_000_000L);
+            text.append("ORD;").append(i).append(';').append(time.format(FORMAT)).append(";ACK;")
+                    .append(random.nextInt(1, 1001)).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,109 @@
+package document_filter.latency;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static document_filter.latency.DelayLogFixtures.assertSameAggregate;
+import static document_filter.latency.DelayLogFixtures.log;
+import static document_filter.latency.DelayLogFixtures.readSequential;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardCoordinatorTest {
+    private static final int IN_FLIGHT_PER_WORKER = 2;
+
+    @TempDir
+    Path directory;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final Map<String, File> files = new HashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger served = new AtomicInteger();
+
+    @AfterEach
+    void stopWorkers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void inFlightRequestsAreCappedAcrossFiles() throws Exception {
+        List<String> workers = List.of(startWorker(), startWorker());
+        for (int i = 0; i < 3; i++) {
+            files.put("INSTR" + i + "/delay.log", Files.write(directory.resolve(i + ".log"), log(40 + i, 5_000, true)).toFile());
+        }
+        // Rangos de 4 KB: cada archivo pide decenas de parciales
+        ShardCoordinator coordinator = new ShardCoordinator(workers, 4096, Duration.ofSeconds(30), IN_FLIGHT_PER_WORKER);
+
+        ExecutorService executor = Executors.newFixedThreadPool(files.size());
+        try {
+            Map<String, Future<LatencyWindowAverager>> results = new HashMap<>();
+            for (Map.Entry<String, File> file : files.entrySet()) {
+                results.put(file.getKey(), executor.submit(() -> coordinator.read(file.getKey(), file.getValue(),
+                        new ProcessingOptions(1), null)));
+            }
+            for (Map.Entry<String, File> file : files.entrySet()) {
+                assertSameAggregate(readSequential(Files.readAllBytes(file.getValue().toPath()),
+                        () -> new LatencyWindowAverager(1)), results.get(file.getKey()).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(served.get() > 3 * workers.size() * IN_FLIGHT_PER_WORKER, "parciales servidos: " + served.get());
+        assertTrue(maxActive.get() <= workers.size() * IN_FLIGHT_PER_WORKER, "pedidos simultáneos: " + maxActive.get());
+    }
+
+    /** Worker en el mismo proceso que responde como GET /api/metrics/partial y cuenta pedidos simultáneos. */
+    private String startWorker() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext(ShardCoordinator.PARTIAL_PATH, this::servePartial);
+        server.start();
+        servers.add(server);
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void servePartial(HttpExchange exchange) throws IOException {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try (exchange) {
+            Map<String, String> query = new HashMap<>();
+            for (String parameter : exchange.getRequestURI().getQuery().split("&")) {
+                String[] pair = parameter.split("=", 2);
+                query.put(pair[0], URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+            }
+            Thread.sleep(5);
+            LatencyWindowAverager partial = LatencyExcelExporter.readRange(files.get(query.get("file")),
+                    Long.parseLong(query.get("from")), Long.parseLong(query.get("to")), new ProcessingOptions(1), null);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                ShardCoordinator.writePartial(partial, out);
+            }
+            served.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package document_filter.latency;
+
+import document_filter.domain.FileSummary;
+import document_filter.domain.Spike;
+import document_filter.domain.WindowResult;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpikeDetectorTest {
+    private static final long BASE_SECONDS = 1_741_600_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void warmupWindowsOnlyBuildTheBaseline() {
+        SpikeDetector detector = new SpikeDetector(3.0, 0.05, 5, 1, 10);
+        // Dentro del arranque ni un salto enorme es pico
+        assertFalse(detector.add(window(0, 10)));
+        assertFalse(detector.add(window(1, 5_000)));
+        assertFalse(detector.add(window(2, 12)));
+        assertFalse(detector.add(window(3, 10)));
+        assertFalse(detector.add(window(4, 12)));
+        assertTrue(detector.add(window(5, 10_000)));
+        assertEquals(1, detector.getSpikeWindows());
+    }
+
+    @Test
+    void consecutiveSpikesMergeAndNormalWindowsOrGapsCloseThem() {
+        SpikeDetector detector = new SpikeDetector(3.0, 0.05, 30, 1, 10);
+        baseline(detector, 0, 40);
+        // Dos ventanas seguidas: un solo intervalo, con la peor como pico
+        assertTrue(detector.add(window(40, 500)));
+        assertTrue(detector.add(window(41, 600)));
+        assertFalse(detector.add(window(42, 10)));
+        baseline(detector, 43, 120);
+        // Un hueco (sin la ventana 121) corta el intervalo aunque las dos sean pico
+        assertTrue(detector.add(window(120, 2_000)));
+        assertTrue(detector.add(window(122, 2_000)));
+        // Una ventana vacía no cuenta ni cierra
+        assertFalse(detector.add(new WindowResult(Instant.ofEpochSecond(BASE_SECONDS + 123), 0, 0, 0, 0, 0, 0)));
+
+        List<Spike> spikes = detector.getSpikes();
+        assertEquals(3, spikes.size());
+        assertSpike(spikes.get(0), 40, 2, 600, 41);
+        assertSpike(spikes.get(1), 120, 1, 2_000, 120);
+        // El último sigue abierto
+        assertSpike(spikes.get(2), 122, 1, 2_000, 122);
+        assertTrue(spikes.get(0).threshold > 10 && spikes.get(0).threshold < 500);
+        assertEquals(4, detector.getSpikeWindows());
+
+        assertTrue(detector.add(window(123, 3_000)));
+        assertFalse(detector.add(window(124, 10)));
+        assertSpike(detector.getSpikes().get(2), 122, 2, 3_000, 123);
+    }
+
+    @Test
+    void onlyTheLastMaxRecordedIntervalsAreKept() {
+        SpikeDetector detector = new SpikeDetector(3.0, 0.05, 30, 1, 2);
+        baseline(detector, 0, 40);
+        for (int i = 0; i < 4; i++) {
+            long start = 40 + i * 100L;
+            assertTrue(detector.add(window(start, 1_000)));
+            baseline(detector, start + 1, start + 100);
+        }
+        List<Spike> spikes = detector.getSpikes();
+        assertEquals(2, spikes.size());
+        assertEquals(Instant.ofEpochSecond(BASE_SECONDS + 240), spikes.get(0).start);
+        assertEquals(Instant.ofEpochSecond(BASE_SECONDS + 340), spikes.get(1).start);
+
+        // Con un intervalo abierto también son dos: sale el más viejo
+        assertTrue(detector.add(window(440, 1_000)));
+        spikes = detector.getSpikes();
+        assertEquals(2, spikes.size());
+        assertEquals(Instant.ofEpochSecond(BASE_SECONDS + 340), spikes.get(0).start);
+        assertEquals(Instant.ofEpochSecond(BASE_SECONDS + 440), spikes.get(1).start);
+        // Los contadores cubren toda la serie
+        assertEquals(5, detector.getSpikeWindows());
+
+        SpikeDetector none = new SpikeDetector(3.0, 0.05, 30, 1, 0);
+        baseline(none, 0, 40);
+        assertTrue(none.add(window(40, 1_000)));
+        assertTrue(none.getSpikes().isEmpty());
+        assertEquals(1, none.getSpikeWindows());
+    }
+
+    @Test
+    void spikeColumnHasTheSpikeWindows() throws IOException {
+        Path subdir = Files.createDirectories(directory.resolve("logs/INSTR"));
+        // Base plana con la configuración por defecto: sólo las dos ventanas de 500 ms superan μ+σ
+        StringBuilder text = new StringBuilder();
+        for (int second = 0; second < 60; second++) {
+            int latency = second == 45 || second == 46 ? 500 : 10;
+            text.append(String.format("ORD;%d;20250310 10:00:%02d.000;ACK;%d%n", second, second, latency));
+        }
+        Files.writeString(subdir.resolve("delay.log"), text);
+        Path output = directory.resolve("resumen.xlsx");
+        List<FileSummary> summaries = LatencyExcelExporter.processDirectory(
+                directory.resolve("logs").toString(), output.toString(), new ProcessingOptions(1));
+        assertEquals(2, summaries.getFirst().spikeWindows);
+        try (InputStream in = Files.newInputStream(output); Workbook workbook = new XSSFWorkbook(in)) {
+            Row header = workbook.getSheetAt(0).getRow(0);
+            assertEquals("Picos (>μ+σ)", header.getCell(6).getStringCellValue());
+            assertEquals(2, workbook.getSheetAt(0).getRow(1).getCell(6).getNumericCellValue());
+        }
+    }
+
+    /** Ventanas normales de 10 y 12 ms en {@code [from, to)}. */
+    private static void baseline(SpikeDetector detector, long from, long to) {
+        for (long second = from; second < to; second++) {
+            assertFalse(detector.add(window(second, 10 + second % 2 * 2)), "ventana " + second);
+        }
+    }
+
+    private static WindowResult window(long second, double average) {
+        return new WindowResult(Instant.ofEpochSecond(BASE_SECONDS + second), average, 1, (int) average,
+                (int) average, (int) average, 0);
+    }
+
+    private static void assertSpike(Spike spike, long startSecond, int windows, double peak, long peakSecond) {
+        assertEquals(Instant.ofEpochSecond(BASE_SECONDS + startSecond), spike.start);
+        assertEquals(windows, spike.windows);
+        assertEquals(windows, spike.durationSeconds);
+        assertEquals(peak, spike.peakLatency);
+        assertEquals(Instant.ofEpochSecond(BASE_SECONDS + peakSecond), spike.peakWindowStart);
+    }
+}
@@ -0,0 +1,52 @@
+package document_filter.latency;
+
+import document_filter.domain.WindowResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WindowResultFormatTest {
+    private static final WindowResult WINDOW = new WindowResult(Instant.parse("2025-03-11T02:59:10Z"), 20.5, 2, 10, 30, 31, 10.5);
+
+    @Test
+    void csvWritesHeaderAndOneRowPerWindow() throws IOException {
+        StringBuilder out = new StringBuilder();
+        WindowResultFormat.CSV.writeHeader(out);
+        WindowResultFormat.CSV.write(WINDOW, out);
+        assertEquals("windowStart,count,averageLatency,p50Latency,p99Latency,maxLatency,stdDev\n"
+                + "2025-03-11T02:59:10Z,2,20.5,10,30,31,10.5\n", out.toString());
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws IOException {
+        StringBuilder out = new StringBuilder();
+        WindowResultFormat.NDJSON.writeHeader(out);
+        WindowResultFormat.NDJSON.write(WINDOW, out);
+        assertEquals("{\"windowStart\":\"2025-03-11T02:59:10Z\",\"count\":2,\"averageLatency\":20.5,\"p50Latency\":10,"
+                + "\"p99Latency\":30,\"maxLatency\":31,\"stdDev\":10.5}\n", out.toString());
+    }
+
+    @Test
+    void nonFiniteValuesAreNotWrittenAsNumbers() throws IOException {
+        WindowResult empty = new WindowResult(Instant.parse("2025-03-11T02:59:10Z"), Double.NaN, 0, 0, 0, 0,
+                Double.POSITIVE_INFINITY);
+        StringBuilder json = new StringBuilder();
+        WindowResultFormat.NDJSON.write(empty, json);
+        assertEquals("{\"windowStart\":\"2025-03-11T02:59:10Z\",\"count\":0,\"averageLatency\":null,\"p50Latency\":0,"
+                + "\"p99Latency\":0,\"maxLatency\":0,\"stdDev\":null}\n", json.toString());
+        StringBuilder csv = new StringBuilder();
+        WindowResultFormat.CSV.write(empty, csv);
+        assertEquals("2025-03-11T02:59:10Z,0,,0,0,0,\n", csv.toString());
+    }
+
+    @Test
+    void parseIgnoresCaseAndRejectsUnknownFormats() {
+        assertEquals(WindowResultFormat.CSV, WindowResultFormat.parse("csv"));
+        assertEquals(WindowResultFormat.NDJSON, WindowResultFormat.parse("NdJson"));
+        assertThrows(IllegalArgumentException.class, () -> WindowResultFormat.parse("xml"));
+    }
+}